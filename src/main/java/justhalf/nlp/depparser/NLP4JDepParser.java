@@ -0,0 +1,220 @@
+package justhalf.nlp.depparser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.StringFormatterMessageFactory;
+
+import edu.emory.mathcs.nlp.component.morph.MorphAnalyzer;
+import edu.emory.mathcs.nlp.component.template.NLPComponent;
+import edu.emory.mathcs.nlp.component.template.node.NLPNode;
+import edu.emory.mathcs.nlp.component.template.util.GlobalLexica;
+import edu.emory.mathcs.nlp.decode.NLPDecoder;
+import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.EnglishGrammaticalStructure;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.GrammaticalStructure;
+import edu.stanford.nlp.trees.TreeGraphNode;
+import edu.stanford.nlp.trees.TypedDependency;
+import justhalf.nlp.lemmatizer.NLP4JLemmatizer;
+
+/**
+ * An implementation of {@link DepParser} using the greedy dependency parser from NLP4J<br>
+ *
+ * The parser runs through an {@link NLPDecoder} configured with both POS tagging and dependency
+ * parsing models, so a sentence is tagged, lemmatized, and parsed in a single decode.<br>
+ *
+ * Unlike the other implementations, the words in the sentence do not need to be POS-tagged.
+ * If every word already has a POS tag, those tags are used as-is and the POS tagging step is skipped.
+ * Otherwise the sentence is tagged by NLP4J and the tags are written back into the input {@link CoreLabel}s.
+ */
+public class NLP4JDepParser implements DepParser {
+
+	public static final Logger LOGGER = LogManager.getLogger(NLP4JDepParser.class, StringFormatterMessageFactory.INSTANCE);
+
+	/** The default configuration, containing the POS tagging and dependency parsing models for English */
+	public static final String DEFAULT_CONFIG_FILE = "config-decode-en-dep.xml";
+
+	private static final Map<String, NLPDecoder> decoders = new HashMap<String, NLPDecoder>();
+
+	public NLPDecoder decoder;
+	public Language language;
+
+	public NLP4JDepParser() {
+		this(DEFAULT_CONFIG_FILE, Language.English);
+	}
+
+	public NLP4JDepParser(String configFile, Language language){
+		this.language = language;
+		this.decoder = getDecoder(configFile);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public List<TypedDependency> parse(List<CoreLabel> sentence) {
+		boolean hasTags = hasTags(sentence);
+		NLPNode[] nodes = toNodes(sentence, hasTags);
+		decode(nodes, hasTags);
+
+		// Write back the POS tags in case they were assigned by NLP4J
+		for(int i=1; i<nodes.length; i++){
+			sentence.get(i-1).setTag(nodes[i].getPartOfSpeechTag());
+		}
+		return toTypedDependencies(sentence, nodes);
+	}
+
+	/**
+	 * Run the components of the decoder on the given nodes, skipping the POS tagger if the nodes
+	 * have already been tagged.<br>
+	 * 
+	 * Lemmatization is done by the shared {@link MorphAnalyzer} from {@link NLP4JLemmatizer#getMorphAnalyzer()}
+	 * instead of the one created by the decoder.
+	 * @param nodes
+	 * 		The nodes to be processed, including the root node at index 0
+	 * @param skipPOSTagging
+	 * 		Whether to skip the POS tagging component
+	 * @return
+	 * 		The same array of nodes, with the annotations filled in
+	 */
+	public NLPNode[] decode(NLPNode[] nodes, boolean skipPOSTagging){
+		GlobalLexica.assignGlobalLexica(nodes);
+		for(NLPComponent component: decoder.getComponents()){
+			if(component instanceof edu.emory.mathcs.nlp.component.pos.POSTagger){
+				if(skipPOSTagging){
+					continue;
+				}
+			} else if(component instanceof MorphAnalyzer){
+				component = NLP4JLemmatizer.getMorphAnalyzer();
+			}
+			component.process(nodes);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Convert the sentence into NLP4J nodes, prepended with the root node.<br>
+	 * The offsets are assigned as if the words were separated by single spaces.
+	 * @param sentence
+	 * 		The input sentence
+	 * @param includeTags
+	 * 		Whether to copy the POS tags from the input sentence into the nodes
+	 * @return
+	 * 		The array of nodes, with the root node at index 0
+	 */
+	public static NLPNode[] toNodes(List<CoreLabel> sentence, boolean includeTags){
+		NLPNode[] nodes = new NLPNode[sentence.size()+1];
+		nodes[0] = new NLPNode().toRoot();
+		int start = 0;
+		int id = 0;
+		for(CoreLabel wordLabel: sentence){
+			id++;
+			String word = wordLabel.word();
+			NLPNode node = new NLPNode(id, word);
+			node.setStartOffset(start);
+			node.setEndOffset(start + word.length());
+			if(includeTags){
+				node.setPartOfSpeechTag(wordLabel.tag());
+			}
+			nodes[id] = node;
+			start += word.length() + 1;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Convert the dependency arcs in the decoded nodes into Stanford {@link TypedDependency} objects.
+	 * @param sentence
+	 * 		The input sentence
+	 * @param nodes
+	 * 		The decoded nodes, with the root node at index 0
+	 * @return
+	 * 		The list of labeled dependencies, with the collapsed and propagated dependencies
+	 */
+	public List<TypedDependency> toTypedDependencies(List<CoreLabel> sentence, NLPNode[] nodes){
+		IndexedWord root = new IndexedWord(new Word("ROOT"));
+		root.setIndex(0);
+		List<TypedDependency> dependencies = new ArrayList<TypedDependency>();
+		for(int i=1; i<nodes.length; i++){
+			NLPNode curWord = nodes[i];
+			NLPNode headWord = curWord.getDependencyHead();
+			int headID = headWord == null ? 0 : headWord.getID();
+			IndexedWord dep = new IndexedWord(sentence.get(i-1));
+			dep.setIndex(i);
+			IndexedWord gov = headID == 0
+								? root
+								: new IndexedWord(sentence.get(headID-1));
+			gov.setIndex(headID);
+			GrammaticalRelation rel = headID == 0
+										? GrammaticalRelation.ROOT
+										: makeGrammaticalRelation(curWord.getDependencyLabel());
+			TypedDependency deparc = new TypedDependency(rel, gov, dep);
+			dependencies.add(deparc);
+		}
+		GrammaticalStructure gr = new EnglishGrammaticalStructure(dependencies, new TreeGraphNode(root));
+		return gr.typedDependenciesCCprocessed();
+	}
+
+	private GrammaticalRelation makeGrammaticalRelation(String label) {
+		GrammaticalRelation stored = EnglishGrammaticalRelations.shortNameToGRel.get(label);
+		if (stored != null)
+			return stored;
+
+		return new GrammaticalRelation(language, label, null, GrammaticalRelation.DEPENDENT);
+	}
+
+	private static boolean hasTags(List<CoreLabel> sentence){
+		for(CoreLabel word: sentence){
+			if(word.tag() == null || word.tag().length() == 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Since loading the models from NLP4J is expensive and the decoder is thread-safe,
+	 * the decoders are shared across instances, one decoder per configuration file.<br>
+	 * This method returns the shared decoder for the given configuration, properly
+	 * initializing it first if it has not been initialized.<br>
+	 * A configuration which fails to load is not cached, so the loading is retried on the next call.
+	 * @param configFile
+	 * 		The path to the NLP4J decode configuration, either in classpath or file system
+	 * @return
+	 * 		The shared decoder for the given configuration
+	 * @throws RuntimeException
+	 * 		If the configuration or the models cannot be read
+	 */
+	public static NLPDecoder getDecoder(String configFile){
+		synchronized(decoders){
+			NLPDecoder decoder = decoders.get(configFile);
+			if(decoder == null){
+				try {
+					LOGGER.info("Initializing NLP4J decoder using the config %s", configFile);
+					long start = System.nanoTime();
+					decoder = new NLPDecoder(IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(configFile));
+					long end = System.nanoTime();
+					LOGGER.info("Initializing NLP4J decoder done in %.3fs", (end-start)/1e9);
+				} catch (IOException e) {
+					throw new RuntimeException("Cannot load the NLP4J decoder from "+configFile, e);
+				}
+				decoders.put(configFile, decoder);
+			}
+			return decoder;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package justhalf.nlp.depparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.emory.mathcs.nlp.component.template.node.NLPNode;
+import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.ling.CoreAnnotations.CoNLLDepParentIndexAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.CoNLLDepTypeAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.trees.TypedDependency;
+import justhalf.nlp.lemmatizer.NLP4JLemmatizer;
+import justhalf.nlp.postagger.NLP4JPOSTagger;
+import justhalf.nlp.postagger.POSTagger;
+
+/**
+ * A combined POS tagger, lemmatizer, and dependency parser using NLP4J<br>
+ *
+ * Using {@link NLP4JPOSTagger} followed by {@link NLP4JDepParser} converts the sentence into
+ * NLP4J nodes and back twice. This class converts the sentence only once, runs POS tagging,
+ * lemmatization (using the shared morphological analyzer from {@link NLP4JLemmatizer}), and
+ * dependency parsing in a single decode, then writes all annotations back in one pass.<br>
+ *
+ * After {@link #annotate(List)} or {@link #parse(List)}, each {@link CoreLabel} will have:
+ * <ul>
+ * <li>the POS tag in {@link CoreLabel#tag()}</li>
+ * <li>the lemma in {@link CoreLabel#lemma()}</li>
+ * <li>the 1-based index of the head word (0 for root) in {@link CoNLLDepParentIndexAnnotation}</li>
+ * <li>the dependency label in {@link CoNLLDepTypeAnnotation}</li>
+ * </ul>
+ * Any existing POS tags in the input are overwritten.
+ */
+public class NLP4JTaggerParser extends NLP4JDepParser implements POSTagger {
+
+	public NLP4JTaggerParser() {
+		this(DEFAULT_CONFIG_FILE, Language.English);
+	}
+
+	public NLP4JTaggerParser(String configFile, Language language){
+		super(configFile, language);
+	}
+
+	/**
+	 * POS-tag, lemmatize, and parse the sentence in a single decode, writing the results back
+	 * into the given {@link CoreLabel}s.
+	 * @param sentence
+	 * 		The input sentence, where each word is represented as a {@link CoreLabel} object
+	 * @return
+	 * 		The decoded nodes, with the root node at index 0
+	 */
+	public NLPNode[] annotate(List<CoreLabel> sentence){
+		NLPNode[] nodes = toNodes(sentence, false);
+		decode(nodes, false);
+		for(int i=1; i<nodes.length; i++){
+			NLPNode node = nodes[i];
+			CoreLabel token = sentence.get(i-1);
+			token.setTag(node.getPartOfSpeechTag());
+			token.setLemma(node.getLemma());
+			NLPNode head = node.getDependencyHead();
+			token.set(CoNLLDepParentIndexAnnotation.class, head == null ? 0 : head.getID());
+			token.set(CoNLLDepTypeAnnotation.class, node.getDependencyLabel());
+		}
+		return nodes;
+	}
+
+	@Override
+	public List<TypedDependency> parse(List<CoreLabel> sentence) {
+		NLPNode[] nodes = annotate(sentence);
+		return toTypedDependencies(sentence, nodes);
+	}
+
+	@Override
+	public List<String> tag(String sentence) {
+		NLPNode[] nodes = decoder.decode(sentence);
+		return nodeToString(nodes);
+	}
+
+	@Override
+	public List<String> tag(List<String> sentence) {
+		List<CoreLabel> words = new ArrayList<CoreLabel>();
+		for(String token: sentence){
+			CoreLabel word = new CoreLabel();
+			word.setWord(token);
+			word.setValue(token);
+			words.add(word);
+		}
+		NLPNode[] nodes = annotate(words);
+		return nodeToString(nodes);
+	}
+
+	@Override
+	public List<CoreLabel> tagCoreLabels(List<CoreLabel> sentence) {
+		annotate(sentence);
+		return sentence;
+	}
+
+	private List<String> nodeToString(NLPNode[] nodes) {
+		List<String> result = new ArrayList<String>();
+		for(int i=1; i<nodes.length; i++){
+			result.add(nodes[i].getPartOfSpeechTag());
+		}
+		return result;
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+}
@@ -0,0 +1,545 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.postagger.POSTagger;
+import justhalf.nlp.sentencesplitter.SentenceSplitter;
+import justhalf.nlp.tokenizer.Tokenizer;
+
+/**
+ * <p>An on-disk cache of the results of the sentence splitter, the tokenizer, and the POS tagger,
+ * so that exporting a corpus again only runs the components whose inputs have changed.</p>
+ *
+ * <p>The cache is content-addressed: each result is stored under the SHA-1 hash of the stage, the identity
+ * of the component, and the input of the stage, which is the document text for the sentence splitter,
+ * the sentence text for the tokenizer, and the words of the sentence for the POS tagger.
+ * So changing the POS tagger reuses the cached sentences and tokens and only tags them again, and changing
+ * a document only recomputes its changed sentences. The identity of a component is its class name by default,
+ * and should be given explicitly for components which can be configured differently.</p>
+ *
+ * <p>The components can be wrapped with the wrap methods, so that the code using them goes through the cache
+ * without any change.
+ * The results are always returned as new {@link CoreLabel}s read from the stored form, whether they were taken
+ * from the cache or just computed, keeping the offsets, value, word, original text, and the whitespaces before
+ * and after, which can be modified freely.
+ * The file keeps the results of every configuration used, up to {@link #maxSize} bytes, after which the least
+ * recently used results are removed; delete the file to clear it.</p>
+ *
+ * <p>The methods of this class are thread-safe. Use {@link #save()} to write the cache back to the file.</p>
+ */
+public class ACEAnnotationCache {
+
+	private static final int MAGIC = 0x41434541; // "ACEA"
+	private static final int FORMAT_VERSION = 1;
+
+	public static final String SPLIT = "split";
+	public static final String TOKENIZE = "tokenize";
+	public static final String TAG = "tag";
+
+	/** The default maximum total size in bytes of the cached results */
+	public static final long DEFAULT_MAX_SIZE = 256L*1024*1024;
+
+	/** The file storing the cache */
+	public final File cacheFile;
+	/** The maximum total size in bytes of the cached results */
+	public final long maxSize;
+	/** The cached results in access order, guarded by itself */
+	private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long entriesSize;
+	private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<String, AtomicInteger>();
+	private final Map<String, AtomicInteger> misses = new ConcurrentHashMap<String, AtomicInteger>();
+	private volatile boolean modified;
+
+	/**
+	 * Opens the cache stored in the given file, which will be created on {@link #save()} if it does not exist,
+	 * keeping at most {@link #DEFAULT_MAX_SIZE} bytes of results.<br>
+	 * If the file is empty or is not a valid cache file, the cache starts empty.
+	 * @param cacheFile
+	 */
+	public ACEAnnotationCache(File cacheFile){
+		this(cacheFile, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Opens the cache stored in the given file, which will be created on {@link #save()} if it does not exist,
+	 * keeping at most maxSize bytes of results.<br>
+	 * If the file is empty or is not a valid cache file, the cache starts empty.
+	 * @param cacheFile
+	 * @param maxSize
+	 */
+	public ACEAnnotationCache(File cacheFile, long maxSize){
+		this.cacheFile = cacheFile;
+		this.maxSize = maxSize;
+		if(cacheFile.length() > 0){
+			try{
+				load();
+			} catch (IOException e){
+				System.err.println("Ignoring invalid annotation cache "+cacheFile+": "+e);
+				synchronized(entries){
+					entries.clear();
+					entriesSize = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of results in the cache
+	 * @return
+	 */
+	public int size(){
+		synchronized(entries){
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the number of results of the given stage ({@link #SPLIT}, {@link #TOKENIZE}, or {@link #TAG})
+	 * taken from the cache since it was opened
+	 * @param stage
+	 * @return
+	 */
+	public int hits(String stage){
+		AtomicInteger count = hits.get(stage);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * Returns the number of results of the given stage ({@link #SPLIT}, {@link #TOKENIZE}, or {@link #TAG})
+	 * computed because they were not in the cache
+	 * @param stage
+	 * @return
+	 */
+	public int misses(String stage){
+		AtomicInteger count = misses.get(stage);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * Returns the result of {@link SentenceSplitter#split(String)}, or {@link SentenceSplitter#splitWithTokens(String)}
+	 * if withTokens is true, taking it from the cache if the same splitter has split the same text before.
+	 * @param text
+	 * @param splitter
+	 * @param splitterID The identity of the splitter, which should be different for differently configured splitters
+	 * @param withTokens
+	 * @return
+	 */
+	public List<CoreLabel> split(String text, SentenceSplitter splitter, String splitterID, boolean withTokens){
+		String key = getKey(withTokens ? SPLIT+"+tokens" : SPLIT, splitterID, text);
+		byte[] cached = get(key);
+		if(cached != null){
+			try{
+				List<CoreLabel> sentences = readSentences(cached, withTokens);
+				count(hits, SPLIT);
+				return sentences;
+			} catch (IOException | RuntimeException e){
+				System.err.println("Ignoring invalid annotation cache entry "+key+": "+e);
+			}
+		}
+		count(misses, SPLIT);
+		List<CoreLabel> sentences = withTokens ? splitter.splitWithTokens(text) : splitter.split(text);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(bytes)){
+			writeLabels(out, sentences);
+			if(withTokens){
+				for(CoreLabel sentence: sentences){
+					writeLabels(out, sentence.get(TokensAnnotation.class));
+				}
+			}
+			byte[] value = bytes.toByteArray();
+			put(key, value);
+			return readSentences(value, withTokens);
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the result of {@link Tokenizer#tokenize(String)}, taking it from the cache if the same tokenizer
+	 * has tokenized the same text before.
+	 * @param text
+	 * @param tokenizer
+	 * @param tokenizerID The identity of the tokenizer, which should be different for differently configured tokenizers
+	 * @return
+	 */
+	public List<CoreLabel> tokenize(String text, Tokenizer tokenizer, String tokenizerID){
+		String key = getKey(TOKENIZE, tokenizerID, text);
+		byte[] cached = get(key);
+		if(cached != null){
+			try{
+				List<CoreLabel> tokens = readLabels(new DataInputStream(new ByteArrayInputStream(cached)));
+				count(hits, TOKENIZE);
+				return tokens;
+			} catch (IOException | RuntimeException e){
+				System.err.println("Ignoring invalid annotation cache entry "+key+": "+e);
+			}
+		}
+		count(misses, TOKENIZE);
+		List<CoreLabel> tokens = tokenizer.tokenize(text);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(bytes)){
+			writeLabels(out, tokens);
+			byte[] value = bytes.toByteArray();
+			put(key, value);
+			return readLabels(new DataInputStream(new ByteArrayInputStream(value)));
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Sets the POS tags of the tokens as {@link POSTagger#tagCoreLabels(List)} does, taking the tags from the cache
+	 * if the same tagger has tagged the same words before.
+	 * @param tokens
+	 * @param posTagger
+	 * @param posTaggerID The identity of the POS tagger, which should be different for different models
+	 * @return The input list, with the {@link CoreLabel#tag()} set
+	 */
+	public List<CoreLabel> tag(List<CoreLabel> tokens, POSTagger posTagger, String posTaggerID){
+		List<String> words = new ArrayList<String>(tokens.size());
+		for(CoreLabel token: tokens){
+			words.add(token.word());
+		}
+		String key = getKey(TAG, posTaggerID, words.toArray(new String[words.size()]));
+		byte[] cached = get(key);
+		if(cached != null){
+			try{
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(cached));
+				String[] tags = new String[in.readInt()];
+				if(tags.length != tokens.size()){
+					throw new IOException("Expected "+tokens.size()+" tags, found "+tags.length);
+				}
+				for(int i=0; i<tags.length; i++){
+					tags[i] = ACEDocumentCache.readString(in);
+				}
+				for(int i=0; i<tags.length; i++){
+					tokens.get(i).setTag(tags[i]);
+				}
+				count(hits, TAG);
+				return tokens;
+			} catch (IOException | RuntimeException e){
+				System.err.println("Ignoring invalid annotation cache entry "+key+": "+e);
+			}
+		}
+		count(misses, TAG);
+		posTagger.tagCoreLabels(tokens);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(bytes)){
+			out.writeInt(tokens.size());
+			for(CoreLabel token: tokens){
+				ACEDocumentCache.writeString(out, token.tag());
+			}
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+		put(key, bytes.toByteArray());
+		return tokens;
+	}
+
+	/**
+	 * Returns a sentence splitter which splits with the given splitter through this cache,
+	 * using the class name as the identity
+	 * @param splitter
+	 * @return
+	 */
+	public SentenceSplitter wrap(SentenceSplitter splitter){
+		return wrap(splitter, splitter.getClass().getName());
+	}
+
+	/**
+	 * Returns a sentence splitter which splits with the given splitter through this cache.<br>
+	 * Only {@link SentenceSplitter#split(String)} and {@link SentenceSplitter#splitWithTokens(String)} are cached.
+	 * @param splitter
+	 * @param splitterID The identity of the splitter, which should be different for differently configured splitters
+	 * @return
+	 */
+	public SentenceSplitter wrap(SentenceSplitter splitter, String splitterID){
+		return new SentenceSplitter(){
+			@Override
+			public boolean isThreadSafe(){
+				return splitter.isThreadSafe();
+			}
+
+			@Override
+			public String[] splitToString(String input){
+				return splitter.splitToString(input);
+			}
+
+			@Override
+			public List<CoreLabel> split(String input){
+				return ACEAnnotationCache.this.split(input, splitter, splitterID, false);
+			}
+
+			@Override
+			public List<CoreLabel> splitWithTokens(String input){
+				return ACEAnnotationCache.this.split(input, splitter, splitterID, true);
+			}
+		};
+	}
+
+	/**
+	 * Returns a tokenizer which tokenizes with the given tokenizer through this cache,
+	 * using the class name as the identity
+	 * @param tokenizer
+	 * @return
+	 */
+	public Tokenizer wrap(Tokenizer tokenizer){
+		return wrap(tokenizer, tokenizer.getClass().getName());
+	}
+
+	/**
+	 * Returns a tokenizer which tokenizes with the given tokenizer through this cache.<br>
+	 * Only {@link Tokenizer#tokenize(String)} is cached.
+	 * @param tokenizer
+	 * @param tokenizerID The identity of the tokenizer, which should be different for differently configured tokenizers
+	 * @return
+	 */
+	public Tokenizer wrap(Tokenizer tokenizer, String tokenizerID){
+		return new Tokenizer(){
+			@Override
+			public boolean isThreadSafe(){
+				return tokenizer.isThreadSafe();
+			}
+
+			@Override
+			public String[] tokenizeToString(String sentence){
+				return tokenizer.tokenizeToString(sentence);
+			}
+
+			@Override
+			public List<CoreLabel> tokenize(String sentence){
+				return ACEAnnotationCache.this.tokenize(sentence, tokenizer, tokenizerID);
+			}
+		};
+	}
+
+	/**
+	 * Returns a POS tagger which tags with the given POS tagger through this cache,
+	 * using the class name as the identity
+	 * @param posTagger
+	 * @return
+	 */
+	public POSTagger wrap(POSTagger posTagger){
+		return wrap(posTagger, posTagger.getClass().getName());
+	}
+
+	/**
+	 * Returns a POS tagger which tags with the given POS tagger through this cache.<br>
+	 * Only {@link POSTagger#tagCoreLabels(List)} is cached.
+	 * @param posTagger
+	 * @param posTaggerID The identity of the POS tagger, which should be different for different models
+	 * @return
+	 */
+	public POSTagger wrap(POSTagger posTagger, String posTaggerID){
+		return new POSTagger(){
+			@Override
+			public boolean isThreadSafe(){
+				return posTagger.isThreadSafe();
+			}
+
+			@Override
+			public List<String> tag(String sentence){
+				return posTagger.tag(sentence);
+			}
+
+			@Override
+			public List<String> tag(List<String> sentence){
+				return posTagger.tag(sentence);
+			}
+
+			@Override
+			public List<CoreLabel> tagCoreLabels(List<CoreLabel> sentence){
+				return ACEAnnotationCache.this.tag(sentence, posTagger, posTaggerID);
+			}
+		};
+	}
+
+	/**
+	 * Writes the cache to {@link #cacheFile} if it has been modified.
+	 * The file is replaced only after the new content is completely written.
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException{
+		if(!modified){
+			return;
+		}
+		modified = false;
+		File tmpFile = new File(cacheFile.getPath()+".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))){
+			List<Map.Entry<String, byte[]>> snapshot;
+			synchronized(entries){
+				snapshot = new ArrayList<Map.Entry<String, byte[]>>(entries.entrySet());
+			}
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(snapshot.size());
+			for(Map.Entry<String, byte[]> entry: snapshot){
+				ACEDocumentCache.writeString(out, entry.getKey());
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+		} catch (IOException e){
+			modified = true;
+			throw e;
+		}
+		Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void load() throws IOException{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))){
+			if(in.readInt() != MAGIC){
+				throw new IOException("Not an annotation cache");
+			}
+			int version = in.readInt();
+			if(version != FORMAT_VERSION){
+				throw new IOException("Unsupported format version "+version);
+			}
+			int numEntries = in.readInt();
+			for(int i=0; i<numEntries; i++){
+				String key = ACEDocumentCache.readString(in);
+				byte[] value = new byte[in.readInt()];
+				in.readFully(value);
+				store(key, value);
+			}
+		}
+	}
+
+	private byte[] get(String key){
+		synchronized(entries){
+			return entries.get(key);
+		}
+	}
+
+	private void put(String key, byte[] value){
+		store(key, value);
+		modified = true;
+	}
+
+	/**
+	 * Stores the result, then removes the least recently used results until the total size is at most
+	 * {@link #maxSize}, keeping at least the new result
+	 */
+	private void store(String key, byte[] value){
+		synchronized(entries){
+			byte[] previous = entries.put(key, value);
+			entriesSize += value.length - (previous == null ? 0 : previous.length);
+			Iterator<byte[]> iterator = entries.values().iterator();
+			while(entriesSize > maxSize && entries.size() > 1){
+				entriesSize -= iterator.next().length;
+				iterator.remove();
+			}
+		}
+	}
+
+	private static List<CoreLabel> readSentences(byte[] bytes, boolean withTokens) throws IOException{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		List<CoreLabel> sentences = readLabels(in);
+		if(withTokens){
+			for(CoreLabel sentence: sentences){
+				sentence.set(TokensAnnotation.class, readLabels(in));
+			}
+		}
+		return sentences;
+	}
+
+	private static void count(Map<String, AtomicInteger> counts, String stage){
+		counts.computeIfAbsent(stage, s -> new AtomicInteger()).incrementAndGet();
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-1 of the stage, the component identity, and the inputs,
+	 * each prefixed by its length so that different inputs cannot give the same bytes
+	 */
+	private static String getKey(String stage, String componentID, String... inputs){
+		MessageDigest digest;
+		try{
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e){
+			throw new RuntimeException(e);
+		}
+		update(digest, stage);
+		update(digest, componentID);
+		for(String input: inputs){
+			update(digest, input);
+		}
+		StringBuilder key = new StringBuilder(40);
+		for(byte b: digest.digest()){
+			key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.toString();
+	}
+
+	private static void update(MessageDigest digest, String value){
+		if(value == null){
+			value = "";
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		digest.update(new byte[]{(byte)(bytes.length >>> 24), (byte)(bytes.length >>> 16),
+				(byte)(bytes.length >>> 8), (byte)bytes.length});
+		digest.update(bytes);
+	}
+
+	/**
+	 * Writes the offsets and the texts of the labels, which are all that is used from the sentences and the tokens
+	 */
+	private static void writeLabels(DataOutputStream out, List<CoreLabel> labels) throws IOException{
+		out.writeInt(labels.size());
+		for(CoreLabel label: labels){
+			out.writeInt(label.beginPosition());
+			out.writeInt(label.endPosition());
+			ACEDocumentCache.writeString(out, label.value());
+			ACEDocumentCache.writeString(out, label.word());
+			ACEDocumentCache.writeString(out, label.originalText());
+			ACEDocumentCache.writeString(out, label.before());
+			ACEDocumentCache.writeString(out, label.after());
+		}
+	}
+
+	private static List<CoreLabel> readLabels(DataInputStream in) throws IOException{
+		int size = in.readInt();
+		List<CoreLabel> labels = new ArrayList<CoreLabel>(size);
+		for(int i=0; i<size; i++){
+			CoreLabel label = new CoreLabel();
+			label.setBeginPosition(in.readInt());
+			label.setEndPosition(in.readInt());
+			String value = ACEDocumentCache.readString(in);
+			String word = ACEDocumentCache.readString(in);
+			String originalText = ACEDocumentCache.readString(in);
+			String before = ACEDocumentCache.readString(in);
+			String after = ACEDocumentCache.readString(in);
+			// Only the texts which were set are set again, so the getters return the same values
+			if(value != null) label.setValue(value);
+			if(word != null) label.setWord(word);
+			if(originalText != null) label.setOriginalText(originalText);
+			if(before != null) label.setBefore(before);
+			if(after != null) label.setAfter(after);
+			labels.add(label);
+		}
+		return labels;
+	}
+
+}
@@ -0,0 +1,460 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Reads ACE documents directly from a .tar, .tgz (or .tar.gz), or .zip archive of an ACE corpus,
+ * without extracting it.<br>
+ *
+ * The archive is read in a single pass. The .sgm and .apf.xml entries of the same document are paired as they are
+ * decompressed, and each pair is parsed in parallel while the rest of the archive is being decompressed.
+ * Like the directories given to {@link ACEReader}, the documents are taken from the domain directories
+ * (e.g., nw/timex2norm for ACE 2005 and nwire for ACE 2004) directly inside a root directory.
+ * The root directory inside the archive can be given after {@link #ROOT_SEPARATOR} (e.g., corpus.tgz!data/English).
+ * If it is not given, the domain directories can be anywhere inside the archive, but they must all be in the same
+ * directory, so an archive with several languages (e.g., data/English and data/Arabic) needs the root directory.
+ * The documents are returned in the order of the paths of their .sgm entries, which is also the order of
+ * the documents read from a directory.
+ */
+public class ACEArchiveReader {
+
+	private static final String SGM_SUFFIX = ".sgm";
+	private static final String APF_SUFFIX = ".apf.xml";
+	private static final int TAR_BLOCK_SIZE = 512;
+
+	/** The separator between the path of an archive and the root directory inside it, as in corpus.tgz!data/English */
+	public static final char ROOT_SEPARATOR = '!';
+
+	private ACEArchiveReader(){}
+
+	/**
+	 * Returns whether the path is of an archive which can be read by this class, based on the extension.
+	 * @param path
+	 * @return
+	 */
+	public static boolean isArchive(String path){
+		String lowercased = getArchivePath(path).toLowerCase();
+		return lowercased.endsWith(".tgz") || lowercased.endsWith(".tar.gz") || lowercased.endsWith(".tar")
+				|| lowercased.endsWith(".zip");
+	}
+
+	/**
+	 * Returns the path of the archive, without the root directory inside it given after {@link #ROOT_SEPARATOR}
+	 * @param path
+	 * @return
+	 */
+	public static String getArchivePath(String path){
+		int separator = path.indexOf(ROOT_SEPARATOR);
+		return separator == -1 ? path : path.substring(0, separator);
+	}
+
+	/**
+	 * Returns the root directory inside the archive given after {@link #ROOT_SEPARATOR} (the empty string
+	 * for the top of the archive), or null if it is not given
+	 * @param path
+	 * @return
+	 */
+	public static String getRoot(String path){
+		int separator = path.indexOf(ROOT_SEPARATOR);
+		if(separator == -1){
+			return null;
+		}
+		String root = normalizePath(path.substring(separator+1));
+		while(root.endsWith("/")){
+			root = root.substring(0, root.length()-1);
+		}
+		return root;
+	}
+
+	/**
+	 * Reads the ACE documents in the given domains from the archive, parsing them using at most numThreads threads.<br>
+	 * The domain directories can be anywhere inside the archive, as long as they are all in the same directory.
+	 * @param archive The .tar, .tgz, .tar.gz, or .zip file
+	 * @param domains The names of the domain directories to be included
+	 * @param subdirName The directory inside each domain directory containing the documents (e.g., timex2norm),
+	 * 					 or null if the documents are directly in the domain directories
+	 * @param excludeMetadata Whether to exclude the text before the &lt;body&gt; tag.
+	 * @param useStreamingParser Whether to read the .apf.xml files with the streaming parser instead of the DOM parser.
+	 * @param numThreads The maximum number of documents parsed at the same time.
+	 * @return
+	 * @throws IOException If the archive cannot be read, or the domain directories are in more than one directory
+	 * @throws SAXException
+	 */
+	public static List<ACEDocument> readDocuments(File archive, Collection<String> domains, String subdirName,
+			boolean excludeMetadata, boolean useStreamingParser, int numThreads) throws IOException, SAXException{
+		return readDocuments(archive, null, domains, subdirName, excludeMetadata, useStreamingParser, numThreads);
+	}
+
+	/**
+	 * Reads the ACE documents in the given domains from the archive, parsing them using at most numThreads threads.
+	 * @param archive The .tar, .tgz, .tar.gz, or .zip file
+	 * @param root The directory inside the archive containing the domain directories (e.g., data/English),
+	 * 			   the empty string for the top of the archive, or null to find it
+	 * @param domains The names of the domain directories to be included
+	 * @param subdirName The directory inside each domain directory containing the documents (e.g., timex2norm),
+	 * 					 or null if the documents are directly in the domain directories
+	 * @param excludeMetadata Whether to exclude the text before the &lt;body&gt; tag.
+	 * @param useStreamingParser Whether to read the .apf.xml files with the streaming parser instead of the DOM parser.
+	 * @param numThreads The maximum number of documents parsed at the same time.
+	 * @return
+	 * @throws IOException If the archive cannot be read, or the root is null and the domain directories are
+	 * 					   in more than one directory
+	 * @throws SAXException
+	 */
+	public static List<ACEDocument> readDocuments(File archive, String root, Collection<String> domains, String subdirName,
+			boolean excludeMetadata, boolean useStreamingParser, int numThreads) throws IOException, SAXException{
+		List<ACEDocument> result = new ArrayList<ACEDocument>();
+		List<Future<ACEDocument>> futures = submitDocuments(archive, root, domains, subdirName, excludeMetadata,
+				useStreamingParser, numThreads, null, null);
+		try{
+			for(Future<ACEDocument> future: futures){
+				result.add(ACEReader.getDocument(future));
+			}
+		} catch (IOException | SAXException | RuntimeException e) {
+			for(Future<ACEDocument> future: futures){
+				future.cancel(true);
+			}
+			throw e;
+		}
+		return result;
+	}
+
+	/**
+	 * Submits the parsing of each document in the archive as it is decompressed, calling onRead (if not null)
+	 * on each document right after it is parsed.<br>
+	 * Returns the futures in the order of the paths of the .sgm entries, which are added to sgmPaths if it is not null.<br>
+	 * If the archive cannot be read, the documents already submitted are cancelled before the exception is thrown.
+	 */
+	static List<Future<ACEDocument>> submitDocuments(File archive, String root, Collection<String> domains,
+			String subdirName, boolean excludeMetadata, boolean useStreamingParser, int numThreads,
+			Consumer<ACEDocument> onRead, List<String> sgmPaths) throws IOException{
+		ACEReader.registerEntityTypeLabels();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		// The entries waiting for the other file of the same document, by the path without the extension
+		Map<String, byte[]> unpairedSgm = new HashMap<String, byte[]>();
+		Map<String, byte[]> unpairedApf = new HashMap<String, byte[]>();
+		Map<String, Future<ACEDocument>> futures = new TreeMap<String, Future<ACEDocument>>();
+		// The directory containing the domain directories, found from the first document if not given
+		String[] foundRoot = new String[]{root};
+		try{
+			forEachEntry(archive, (path, content) -> {
+				String parent = getDomainParent(path, domains, subdirName);
+				if(parent == null || (root != null && !parent.equals(root))){
+					return false;
+				}
+				if(foundRoot[0] == null){
+					foundRoot[0] = parent;
+				} else if(!parent.equals(foundRoot[0])){
+					throw new IOException("The domain directories are in both \""+foundRoot[0]+"\" and \""+parent+"\" in "
+							+archive+", specify the directory to read as "+archive+ROOT_SEPARATOR+"<directory>");
+				}
+				if(content == null){
+					return true;
+				}
+				boolean isSgm = path.endsWith(SGM_SUFFIX);
+				String key = path.substring(0, path.length()-(isSgm ? SGM_SUFFIX : APF_SUFFIX).length());
+				byte[] sgm = isSgm ? content : unpairedSgm.remove(key);
+				byte[] apf = isSgm ? unpairedApf.remove(key) : content;
+				if(sgm == null){
+					unpairedApf.put(key, apf);
+				} else if(apf == null){
+					unpairedSgm.put(key, sgm);
+				} else {
+					futures.put(key+SGM_SUFFIX, executor.submit(() -> {
+						ACEDocument doc = new ACEDocument(new ByteArrayInputStream(sgm), new ByteArrayInputStream(apf),
+								excludeMetadata, useStreamingParser);
+						if(onRead != null){
+							onRead.accept(doc);
+						}
+						return doc;
+					}));
+				}
+				return true;
+			});
+		} catch (IOException | RuntimeException e){
+			// Stop parsing the documents of the archive, which is not read completely
+			for(Future<ACEDocument> future: futures.values()){
+				future.cancel(true);
+			}
+			throw e;
+		} finally {
+			executor.shutdown();
+		}
+		for(String key: unpairedSgm.keySet()){
+			System.err.println("Missing "+APF_SUFFIX+" file for "+key+SGM_SUFFIX+" in "+archive);
+		}
+		if(sgmPaths != null){
+			sgmPaths.addAll(futures.keySet());
+		}
+		return new ArrayList<Future<ACEDocument>>(futures.values());
+	}
+
+	/**
+	 * Returns the directory containing the domain directory (the empty string for the top of the archive)
+	 * if the entry is a .sgm or .apf.xml file inside one of the domain directories, or null otherwise
+	 */
+	private static String getDomainParent(String path, Collection<String> domains, String subdirName){
+		if(!path.endsWith(SGM_SUFFIX) && !path.endsWith(APF_SUFFIX)){
+			return null;
+		}
+		String[] parts = path.split("/");
+		int domainIndex = parts.length - (subdirName == null ? 2 : 3);
+		if(domainIndex < 0 || !domains.contains(parts[domainIndex])
+				|| (subdirName != null && !parts[parts.length-2].equals(subdirName))){
+			return null;
+		}
+		return String.join("/", Arrays.asList(parts).subList(0, domainIndex));
+	}
+
+	/**
+	 * A handler of the files in an archive
+	 */
+	interface EntryHandler {
+		/**
+		 * Called first with null content to check whether the file is needed, and if so,
+		 * called again with the content of the file.
+		 * @param path The path of the file in the archive
+		 * @param content The content of the file, or null
+		 * @return Whether the file is needed, when the content is null
+		 */
+		public boolean handle(String path, byte[] content) throws IOException;
+	}
+
+	/**
+	 * Calls the handler on each regular file in the archive, in the order they are stored.
+	 * @param archive
+	 * @param handler
+	 * @throws IOException
+	 */
+	static void forEachEntry(File archive, EntryHandler handler) throws IOException{
+		String lowercased = archive.getName().toLowerCase();
+		try(InputStream fileStream = new BufferedInputStream(new FileInputStream(archive), 1 << 16)){
+			if(lowercased.endsWith(".zip")){
+				forEachZipEntry(fileStream, handler);
+			} else if(lowercased.endsWith(".tar")){
+				forEachTarEntry(fileStream, handler);
+			} else {
+				forEachTarEntry(new BufferedInputStream(new GZIPInputStream(fileStream, 1 << 16), 1 << 16), handler);
+			}
+		}
+	}
+
+	private static void forEachZipEntry(InputStream in, EntryHandler handler) throws IOException{
+		ZipInputStream zipStream = new ZipInputStream(in, StandardCharsets.UTF_8);
+		ZipEntry entry;
+		while((entry = zipStream.getNextEntry()) != null){
+			if(entry.isDirectory()){
+				continue;
+			}
+			String path = normalizePath(entry.getName());
+			if(handler.handle(path, null)){
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				byte[] buffer = new byte[1 << 16];
+				int read;
+				while((read = zipStream.read(buffer)) != -1){
+					content.write(buffer, 0, read);
+				}
+				handler.handle(path, content.toByteArray());
+			}
+		}
+	}
+
+	/**
+	 * Reads a tar stream in the ustar format, including the GNU long names and the paths in the pax headers.
+	 */
+	private static void forEachTarEntry(InputStream in, EntryHandler handler) throws IOException{
+		byte[] header = new byte[TAR_BLOCK_SIZE];
+		String longPath = null;
+		while(true){
+			if(!readBlock(in, header)){
+				// The archive ended without the end-of-archive blocks
+				return;
+			}
+			if(isZeroBlock(header)){
+				return;
+			}
+			long size = parseSize(header);
+			char type = (char)header[156];
+			if(type == 'L' || type == 'x'){
+				// The path of the next entry, either directly (GNU) or as one of the pax records
+				byte[] data = readData(in, size);
+				longPath = type == 'L' ? parseName(data, 0, data.length) : parsePaxPath(data);
+				continue;
+			}
+			String path = longPath;
+			longPath = null;
+			if(path == null){
+				path = parseName(header, 0, 100);
+				String prefix = parseName(header, 345, 155);
+				if(prefix.length() > 0 && isUstar(header)){
+					path = prefix+"/"+path;
+				}
+			}
+			path = normalizePath(path);
+			boolean isFile = type == '0' || type == '\0' || type == '7';
+			if(isFile && handler.handle(path, null)){
+				handler.handle(path, readData(in, size));
+			} else {
+				skipData(in, size);
+			}
+		}
+	}
+
+	private static boolean readBlock(InputStream in, byte[] block) throws IOException{
+		int total = 0;
+		while(total < block.length){
+			int read = in.read(block, total, block.length-total);
+			if(read == -1){
+				if(total == 0){
+					return false;
+				}
+				throw new EOFException("Truncated tar archive");
+			}
+			total += read;
+		}
+		return true;
+	}
+
+	private static boolean isZeroBlock(byte[] block){
+		for(byte b: block){
+			if(b != 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isUstar(byte[] header){
+		return header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a' && header[261] == 'r';
+	}
+
+	/**
+	 * Parses the size field, which is either an octal number or, if the first bit is set, a big-endian binary number
+	 */
+	private static long parseSize(byte[] header){
+		long size = 0;
+		if((header[124] & 0x80) != 0){
+			for(int i=125; i<136; i++){
+				size = (size << 8) | (header[i] & 0xff);
+			}
+			return size;
+		}
+		for(int i=124; i<136; i++){
+			byte b = header[i];
+			if(b >= '0' && b <= '7'){
+				size = size*8 + (b-'0');
+			} else if(b == 0 || (b == ' ' && size > 0)){
+				break;
+			}
+		}
+		return size;
+	}
+
+	private static String parseName(byte[] data, int start, int length){
+		int end = start;
+		while(end < start+length && data[end] != 0){
+			end++;
+		}
+		return new String(data, start, end-start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the path in the pax extended header records, each in the format "length key=value\n", or null if none
+	 */
+	private static String parsePaxPath(byte[] data){
+		int pos = 0;
+		while(pos < data.length){
+			int space = pos;
+			while(space < data.length && data[space] != ' '){
+				space++;
+			}
+			if(space == data.length){
+				break;
+			}
+			int length = Integer.parseInt(new String(data, pos, space-pos, StandardCharsets.UTF_8));
+			if(length <= 0){
+				break;
+			}
+			String record = new String(data, space+1, pos+length-space-2, StandardCharsets.UTF_8);
+			if(record.startsWith("path=")){
+				return record.substring("path=".length());
+			}
+			pos += length;
+		}
+		return null;
+	}
+
+	private static byte[] readData(InputStream in, long size) throws IOException{
+		if(size > Integer.MAX_VALUE-TAR_BLOCK_SIZE){
+			throw new IOException("Tar entry too large: "+size+" bytes");
+		}
+		byte[] data = new byte[(int)size];
+		int total = 0;
+		while(total < data.length){
+			int read = in.read(data, total, data.length-total);
+			if(read == -1){
+				throw new EOFException("Truncated tar archive");
+			}
+			total += read;
+		}
+		skipFully(in, padding(size));
+		return data;
+	}
+
+	private static void skipData(InputStream in, long size) throws IOException{
+		skipFully(in, size+padding(size));
+	}
+
+	/**
+	 * The number of bytes after the data to fill the last block
+	 */
+	private static long padding(long size){
+		return (TAR_BLOCK_SIZE - size % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+	}
+
+	private static void skipFully(InputStream in, long count) throws IOException{
+		while(count > 0){
+			long skipped = in.skip(count);
+			if(skipped <= 0){
+				if(in.read() == -1){
+					throw new EOFException("Truncated tar archive");
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	private static String normalizePath(String path){
+		path = path.replace('\\', '/');
+		while(path.startsWith("./")){
+			path = path.substring(2);
+		}
+		return path;
+	}
+
+}
@@ -0,0 +1,351 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.xml.sax.SAXException;
+
+import justhalf.nlp.sentencesplitter.SentenceSplitter;
+
+/**
+ * <p>A read-only store of ACE documents in a single file, which is memory-mapped so that a large corpus can be
+ * iterated with a small heap.</p>
+ *
+ * <p>The documents are stored in the binary format of {@link ACEDocumentCache}, followed by an index of the
+ * document positions. Only the index is kept on the heap. The {@link ACEDocument} objects are decoded from the
+ * mapped file when they are accessed through {@link #get(int)}, and the most recently accessed documents are
+ * kept in a small LRU cache. The text of a document can be read through {@link #getText(int)} without decoding
+ * the annotations, and the sentences can be iterated with {@link #sentences(SentenceSplitter, boolean, boolean)},
+ * which splits one document at a time.</p>
+ *
+ * <p>The laziness is per document: {@link #get(int)} decodes the whole document, with all its text, objects,
+ * and mentions, since the mentions refer to each other and to the public lists of {@link ACEDocument}.
+ * The annotation tables of a document are not decoded separately on demand, so the heap holds the documents
+ * in the LRU cache (and the ones still referenced by the caller) in full.</p>
+ *
+ * <p>Use {@link #write(File, Iterable)} or {@link #write(File, List, boolean, boolean)} to create the store.</p>
+ */
+public class ACECorpusStore extends AbstractList<ACEDocument> implements RandomAccess, Closeable {
+
+	private static final int MAGIC = 0x41434553; // "ACES"
+	private static final int FORMAT_VERSION = 2;
+	/** The magic, format version, document count, and the position of the index */
+	private static final int TRAILER_SIZE = 4+4+4+8;
+	/** The maximum size of each mapped region of the file */
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+	public static final int DEFAULT_CACHE_SIZE = 16;
+
+	/** The file storing the documents */
+	public final File storeFile;
+	private FileChannel channel;
+	private List<MappedByteBuffer> segments;
+	private int[] docSegments;
+	private int[] docOffsets;
+	private int[] docLengths;
+	private Map<Integer, ACEDocument> cache;
+
+	/**
+	 * Opens the store in the given file, keeping {@link #DEFAULT_CACHE_SIZE} recently accessed documents.
+	 * @param storeFile
+	 * @throws IOException
+	 */
+	public ACECorpusStore(File storeFile) throws IOException{
+		this(storeFile, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Opens the store in the given file, keeping at most cacheSize recently accessed documents.
+	 * @param storeFile
+	 * @param cacheSize
+	 * @throws IOException
+	 */
+	public ACECorpusStore(File storeFile, int cacheSize) throws IOException{
+		this.storeFile = storeFile;
+		this.channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ);
+		try{
+			readIndex();
+		} catch (IOException | RuntimeException e){
+			channel.close();
+			throw e;
+		}
+		this.cache = new LinkedHashMap<Integer, ACEDocument>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ACEDocument> eldest){
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	private void readIndex() throws IOException{
+		long fileSize = channel.size();
+		if(fileSize < TRAILER_SIZE){
+			throw new IOException("Not an ACE corpus store: "+storeFile);
+		}
+		ByteBuffer trailer = channel.map(MapMode.READ_ONLY, fileSize-TRAILER_SIZE, TRAILER_SIZE);
+		long indexPosition = trailer.getLong();
+		int numDocs = trailer.getInt();
+		int version = trailer.getInt();
+		if(trailer.getInt() != MAGIC){
+			throw new IOException("Not an ACE corpus store: "+storeFile);
+		}
+		if(version != FORMAT_VERSION){
+			throw new IOException("Unsupported format version "+version+" in "+storeFile);
+		}
+		ByteBuffer index = channel.map(MapMode.READ_ONLY, indexPosition, 12L*numDocs);
+		long[] positions = new long[numDocs];
+		docLengths = new int[numDocs];
+		for(int i=0; i<numDocs; i++){
+			positions[i] = index.getLong();
+			docLengths[i] = index.getInt();
+		}
+
+		// Map the documents in segments, each containing whole documents
+		segments = new ArrayList<MappedByteBuffer>();
+		docSegments = new int[numDocs];
+		docOffsets = new int[numDocs];
+		int firstDoc = 0;
+		for(int i=0; i<=numDocs; i++){
+			if(i == numDocs || (i > firstDoc && positions[i]+docLengths[i]-positions[firstDoc] > MAX_SEGMENT_SIZE)){
+				if(i > firstDoc){
+					long segmentEnd = positions[i-1]+docLengths[i-1];
+					segments.add(channel.map(MapMode.READ_ONLY, positions[firstDoc], segmentEnd-positions[firstDoc]));
+				}
+				firstDoc = i;
+			}
+			if(i < numDocs){
+				docSegments[i] = segments.size();
+				docOffsets[i] = (int)(positions[i]-positions[firstDoc]);
+			}
+		}
+	}
+
+	@Override
+	public int size(){
+		return docLengths.length;
+	}
+
+	/**
+	 * Returns the document at the given index, decoding it from the file if it is not in the cache.
+	 */
+	@Override
+	public ACEDocument get(int index){
+		if(index < 0 || index >= size()){
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size());
+		}
+		synchronized(cache){
+			ACEDocument doc = cache.get(index);
+			if(doc != null){
+				return doc;
+			}
+		}
+		ACEDocument doc;
+		try{
+			doc = ACEDocumentCache.readDocument(new DataInputStream(openDocument(index)));
+		} catch (IOException e){
+			throw new RuntimeException("Cannot read document "+index+" from "+storeFile, e);
+		}
+		synchronized(cache){
+			ACEDocument cachedDoc = cache.putIfAbsent(index, doc);
+			return cachedDoc == null ? doc : cachedDoc;
+		}
+	}
+
+	/**
+	 * Returns the text of the document at the given index, without decoding the annotations.
+	 * @param index
+	 * @return
+	 */
+	public String getText(int index){
+		ByteBuffer buffer = getDocumentBuffer(index);
+		// The text is the first field written by ACEDocumentCache.writeDocument
+		int length = buffer.getInt();
+		if(length < 0){
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the sentences of all documents as split by {@link ACEReader#getSentences(ACEDocument, SentenceSplitter, boolean, boolean)},
+	 * splitting each document only when its sentences are reached.
+	 * @param splitter The sentence splitter
+	 * @param ignoreOverlappingEntities Whether to ignore overlapping entities by removing the
+	 * 									shorter one when there is an overlap.
+	 * @param keepTokens Whether to keep the tokens produced by the sentence splitter in {@link ACESentence#tokens}.
+	 * @return
+	 */
+	public Iterable<ACESentence> sentences(SentenceSplitter splitter, boolean ignoreOverlappingEntities,
+			boolean keepTokens){
+		return () -> new Iterator<ACESentence>(){
+			private int docIndex = 0;
+			private Iterator<ACESentence> docSentences = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext(){
+				while(!docSentences.hasNext() && docIndex < size()){
+					ACEDocument doc = get(docIndex++);
+					docSentences = ACEReader.getSentences(doc, splitter, ignoreOverlappingEntities, keepTokens).iterator();
+				}
+				return docSentences.hasNext();
+			}
+
+			@Override
+			public ACESentence next(){
+				if(!hasNext()){
+					throw new NoSuchElementException();
+				}
+				return docSentences.next();
+			}
+		};
+	}
+
+	private ByteBuffer getDocumentBuffer(int index){
+		ByteBuffer buffer = segments.get(docSegments[index]).duplicate();
+		buffer.position(docOffsets[index]);
+		buffer.limit(docOffsets[index]+docLengths[index]);
+		return buffer;
+	}
+
+	private InputStream openDocument(int index){
+		ByteBuffer buffer = getDocumentBuffer(index);
+		return new InputStream(){
+			@Override
+			public int read(){
+				return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length){
+				if(!buffer.hasRemaining()){
+					return -1;
+				}
+				length = Math.min(length, buffer.remaining());
+				buffer.get(bytes, offset, length);
+				return length;
+			}
+		};
+	}
+
+	/**
+	 * Closes the file. The documents already returned are still usable.
+	 */
+	@Override
+	public void close() throws IOException{
+		synchronized(cache){
+			cache.clear();
+		}
+		channel.close();
+	}
+
+	/**
+	 * Writes the given documents into a store file.
+	 * The documents are written one by one, so they can be produced lazily by the iterable.
+	 * @param storeFile
+	 * @param docs
+	 * @throws IOException
+	 */
+	public static void write(File storeFile, Iterable<ACEDocument> docs) throws IOException{
+		try(Writer writer = new Writer(storeFile)){
+			for(ACEDocument doc: docs){
+				writer.add(doc);
+			}
+		} catch (IOException | RuntimeException e){
+			storeFile.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the given ACE documents one at a time and writes them into a store file,
+	 * so that only one document is kept on the heap at any time.
+	 * @param storeFile
+	 * @param fileList The list of .sgm files to be read. The .apf.xml files are expected in the same directory.
+	 * @param excludeMetadata Whether to exclude the text before the &lt;body&gt; tag.
+	 * @param useStreamingParser Whether to read the .apf.xml files with the streaming parser instead of the DOM parser.
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	public static void write(File storeFile, List<File> fileList, boolean excludeMetadata, boolean useStreamingParser)
+			throws IOException, SAXException{
+		try(Writer writer = new Writer(storeFile)){
+			for(File sgmFile: fileList){
+				writer.add(new ACEDocument(sgmFile.getAbsolutePath(), excludeMetadata, useStreamingParser));
+			}
+		} catch (IOException | SAXException | RuntimeException e){
+			// Do not leave an incomplete store
+			storeFile.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes documents into a store file. The index is written when the writer is closed.
+	 */
+	private static class Writer implements Closeable {
+		private DataOutputStream out;
+		private long position;
+		private List<Long> positions;
+		private List<Integer> lengths;
+
+		public Writer(File storeFile) throws IOException{
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile)));
+			this.positions = new ArrayList<Long>();
+			this.lengths = new ArrayList<Integer>();
+		}
+
+		public void add(ACEDocument doc) throws IOException{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream docOut = new DataOutputStream(bytes);
+			ACEDocumentCache.writeDocument(doc, docOut);
+			docOut.flush();
+			positions.add(position);
+			lengths.add(bytes.size());
+			bytes.writeTo(out);
+			position += bytes.size();
+		}
+
+		@Override
+		public void close() throws IOException{
+			try{
+				for(int i=0; i<positions.size(); i++){
+					out.writeLong(positions.get(i));
+					out.writeInt(lengths.get(i));
+				}
+				out.writeLong(position);
+				out.writeInt(positions.size());
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(MAGIC);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+}
@@ -25,6 +25,8 @@ import org.xml.sax.SAXException;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.util.XMLUtils;
 import justhalf.nlp.reader.acereader.ACERelation.ACERelationType;
+import justhalf.nlp.util.EntityUnescaper;
+import justhalf.nlp.util.TextIndex;
 
 /**
  * <p>Represents an ACE document</p>
@@ -40,6 +42,9 @@ import justhalf.nlp.reader.acereader.ACERelation.ACERelationType;
  * <p>The flag {@link #textInLowercase} marks whether the original source text is all in lowercase,
  * as in the case for Fisher transcript corpus in ACE 2004.</p>
  * 
+ * <p>The count {@link #numRealignedMentions} is the number of mentions whose offsets in the APF file
+ * do not match their text, and were moved to the nearest preceding occurrence of the text.</p>
+ * 
  * There are various list of canonical entities, grouped by class:
  * <ul>
  * <li>{@link #entities}: for named entities</li>
@@ -90,6 +95,7 @@ public class ACEDocument implements Serializable{
 	public String uri;
 	public boolean versionIsACE2004;
 	public boolean textInLowercase;
+	public int numRealignedMentions;
 	public List<ACEEntity> entities;
 	public List<ACEEntityMention> entityMentions;
 	public List<ACEValue> values;
@@ -102,31 +108,52 @@ public class ACEDocument implements Serializable{
 	public List<ACEEventMention> eventMentions;
 	public Map<String, ACEObject> objectsById;
 	public Map<String, ACEObjectMention<? extends ACEObject>> objectMentionsById;
-	
+
+	/**
+	 * Creates an empty document, whose fields are to be filled in by {@link ACEDocumentCache}
+	 */
+	ACEDocument(){}
+
 	public ACEDocument(String sgmFilename) throws IOException, SAXException {
 		this(sgmFilename, false);
 	}
 	
 	public ACEDocument(String sgmFilename, boolean excludeMetadata) throws IOException, SAXException {
-		this(sgmFilename, sgmFilename.replace(".sgm", ".apf.xml"), excludeMetadata);
+		this(sgmFilename, excludeMetadata, false);
+	}
+	
+	public ACEDocument(String sgmFilename, boolean excludeMetadata, boolean useStreamingParser) throws IOException, SAXException {
+		this(sgmFilename, sgmFilename.replace(".sgm", ".apf.xml"), excludeMetadata, useStreamingParser);
 	}
 	
 	public ACEDocument(String sgmFilename, String apfFilename, boolean excludeMetadata) throws IOException, SAXException {
+		this(sgmFilename, apfFilename, excludeMetadata, false);
+	}
+	
+	public ACEDocument(String sgmFilename, String apfFilename, boolean excludeMetadata, boolean useStreamingParser) throws IOException, SAXException {
 		this(IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(sgmFilename),
 			 IOUtils.getInputStreamFromURLOrClasspathOrFileSystem(apfFilename),
-			 excludeMetadata);
+			 excludeMetadata, useStreamingParser);
+	}
+	
+	public ACEDocument(InputStream sgmStream, InputStream apfStream, boolean excludeMetadata) throws IOException, SAXException{
+		this(sgmStream, apfStream, excludeMetadata, false);
 	}
 	
 	/**
 	 * Read an ACE document from the given source sgmStream and annotations apfStream.<br>
 	 * 
+	 * The annotations are read either by building the DOM of the APF file, or, if useStreamingParser is true,
+	 * in a single pass using {@link APFStreamParser}, which is faster and produces the same objects.
+	 * 
 	 * @param sgmStream
 	 * @param apfStream
 	 * @param excludeMetadata
+	 * @param useStreamingParser
 	 * @throws IOException
 	 * @throws SAXException
 	 */
-	public ACEDocument(InputStream sgmStream, InputStream apfStream, boolean excludeMetadata) throws IOException, SAXException{
+	public ACEDocument(InputStream sgmStream, InputStream apfStream, boolean excludeMetadata, boolean useStreamingParser) throws IOException, SAXException{
 		DOMParser parser = new DOMParser();
 		String sgmText = IOUtils.slurpInputStream(sgmStream, "UTF-8");
 		sgmText = sgmText.replaceAll("<(/)?BODY>", "<$1BODY_TEXT>");
@@ -159,6 +186,10 @@ public class ACEDocument implements Serializable{
 		
 		this.objectsById = new HashMap<String, ACEObject>();
 		this.objectMentionsById = new HashMap<String, ACEObjectMention<? extends ACEObject>>();
+		if(useStreamingParser){
+			new APFStreamParser(this).parse(apfStream);
+			return;
+		}
 		String apfText = IOUtils.slurpInputStream(apfStream, "UTF-8");
 		apfText = apfText.replaceAll("<(/)?head>", "<$1head_extent>");
 		parser = new DOMParser();
@@ -181,8 +212,16 @@ public class ACEDocument implements Serializable{
 	
 	private Span getSpan(Node charseq){
 		NamedNodeMap attributes = charseq.getAttributes();
-		int start = Integer.parseInt(getAttribute(attributes, "START"));
-		int end = Integer.parseInt(getAttribute(attributes, "END"))+1;
+		return getSpan(getAttribute(attributes, "START"), getAttribute(attributes, "END"));
+	}
+	
+	/**
+	 * Returns the span relative to {@link #text} of the given START and END attributes of a charseq tag,
+	 * in which the END is inclusive.
+	 */
+	Span getSpan(String startAttribute, String endAttribute){
+		int start = Integer.parseInt(startAttribute);
+		int end = Integer.parseInt(endAttribute)+1;
 		start -= this.offset;
 		end -= this.offset;
 		return new Span(start, end);
@@ -213,14 +252,27 @@ public class ACEDocument implements Serializable{
 		checkAndFixMentions(this.entityMentions);
 	}
 	
-	private void checkAndFixMentions(List<? extends ACEObjectMention<?>> mentions){
+	void checkAndFixMentions(List<? extends ACEObjectMention<?>> mentions){
 		int lastDiff = 0;
 		List<ACEObjectMention<?>> toBeRemoved = new ArrayList<ACEObjectMention<?>>();
+		// Built on the first misaligned mention, as most documents have none
+		TextIndex[] textIndex = new TextIndex[1];
 		for(ACEObjectMention<?> mention: mentions){
+			int start = mention.span.start;
+			int end = mention.span.end;
+			boolean realigned = false;
 			if(mention instanceof ACEEntityMention){
-				fixSpan(lastDiff, toBeRemoved, mention, ((ACEEntityMention)mention).headSpan, ((ACEEntityMention)mention).headText);
+				Span headSpan = ((ACEEntityMention)mention).headSpan;
+				int headStart = headSpan.start;
+				int headEnd = headSpan.end;
+				fixSpan(lastDiff, toBeRemoved, textIndex, mention, headSpan, ((ACEEntityMention)mention).headText);
+				realigned = headSpan.start != headStart || headSpan.end != headEnd;
+			}
+			lastDiff = fixSpan(lastDiff, toBeRemoved, textIndex, mention, mention.span, mention.text);
+			realigned |= mention.span.start != start || mention.span.end != end;
+			if(realigned && !toBeRemoved.contains(mention)){
+				numRealignedMentions += 1;
 			}
-			lastDiff = fixSpan(lastDiff, toBeRemoved, mention, mention.span, mention.text);
 		}
 		for(ACEObjectMention<?> mention: toBeRemoved){
 			mentions.remove(mention);
@@ -237,8 +289,8 @@ public class ACEDocument implements Serializable{
 		}
 	}
 
-	private int fixSpan(int lastDiff, List<ACEObjectMention<?>> toBeRemoved, ACEObjectMention<?> mention,
-			Span span, String text) throws RuntimeException {
+	private int fixSpan(int lastDiff, List<ACEObjectMention<?>> toBeRemoved, TextIndex[] textIndex,
+			ACEObjectMention<?> mention, Span span, String text) throws RuntimeException {
 		String originalText = text;
 		String unescapedOriginalText = unescape(originalText);
 		String actualText = null;
@@ -259,7 +311,10 @@ public class ACEDocument implements Serializable{
 		}
 		// The second disjunction to handle the case at APW_ENG_20030325.0786.sgm offset 905, which happens to map to the exact same word at 913
 		if(!actualText.equals(unescapedOriginalText) || actualText.equals("Welch")){
-			int index = this.text.lastIndexOf(unescapedOriginalText, Math.min(this.text.length(), span.start-lastDiff));
+			if(textIndex[0] == null){
+				textIndex[0] = new TextIndex(this.text);
+			}
+			int index = textIndex[0].lastIndexOf(unescapedOriginalText, Math.min(this.text.length(), span.start-lastDiff));
 			if(index == -1){
 				if(REMOVE_OOB_MENTIONS){
 					toBeRemoved.add(mention);
@@ -440,20 +495,25 @@ public class ACEDocument implements Serializable{
 			NamedNodeMap argAttributes = relationMentionArg.getAttributes();
 			String entityMentionID = getAttribute(argAttributes, versionIsACE2004 ? "ENTITYMENTIONID" : "REFID");
 			String argNumStr = getAttribute(argAttributes, versionIsACE2004 ? "ARGNUM" : "ROLE");
-			try{
-				int argNum = Integer.parseInt(argNumStr.substring(versionIsACE2004 ? 0 : 4));
-				String fullEntityMentionID = entityMentionID;
-				if(versionIsACE2004){
-					fullEntityMentionID = aceRelation.args[argNum-1].id+entityMentionID.substring(entityMentionID.indexOf("-"));
-				}
-				_entityMentions[argNum-1] = (ACEEntityMention)this.objectMentionsById.get(fullEntityMentionID);
-			} catch (NumberFormatException e){ // A timestamp
-				String timestampType = argNumStr;
-				String fullTimexMentionID = entityMentionID;
-				ACETimexMention timexMention = (ACETimexMention)objectMentionsById.get(fullTimexMentionID);
-				_timestamp[0] = timexMention;
-				_timestampType[0] = timestampType;
+			setRelationMentionArgument(aceRelation, entityMentionID, argNumStr, _entityMentions, _timestamp, _timestampType);
+		}
+	}
+	
+	void setRelationMentionArgument(ACERelation aceRelation, String entityMentionID, String argNumStr,
+									ACEEntityMention[] _entityMentions, ACETimexMention[] _timestamp, String[] _timestampType){
+		try{
+			int argNum = Integer.parseInt(argNumStr.substring(versionIsACE2004 ? 0 : 4));
+			String fullEntityMentionID = entityMentionID;
+			if(versionIsACE2004){
+				fullEntityMentionID = aceRelation.args[argNum-1].id+entityMentionID.substring(entityMentionID.indexOf("-"));
 			}
+			_entityMentions[argNum-1] = (ACEEntityMention)this.objectMentionsById.get(fullEntityMentionID);
+		} catch (NumberFormatException e){ // A timestamp
+			String timestampType = argNumStr;
+			String fullTimexMentionID = entityMentionID;
+			ACETimexMention timexMention = (ACETimexMention)objectMentionsById.get(fullTimexMentionID);
+			_timestamp[0] = timexMention;
+			_timestampType[0] = timestampType;
 		}
 	}
 	
@@ -468,16 +528,21 @@ public class ACEDocument implements Serializable{
 			NamedNodeMap relationArgAtts = relationArg.getAttributes();
 			String entityID = getAttribute(relationArgAtts, versionIsACE2004 ? "ENTITYID" : "REFID");
 			String roleNumStr = getAttribute(relationArgAtts, versionIsACE2004 ? "ARGNUM" : "ROLE");
-			// ACE2004: 1 or 2, ACE2005: Arg-1 or Arg-2
-			try{
-				int argNum = Integer.parseInt(roleNumStr.substring(versionIsACE2004 ? 0 : 4));
-				_entities[argNum-1] = (ACEEntity)this.objectsById.get(entityID);
-			} catch (NumberFormatException e){ // Means that this is timestamp
-				String timestampType = roleNumStr;
-				String timestampID = entityID;
-				_timestamp[0] = (ACETimex)this.objectsById.get(timestampID);
-				_timestampType[0] = timestampType;
-			}
+			setRelationArgument(entityID, roleNumStr, _entities, _timestamp, _timestampType);
+		}
+	}
+	
+	void setRelationArgument(String entityID, String roleNumStr,
+							 ACEEntity[] _entities, ACETimex[] _timestamp, String[] _timestampType){
+		// ACE2004: 1 or 2, ACE2005: Arg-1 or Arg-2
+		try{
+			int argNum = Integer.parseInt(roleNumStr.substring(versionIsACE2004 ? 0 : 4));
+			_entities[argNum-1] = (ACEEntity)this.objectsById.get(entityID);
+		} catch (NumberFormatException e){ // Means that this is timestamp
+			String timestampType = roleNumStr;
+			String timestampID = entityID;
+			_timestamp[0] = (ACETimex)this.objectsById.get(timestampID);
+			_timestampType[0] = timestampType;
 		}
 	}
 	
@@ -515,12 +580,16 @@ public class ACEDocument implements Serializable{
 			NamedNodeMap attributes = eventArgument.getAttributes();
 			String refId = getAttribute(attributes, "REFID");
 			String roleName = getAttribute(attributes, "ROLE");
-			if(roleName.startsWith("Time")){
-				aceEvent.addArgument("Time", this.objectsById.get(refId));
-				aceEvent.setTimestampType(roleName);
-			} else {
-				aceEvent.addArgument(roleName, this.objectsById.get(refId));
-			}
+			addEventArgument(aceEvent, refId, roleName);
+		}
+	}
+	
+	void addEventArgument(ACEEvent aceEvent, String refId, String roleName){
+		if(roleName.startsWith("Time")){
+			aceEvent.addArgument("Time", this.objectsById.get(refId));
+			aceEvent.setTimestampType(roleName);
+		} else {
+			aceEvent.addArgument(roleName, this.objectsById.get(refId));
 		}
 	}
 	
@@ -584,12 +653,13 @@ public class ACEDocument implements Serializable{
 		}
 	}
 	
+	/**
+	 * Unescapes &amp;amp;, &amp;lt;, and &amp;gt; (case-insensitively) in a single pass using {@link EntityUnescaper}.<br>
+	 * Returns the same string if there is nothing to unescape.
+	 * @param xml
+	 * @return
+	 */
 	public static String unescape(String xml){
-		String result = xml.replaceAll("(?i)&amp;", "&");
-		result = result.replaceAll("(?i)&lt;", "<");
-		result = result.replaceAll("(?i)&gt;", ">");
-//		result = result.replaceAll("(?i)&lt;", "<");
-//		result = result.replaceAll("(?i)&lt;", "<");
-		return result;
+		return EntityUnescaper.unescape(xml);
 	}
 }
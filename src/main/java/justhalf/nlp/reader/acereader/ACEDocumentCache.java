@@ -0,0 +1,800 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import justhalf.nlp.reader.acereader.ACEEntity.ACEEntitySpecificity;
+import justhalf.nlp.reader.acereader.ACEEntity.ACEEntitySubType;
+import justhalf.nlp.reader.acereader.ACEEntity.ACEEntityType;
+import justhalf.nlp.reader.acereader.ACEEntityMention.ACEGPEMentionRole;
+import justhalf.nlp.reader.acereader.ACEEntityMention.ACEMentionType;
+import justhalf.nlp.reader.acereader.ACEEntityMention.LDCMentionType;
+import justhalf.nlp.reader.acereader.ACERelationMention.ACERelationSyntacticClass;
+import justhalf.nlp.reader.acereader.ACERelationMention.ACETimestampType;
+
+/**
+ * <p>An on-disk cache of parsed {@link ACEDocument}s, so that a corpus only needs to be parsed once.</p>
+ *
+ * <p>The cache is a single file containing one entry for each document, keyed by the path of the .sgm file
+ * and whether the metadata is excluded. Each entry records the size, the last modified time, and the CRC32
+ * of both the .sgm and the .apf.xml files. An entry is used only if both files still have the same size and
+ * either the same last modified time or the same CRC32, so the cache is invalidated when the files change.</p>
+ *
+ * <p>The documents are stored in a compact binary format (not Java serialization), including all the entities,
+ * values, timexes, relations, events, their mentions, and the references between them. The mentions which
+ * were removed during parsing but are still referred to (e.g., through {@link ACEDocument#objectMentionsById})
+ * are also stored, so the loaded documents are the same as the parsed ones.
+ * The sentences ({@link ACEObjectMention#containingSentence}) are not stored, as they are only assigned later.</p>
+ *
+ * <p>The methods of this class are thread-safe. Use {@link #save()} to write the cache back to the file.</p>
+ */
+public class ACEDocumentCache {
+
+	private static final int MAGIC = 0x41434543; // "ACEC"
+	private static final int FORMAT_VERSION = 2;
+
+	// The kinds of the items in a document, in the order they are written
+	private static final byte ENTITY = 0;
+	private static final byte VALUE = 1;
+	private static final byte TIMEX = 2;
+	private static final byte ENTITY_MENTION = 3;
+	private static final byte VALUE_MENTION = 4;
+	private static final byte TIMEX_MENTION = 5;
+	private static final byte RELATION = 6;
+	private static final byte RELATION_MENTION = 7;
+	private static final byte EVENT = 8;
+	private static final byte EVENT_MENTION = 9;
+	private static final int NUM_KINDS = 10;
+
+	/** The file storing the cache */
+	public final File cacheFile;
+	private Map<String, Entry> entries;
+	private boolean modified;
+
+	private static class Entry {
+		public String sgmPath;
+		public FileInfo sgm;
+		public FileInfo apf;
+		public byte[] document;
+	}
+
+	private static class FileInfo {
+		public final long length;
+		public final long lastModified;
+		public final long crc;
+
+		public FileInfo(long length, long lastModified, long crc){
+			this.length = length;
+			this.lastModified = lastModified;
+			this.crc = crc;
+		}
+
+		public static FileInfo of(File file) throws IOException{
+			CRC32 crc = new CRC32();
+			crc.update(Files.readAllBytes(file.toPath()));
+			return new FileInfo(file.length(), file.lastModified(), crc.getValue());
+		}
+
+		/**
+		 * Checks whether the file is unchanged, comparing the CRC32 only when the last modified time differs.<br>
+		 * Returns this if the file is unchanged, the info with the new last modified time if only that has changed,
+		 * or null if the content has changed.
+		 * Since this may read the whole file, it is called without holding the lock of the cache.
+		 */
+		public FileInfo check(File file) throws IOException{
+			if(file.length() != length){
+				return null;
+			}
+			if(file.lastModified() == lastModified){
+				return this;
+			}
+			FileInfo current = of(file);
+			if(current.crc != crc){
+				return null;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Opens the cache stored in the given file, which will be created on {@link #save()} if it does not exist.<br>
+	 * If the file is not a valid cache file, the cache starts empty.
+	 * @param cacheFile
+	 * @throws IOException
+	 */
+	public ACEDocumentCache(File cacheFile) throws IOException{
+		this.cacheFile = cacheFile;
+		this.entries = new LinkedHashMap<String, Entry>();
+		if(cacheFile.exists()){
+			try{
+				load();
+			} catch (IOException e){
+				System.err.println("Ignoring invalid ACE document cache "+cacheFile+": "+e);
+				this.entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of documents in the cache
+	 * @return
+	 */
+	public synchronized int size(){
+		return entries.size();
+	}
+
+	/**
+	 * Returns the cached document read from the given .sgm file (and the corresponding .apf.xml file),
+	 * or null if it is not in the cache or the files have changed.
+	 * @param sgmFile
+	 * @param excludeMetadata
+	 * @return
+	 * @throws IOException
+	 */
+	public ACEDocument get(File sgmFile, boolean excludeMetadata) throws IOException{
+		String key = getKey(sgmFile, excludeMetadata);
+		Entry entry;
+		FileInfo sgm;
+		FileInfo apf;
+		synchronized(this){
+			entry = entries.get(key);
+			if(entry == null){
+				return null;
+			}
+			sgm = entry.sgm;
+			apf = entry.apf;
+		}
+		// The files are checked outside the lock, so other threads can use the cache while the checksums are computed
+		FileInfo currentSGM = sgm.check(sgmFile);
+		FileInfo currentAPF = currentSGM == null ? null : apf.check(getAPFFile(sgmFile));
+		synchronized(this){
+			// The entry may have been replaced or updated by another thread in the meantime
+			boolean isCurrent = entries.get(key) == entry && entry.sgm == sgm && entry.apf == apf;
+			if(currentSGM == null || currentAPF == null){
+				if(isCurrent){
+					entries.remove(key);
+					modified = true;
+				}
+				return null;
+			}
+			if(isCurrent && (currentSGM != sgm || currentAPF != apf)){
+				entry.sgm = currentSGM;
+				entry.apf = currentAPF;
+				modified = true;
+			}
+		}
+		try{
+			return readDocument(new DataInputStream(new ByteArrayInputStream(entry.document)));
+		} catch (IOException | RuntimeException e){
+			System.err.println("Ignoring invalid cache entry for "+sgmFile+": "+e);
+			synchronized(this){
+				entries.remove(key);
+				modified = true;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given document read from the given .sgm file (and the corresponding .apf.xml file).
+	 * @param sgmFile
+	 * @param excludeMetadata
+	 * @param doc
+	 * @throws IOException
+	 */
+	public void put(File sgmFile, boolean excludeMetadata, ACEDocument doc) throws IOException{
+		Entry entry = new Entry();
+		entry.sgmPath = sgmFile.getAbsolutePath();
+		entry.sgm = FileInfo.of(sgmFile);
+		entry.apf = FileInfo.of(getAPFFile(sgmFile));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeDocument(doc, out);
+		out.flush();
+		entry.document = bytes.toByteArray();
+		synchronized(this){
+			entries.put(getKey(sgmFile, excludeMetadata), entry);
+			modified = true;
+		}
+	}
+
+	/**
+	 * Writes the cache to {@link #cacheFile} if it has been modified.
+	 * The file is replaced only after the new content is completely written.
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException{
+		if(!modified){
+			return;
+		}
+		File tmpFile = new File(cacheFile.getPath()+".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(entries.size());
+			for(Map.Entry<String, Entry> keyEntry: entries.entrySet()){
+				Entry entry = keyEntry.getValue();
+				writeString(out, keyEntry.getKey());
+				writeString(out, entry.sgmPath);
+				writeFileInfo(out, entry.sgm);
+				writeFileInfo(out, entry.apf);
+				out.writeInt(entry.document.length);
+				out.write(entry.document);
+			}
+		}
+		Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		modified = false;
+	}
+
+	private void load() throws IOException{
+		try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath())))){
+			if(in.readInt() != MAGIC){
+				throw new IOException("Not an ACE document cache");
+			}
+			int version = in.readInt();
+			if(version != FORMAT_VERSION){
+				throw new IOException("Unsupported format version "+version);
+			}
+			int numEntries = in.readInt();
+			for(int i=0; i<numEntries; i++){
+				String key = readString(in);
+				Entry entry = new Entry();
+				entry.sgmPath = readString(in);
+				entry.sgm = readFileInfo(in);
+				entry.apf = readFileInfo(in);
+				entry.document = new byte[in.readInt()];
+				in.readFully(entry.document);
+				entries.put(key, entry);
+			}
+		}
+	}
+
+	private static String getKey(File sgmFile, boolean excludeMetadata){
+		return (excludeMetadata ? "1:" : "0:")+sgmFile.getAbsolutePath();
+	}
+
+	private static File getAPFFile(File sgmFile){
+		return new File(sgmFile.getPath().replace(".sgm", ".apf.xml"));
+	}
+
+	private static void writeFileInfo(DataOutputStream out, FileInfo info) throws IOException{
+		out.writeLong(info.length);
+		out.writeLong(info.lastModified);
+		out.writeLong(info.crc);
+	}
+
+	private static FileInfo readFileInfo(DataInputStream in) throws IOException{
+		return new FileInfo(in.readLong(), in.readLong(), in.readLong());
+	}
+
+	/**
+	 * Writes the document in the binary format used in the cache.<br>
+	 * All the objects and mentions reachable from the document are numbered and written grouped by their kind,
+	 * such that the objects referred to in the constructor of another object are written before it.
+	 * The references are then written as the numbers.
+	 * @param doc
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void writeDocument(ACEDocument doc, DataOutputStream out) throws IOException{
+		writeString(out, doc.text);
+		boolean sameFullText = doc.fullText != null && doc.fullText.equals(doc.text);
+		out.writeBoolean(sameFullText);
+		if(!sameFullText){
+			writeString(out, doc.fullText);
+		}
+		out.writeInt(doc.offset);
+		writeString(out, doc.uri);
+		out.writeBoolean(doc.versionIsACE2004);
+		out.writeBoolean(doc.textInLowercase);
+		out.writeInt(doc.numRealignedMentions);
+
+		Map<Object, Integer> ids = numberItems(doc);
+		List<Object> items = new ArrayList<Object>(ids.keySet());
+		out.writeInt(items.size());
+		for(Object item: items){
+			writeItem(out, item, ids);
+		}
+		// The mentions of each object and the event arguments are written after all items are created
+		for(Object item: items){
+			if(item instanceof ACEObject){
+				writeRefs(out, ((ACEObject)item).mentions(), ids);
+			}
+			if(item instanceof ACEEvent){
+				Map<String, ACEObject> args = ((ACEEvent)item).args;
+				out.writeInt(args.size());
+				for(Map.Entry<String, ACEObject> arg: args.entrySet()){
+					writeString(out, arg.getKey());
+					writeRef(out, arg.getValue(), ids);
+				}
+			}
+		}
+
+		writeRefs(out, doc.entities, ids);
+		writeRefs(out, doc.entityMentions, ids);
+		writeRefs(out, doc.values, ids);
+		writeRefs(out, doc.valueMentions, ids);
+		writeRefs(out, doc.timexes, ids);
+		writeRefs(out, doc.timexMentions, ids);
+		writeRefs(out, doc.relations, ids);
+		writeRefs(out, doc.relationMentions, ids);
+		writeRefs(out, doc.events, ids);
+		writeRefs(out, doc.eventMentions, ids);
+		writeRefMap(out, doc.objectsById, ids);
+		writeRefMap(out, doc.objectMentionsById, ids);
+	}
+
+	/**
+	 * Reads a document written by {@link #writeDocument(ACEDocument, DataOutputStream)}.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static ACEDocument readDocument(DataInputStream in) throws IOException{
+		ACEDocument doc = new ACEDocument();
+		doc.text = readString(in);
+		doc.fullText = in.readBoolean() ? doc.text : readString(in);
+		doc.offset = in.readInt();
+		doc.uri = readString(in);
+		doc.versionIsACE2004 = in.readBoolean();
+		doc.textInLowercase = in.readBoolean();
+		doc.numRealignedMentions = in.readInt();
+
+		Object[] items = new Object[in.readInt()];
+		for(int i=0; i<items.length; i++){
+			items[i] = readItem(in, items);
+		}
+		for(Object item: items){
+			if(item instanceof ACEObject){
+				readRefs(in, items, ((ACEObject)item).mentions());
+			}
+			if(item instanceof ACEEvent){
+				ACEEvent event = (ACEEvent)item;
+				int numArgs = in.readInt();
+				for(int i=0; i<numArgs; i++){
+					event.addArgument(readString(in), (ACEObject)readRef(in, items));
+				}
+			}
+		}
+
+		doc.entities = readRefs(in, items, new ArrayList<ACEEntity>());
+		doc.entityMentions = readRefs(in, items, new ArrayList<ACEEntityMention>());
+		doc.values = readRefs(in, items, new ArrayList<ACEValue>());
+		doc.valueMentions = readRefs(in, items, new ArrayList<ACEValueMention>());
+		doc.timexes = readRefs(in, items, new ArrayList<ACETimex>());
+		doc.timexMentions = readRefs(in, items, new ArrayList<ACETimexMention>());
+		doc.relations = readRefs(in, items, new ArrayList<ACERelation>());
+		doc.relationMentions = readRefs(in, items, new ArrayList<ACERelationMention>());
+		doc.events = readRefs(in, items, new ArrayList<ACEEvent>());
+		doc.eventMentions = readRefs(in, items, new ArrayList<ACEEventMention>());
+		doc.objectsById = readRefMap(in, items, new HashMap<String, ACEObject>());
+		doc.objectMentionsById = readRefMap(in, items, new HashMap<String, ACEObjectMention<? extends ACEObject>>());
+		return doc;
+	}
+
+	/**
+	 * Returns all objects and mentions reachable from the document, mapped to their numbers, in the order
+	 * of their numbers.
+	 */
+	private static Map<Object, Integer> numberItems(ACEDocument doc){
+		List<List<Object>> itemsByKind = new ArrayList<List<Object>>();
+		for(int i=0; i<NUM_KINDS; i++){
+			itemsByKind.add(new ArrayList<Object>());
+		}
+		Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+		List<Object> queue = new ArrayList<Object>();
+		queue.addAll(doc.entities);
+		queue.addAll(doc.values);
+		queue.addAll(doc.timexes);
+		queue.addAll(doc.relations);
+		queue.addAll(doc.events);
+		queue.addAll(doc.entityMentions);
+		queue.addAll(doc.valueMentions);
+		queue.addAll(doc.timexMentions);
+		queue.addAll(doc.relationMentions);
+		queue.addAll(doc.eventMentions);
+		queue.addAll(doc.objectsById.values());
+		queue.addAll(doc.objectMentionsById.values());
+		for(int i=0; i<queue.size(); i++){
+			Object item = queue.get(i);
+			if(item == null || seen.put(item, true) != null){
+				continue;
+			}
+			itemsByKind.get(getKind(item)).add(item);
+			if(item instanceof ACEObject){
+				queue.addAll(((ACEObject)item).mentions());
+			}
+			if(item instanceof ACEObjectMention){
+				queue.add(((ACEObjectMention<?>)item).parent);
+			}
+			if(item instanceof ACERelation){
+				ACERelation relation = (ACERelation)item;
+				for(ACEEntity arg: relation.args){
+					queue.add(arg);
+				}
+				queue.add(relation.timestamp);
+			} else if(item instanceof ACEEvent){
+				queue.addAll(((ACEEvent)item).args.values());
+			} else if(item instanceof ACERelationMention){
+				ACERelationMention mention = (ACERelationMention)item;
+				for(ACEEntityMention arg: mention.args){
+					queue.add(arg);
+				}
+				queue.add(mention.timestamp);
+			} else if(item instanceof ACEEventMention){
+				for(ACEObjectMention<?> arg: ((ACEEventMention)item).args){
+					queue.add(arg);
+				}
+			}
+		}
+		Map<Object, Integer> result = new LinkedHashMap<Object, Integer>();
+		for(List<Object> items: itemsByKind){
+			for(Object item: items){
+				result.put(item, result.size());
+			}
+		}
+		return result;
+	}
+
+	private static byte getKind(Object item){
+		if(item instanceof ACEEntity) return ENTITY;
+		if(item instanceof ACEValue) return VALUE;
+		if(item instanceof ACETimex) return TIMEX;
+		if(item instanceof ACEEntityMention) return ENTITY_MENTION;
+		if(item instanceof ACEValueMention) return VALUE_MENTION;
+		if(item instanceof ACETimexMention) return TIMEX_MENTION;
+		if(item instanceof ACERelation) return RELATION;
+		if(item instanceof ACERelationMention) return RELATION_MENTION;
+		if(item instanceof ACEEvent) return EVENT;
+		if(item instanceof ACEEventMention) return EVENT_MENTION;
+		throw new IllegalArgumentException("Unknown ACE object: "+item.getClass());
+	}
+
+	private static void writeItem(DataOutputStream out, Object item, Map<Object, Integer> ids) throws IOException{
+		byte kind = getKind(item);
+		out.writeByte(kind);
+		switch(kind){
+		case ENTITY:
+			ACEEntity entity = (ACEEntity)item;
+			writeString(out, entity.id);
+			writeEnum(out, entity.type);
+			writeEnum(out, entity.subtype);
+			writeEnum(out, entity.specificity);
+			writeString(out, entity.textualRepresentation);
+			break;
+		case VALUE:
+			ACEValue value = (ACEValue)item;
+			writeString(out, ((ACEObject)value).id);
+			writeEnum(out, value.type);
+			writeEnum(out, value.subtype);
+			break;
+		case TIMEX:
+			ACETimex timex = (ACETimex)item;
+			writeString(out, timex.id);
+			writeString(out, timex.val);
+			writeEnum(out, timex.mod);
+			writeString(out, timex.anchorVal);
+			writeEnum(out, timex.anchorDir);
+			out.writeBoolean(timex.set);
+			writeString(out, timex.comment);
+			break;
+		case ENTITY_MENTION:
+			ACEEntityMention entityMention = (ACEEntityMention)item;
+			writeMention(out, entityMention, ids);
+			writeString(out, entityMention.label == null ? null : entityMention.label.form);
+			writeSpan(out, entityMention.headSpan);
+			writeString(out, entityMention.headText);
+			writeEnum(out, entityMention.mentionType);
+			writeEnum(out, entityMention.ldcMentionType);
+			writeString(out, entityMention.ldcAttribute);
+			writeEnum(out, entityMention.gpeMentionRole);
+			break;
+		case VALUE_MENTION:
+			writeMention(out, (ACEValueMention)item, ids);
+			break;
+		case TIMEX_MENTION:
+			ACETimexMention timexMention = (ACETimexMention)item;
+			writeMention(out, timexMention, ids);
+			break;
+		case RELATION:
+			ACERelation relation = (ACERelation)item;
+			writeString(out, relation.id);
+			writeRefs(out, relation.args, ids);
+			writeEnum(out, relation.type);
+			writeEnum(out, relation.subtype);
+			writeEnum(out, relation.tense);
+			writeEnum(out, relation.modality);
+			writeRef(out, relation.timestamp, ids);
+			writeEnum(out, relation.timestampType);
+			break;
+		case RELATION_MENTION:
+			ACERelationMention relationMention = (ACERelationMention)item;
+			writeMention(out, relationMention, ids);
+			writeRefs(out, relationMention.args, ids);
+			writeEnum(out, relationMention.syntacticClass);
+			writeRef(out, relationMention.timestamp, ids);
+			writeEnum(out, relationMention.timestampType);
+			break;
+		case EVENT:
+			ACEEvent event = (ACEEvent)item;
+			writeString(out, event.id);
+			writeEnum(out, event.type);
+			writeEnum(out, event.subtype);
+			writeEnum(out, event.tense);
+			writeEnum(out, event.genericity);
+			writeEnum(out, event.polarity);
+			writeEnum(out, event.modality);
+			writeEnum(out, event.timestampType);
+			break;
+		case EVENT_MENTION:
+			ACEEventMention eventMention = (ACEEventMention)item;
+			writeMention(out, eventMention, ids);
+			writeSpan(out, eventMention.scopeSpan);
+			writeString(out, eventMention.scopeText);
+			writeSpan(out, eventMention.anchorSpan);
+			writeString(out, eventMention.anchorText);
+			writeRefs(out, eventMention.args, ids);
+			break;
+		}
+	}
+
+	/**
+	 * Reads an item, creating it using the same constructor as the parser, with the strings the parser
+	 * would have given for the stored values.
+	 */
+	private static Object readItem(DataInputStream in, Object[] items) throws IOException{
+		byte kind = in.readByte();
+		switch(kind){
+		case ENTITY:
+			String id = readString(in);
+			ACEEntityType entityType = readEnum(in, ACEEntityType.class);
+			ACEEntitySubType entitySubtype = readEnum(in, ACEEntitySubType.class);
+			ACEEntitySpecificity specificity = readEnum(in, ACEEntitySpecificity.class);
+			return new ACEEntity(id, entityType.name(), getSubtypeSuffix(entityType, entitySubtype), specificity.name(),
+					readString(in));
+		case VALUE:
+			id = readString(in);
+			ACEValue.ACEValueType valueType = readEnum(in, ACEValue.ACEValueType.class);
+			ACEValue.ACEValueSubType valueSubtype = readEnum(in, ACEValue.ACEValueSubType.class);
+			return new ACEValue(id, valueType.name(), getSubtypeSuffix(valueType, valueSubtype));
+		case TIMEX:
+			id = readString(in);
+			String val = readString(in);
+			String mod = readEnum(in, ACETimex.ACETimexMod.class).name();
+			String anchorVal = readString(in);
+			String anchorDir = readEnum(in, ACETimex.ACETimexAnchorDir.class).name();
+			String set = in.readBoolean() ? "YES" : "";
+			return new ACETimex(id, val, mod, anchorVal, anchorDir, set, readString(in));
+		case ENTITY_MENTION:
+			MentionFields fields = readMention(in, items);
+			String labelForm = readString(in);
+			Span headSpan = readSpan(in);
+			String headText = readString(in);
+			ACEMentionType mentionType = readEnum(in, ACEMentionType.class);
+			LDCMentionType ldcMentionType = readEnum(in, LDCMentionType.class);
+			String ldcAttribute = readString(in);
+			ACEEntityMention entityMention = new ACEEntityMention(fields.id, mentionType.name(), ldcMentionType.name(),
+					ldcAttribute, (ACEEntity)fields.parent, fields.span, headSpan, fields.text, headText,
+					labelForm == null ? null : SpanLabel.get(labelForm));
+			entityMention.gpeMentionRole = readEnum(in, ACEGPEMentionRole.class);
+			return fields.setIDs(entityMention);
+		case VALUE_MENTION:
+			fields = readMention(in, items);
+			return fields.setIDs(new ACEValueMention(fields.id, fields.span, fields.text, (ACEValue)fields.parent));
+		case TIMEX_MENTION:
+			fields = readMention(in, items);
+			return fields.setIDs(new ACETimexMention(fields.id, fields.span, fields.text, (ACETimex)fields.parent));
+		case RELATION:
+			id = readString(in);
+			ACEEntity[] args = readRefs(in, items, new ArrayList<ACEEntity>()).toArray(new ACEEntity[0]);
+			ACERelation.ACERelationType relationType = readEnum(in, ACERelation.ACERelationType.class);
+			ACERelation.ACERelationSubType relationSubtype = readEnum(in, ACERelation.ACERelationSubType.class);
+			String tense = readEnum(in, ACERelation.ACETense.class).name();
+			String modality = readEnum(in, ACERelation.ACEModality.class).name();
+			ACETimex timestamp = (ACETimex)readRef(in, items);
+			ACETimestampType timestampType = readEnum(in, ACETimestampType.class);
+			return new ACERelation(args, id, relationType.name(), getSubtypeSuffix(relationType, relationSubtype),
+					tense, modality, timestamp, timestampType == null ? null : timestampType.name());
+		case RELATION_MENTION:
+			fields = readMention(in, items);
+			ACEEntityMention[] mentionArgs = readRefs(in, items, new ArrayList<ACEEntityMention>())
+					.toArray(new ACEEntityMention[0]);
+			ACERelationSyntacticClass syntacticClass = readEnum(in, ACERelationSyntacticClass.class);
+			ACETimexMention mentionTimestamp = (ACETimexMention)readRef(in, items);
+			timestampType = readEnum(in, ACETimestampType.class);
+			ACERelationMention relationMention = new ACERelationMention(mentionArgs, fields.id, syntacticClass.name(),
+					fields.span, fields.text, mentionTimestamp, timestampType == null ? null : timestampType.name(),
+					(ACERelation)fields.parent);
+			return fields.setIDs(relationMention);
+		case EVENT:
+			id = readString(in);
+			ACEEvent.ACEEventType eventType = readEnum(in, ACEEvent.ACEEventType.class);
+			ACEEvent.ACEEventSubType eventSubtype = readEnum(in, ACEEvent.ACEEventSubType.class);
+			ACEEvent event = new ACEEvent(id, eventType.name(), getSubtypeSuffix(eventType, eventSubtype),
+					readEnum(in, ACERelation.ACETense.class).name(),
+					readEnum(in, ACEEvent.ACEEventGenericity.class).name(),
+					readEnum(in, ACEEvent.ACEEventPolarity.class).name(),
+					readEnum(in, ACEEvent.ACEEventModality.class).name());
+			timestampType = readEnum(in, ACETimestampType.class);
+			if(timestampType != null){
+				event.setTimestampType(timestampType.name());
+			}
+			return event;
+		case EVENT_MENTION:
+			fields = readMention(in, items);
+			Span scopeSpan = readSpan(in);
+			String scopeText = readString(in);
+			Span anchorSpan = readSpan(in);
+			String anchorText = readString(in);
+			ACEObjectMention<?>[] eventArgs = readRefs(in, items, new ArrayList<ACEObjectMention<?>>())
+					.toArray(new ACEObjectMention<?>[0]);
+			return fields.setIDs(new ACEEventMention(fields.id, fields.span, fields.text, (ACEEvent)fields.parent,
+					scopeSpan, scopeText, anchorSpan, anchorText, eventArgs));
+		default:
+			throw new IOException("Unknown item kind: "+kind);
+		}
+	}
+
+	/** The fields common to all mentions */
+	private static class MentionFields {
+		public String id;
+		public String fullID;
+		public String shortID;
+		public Span span;
+		public String text;
+		public ACEObject parent;
+
+		public <T extends ACEObjectMention<?>> T setIDs(T mention){
+			mention.fullID = fullID;
+			mention.shortID = shortID;
+			return mention;
+		}
+	}
+
+	private static void writeMention(DataOutputStream out, ACEObjectMention<?> mention, Map<Object, Integer> ids)
+			throws IOException{
+		writeString(out, mention.id);
+		writeString(out, mention.fullID);
+		writeString(out, mention.shortID);
+		writeSpan(out, mention.span);
+		writeString(out, mention.text);
+		writeRef(out, mention.parent, ids);
+	}
+
+	private static MentionFields readMention(DataInputStream in, Object[] items) throws IOException{
+		MentionFields fields = new MentionFields();
+		fields.id = readString(in);
+		fields.fullID = readString(in);
+		fields.shortID = readString(in);
+		fields.span = readSpan(in);
+		fields.text = readString(in);
+		fields.parent = (ACEObject)readRef(in, items);
+		return fields;
+	}
+
+	/**
+	 * Returns the part of the subtype name after the type name, which gives back the subtype when given
+	 * to the constructors together with the type name
+	 */
+	private static String getSubtypeSuffix(Enum<?> type, Enum<?> subtype) throws IOException{
+		String prefix = type.name()+"_";
+		if(!subtype.name().startsWith(prefix)){
+			throw new IOException("Subtype "+subtype.name()+" does not belong to type "+type.name());
+		}
+		return subtype.name().substring(prefix.length());
+	}
+
+	private static void writeSpan(DataOutputStream out, Span span) throws IOException{
+		out.writeBoolean(span != null);
+		if(span != null){
+			out.writeInt(span.start);
+			out.writeInt(span.end);
+		}
+	}
+
+	private static Span readSpan(DataInputStream in) throws IOException{
+		if(!in.readBoolean()){
+			return null;
+		}
+		return new Span(in.readInt(), in.readInt());
+	}
+
+	private static void writeRef(DataOutputStream out, Object item, Map<Object, Integer> ids) throws IOException{
+		out.writeInt(item == null ? -1 : ids.get(item));
+	}
+
+	private static Object readRef(DataInputStream in, Object[] items) throws IOException{
+		int index = in.readInt();
+		return index < 0 ? null : items[index];
+	}
+
+	private static void writeRefs(DataOutputStream out, Object[] refs, Map<Object, Integer> ids) throws IOException{
+		out.writeInt(refs.length);
+		for(Object ref: refs){
+			writeRef(out, ref, ids);
+		}
+	}
+
+	private static void writeRefs(DataOutputStream out, List<?> refs, Map<Object, Integer> ids) throws IOException{
+		out.writeInt(refs.size());
+		for(Object ref: refs){
+			writeRef(out, ref, ids);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T, L extends List<T>> L readRefs(DataInputStream in, Object[] items, L result) throws IOException{
+		int size = in.readInt();
+		for(int i=0; i<size; i++){
+			result.add((T)readRef(in, items));
+		}
+		return result;
+	}
+
+	private static void writeRefMap(DataOutputStream out, Map<String, ?> refs, Map<Object, Integer> ids)
+			throws IOException{
+		out.writeInt(refs.size());
+		for(Map.Entry<String, ?> entry: refs.entrySet()){
+			writeString(out, entry.getKey());
+			writeRef(out, entry.getValue(), ids);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T, M extends Map<String, T>> M readRefMap(DataInputStream in, Object[] items, M result)
+			throws IOException{
+		int size = in.readInt();
+		for(int i=0; i<size; i++){
+			String key = readString(in);
+			result.put(key, (T)readRef(in, items));
+		}
+		return result;
+	}
+
+	private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException{
+		writeString(out, value == null ? null : value.name());
+	}
+
+	private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> enumClass) throws IOException{
+		String name = readString(in);
+		return name == null ? null : Enum.valueOf(enumClass, name);
+	}
+
+	/** Writes a nullable string as the length of its UTF-8 bytes (-1 for null) followed by the bytes */
+	static void writeString(DataOutputStream out, String value) throws IOException{
+		if(value == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInputStream in) throws IOException{
+		int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -234,9 +234,19 @@ public class ACEEntityMention extends ACEObjectMention<ACEEntity> implements Com
 	 * @param mention
 	 */
 	public ACEEntityMention(ACEEntityMention mention){
-		super(mention.id, new Span(mention.span.start, mention.span.end), mention.text, mention.parent);
+		this(mention, 0);
+	}
+	
+	/**
+	 * Perform a deep copy of another entity mention, with the spans shifted to the left by the given offset,
+	 * such as to make the spans relative to the sentence starting at that offset
+	 * @param mention
+	 * @param offset
+	 */
+	public ACEEntityMention(ACEEntityMention mention, int offset){
+		super(mention.id, new Span(mention.span.start-offset, mention.span.end-offset), mention.text, mention.parent);
 		this.label = mention.label;
-		this.headSpan = new Span(mention.headSpan.start, mention.headSpan.end);
+		this.headSpan = new Span(mention.headSpan.start-offset, mention.headSpan.end-offset);
 		this.entity = mention.entity;
 		this.mentionType = mention.mentionType;
 		this.ldcMentionType = mention.ldcMentionType;
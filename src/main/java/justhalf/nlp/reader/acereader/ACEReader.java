@@ -5,26 +5,39 @@ package justhalf.nlp.reader.acereader;
 
 import static justhalf.nlp.reader.acereader.ACEDocument.unescape;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.xml.sax.SAXException;
 
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.StringUtils;
 import justhalf.nlp.postagger.POSTagger;
 import justhalf.nlp.postagger.StanfordPOSTagger;
@@ -36,11 +49,16 @@ import justhalf.nlp.reader.acereader.ACERelation.ACERelationSubType;
 import justhalf.nlp.reader.acereader.ACERelation.ACERelationType;
 import justhalf.nlp.reader.acereader.ACEValue.ACEValueSubType;
 import justhalf.nlp.reader.acereader.ACEValue.ACEValueType;
+import justhalf.nlp.sentencesplitter.PostProcessingSentenceSplitter;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
 import justhalf.nlp.sentencesplitter.SentenceSplitter;
 import justhalf.nlp.sentencesplitter.StanfordSentenceSplitter;
+import justhalf.nlp.tokenizer.PostProcessingTokenizer;
 import justhalf.nlp.tokenizer.RegexTokenizer;
 import justhalf.nlp.tokenizer.StanfordTokenizer;
 import justhalf.nlp.tokenizer.Tokenizer;
+import justhalf.nlp.util.LazyCoreLabel;
+import justhalf.nlp.util.TokenOffsetIndex;
 
 /**
  * <p>The main class to read raw ACE documents as ACEDocuments objects.</p>
@@ -57,7 +75,23 @@ public class ACEReader {
 			"bc", "bn", "cts", "nw", "un", "wl"
 	});
 	
-	public static void main(String[] args) throws FileNotFoundException{
+	/** The default number of threads used to read the documents */
+	public static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+	
+	/** The size of the buffer of the output files */
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+	/** The line separator used by {@link java.io.PrintWriter#println()} */
+	private static final String NEWLINE = System.lineSeparator();
+	/** The prefixes of the word labels, where the ones with H are for the tokens inside another entity */
+	private static final String[] LABEL_PREFIXES = new String[]{"B", "I", "L", "U", "BH", "IH", "LH", "UH"};
+	private static final int PREFIX_B = 0;
+	private static final int PREFIX_I = 1;
+	private static final int PREFIX_L = 2;
+	private static final int PREFIX_U = 3;
+	/** The forms of the word labels of each entity type, see {@link #getWordLabelForms(String)} */
+	private static final ConcurrentMap<String, String[]> WORD_LABEL_FORMS = new ConcurrentHashMap<String, String[]>();
+	
+	public static void main(String[] args) throws IOException{
 		String ace2004DirName = null;
 		String ace2005DirName = null;
 		HashSet<String> ace2004Domains = new LinkedHashSet<String>(ACE2004_DOMAINS);
@@ -71,18 +105,26 @@ public class ACEReader {
 		String ace2005OutputDir = null;
 		
 		boolean tokenize = false;
+		boolean useSplitterTokens = false;
 		boolean posTag = false;
 		Tokenizer tokenizer = null;
 		POSTagger posTagger = null;
 		SentenceSplitter splitter = null;
 		
 		boolean toCoNLL = false;
+		boolean toTensor = false;
 		boolean ignoreOverlaps = false;
 		boolean useBILOU = false;
 		boolean splitByDocument = true;
 		boolean shuffle = false;
+		boolean hashSplit = false;
 		boolean excludeMetadata = false;
+		boolean useStreamingParser = false;
+		String cacheFileName = null;
+		String annotationCacheFileName = null;
 		int shuffleSeed = 31;
+		int numThreads = DEFAULT_NUM_THREADS;
+		int numExportThreads = 1;
 		
 		int argIndex = 0;
 		while(argIndex < args.length){
@@ -117,6 +159,18 @@ public class ACEReader {
 				excludeMetadata = true;
 				argIndex += 1;
 				break;
+			case "-useStreamingParser":
+				useStreamingParser = true;
+				argIndex += 1;
+				break;
+			case "-cacheFile":
+				cacheFileName = args[argIndex+1];
+				argIndex += 2;
+				break;
+			case "-annotationCacheFile":
+				annotationCacheFileName = args[argIndex+1];
+				argIndex += 2;
+				break;
 			case "-printEntities":
 				printEntities = true;
 				print = true;
@@ -161,6 +215,9 @@ public class ACEReader {
 				case "regex":
 					tokenizer = new RegexTokenizer();
 					break;
+				case "splitter":
+					useSplitterTokens = true;
+					break;
 				default:
 					System.out.println("Unrecognized tokenizer \""+args[argIndex+1]+"\", using stanford.");
 					tokenizer = new StanfordTokenizer();
@@ -186,6 +243,9 @@ public class ACEReader {
 				case "stanford":
 					splitter = new StanfordSentenceSplitter();
 					break;
+				case "rule":
+					splitter = new RuleBasedSentenceSplitter();
+					break;
 				default:
 					System.out.println("Unrecognized sentence splitter \""+args[argIndex+1]+"\", using stanford.");
 					splitter = new StanfordSentenceSplitter();
@@ -197,6 +257,10 @@ public class ACEReader {
 				toCoNLL = true;
 				argIndex += 1;
 				break;
+			case "-toTensorFormat":
+				toTensor = true;
+				argIndex += 1;
+				break;
 			case "-ignoreOverlaps":
 				ignoreOverlaps = true;
 				argIndex += 1;
@@ -213,10 +277,22 @@ public class ACEReader {
 				shuffle = true;
 				argIndex += 1;
 				break;
+			case "-hashSplit":
+				hashSplit = true;
+				argIndex += 1;
+				break;
 			case "-seed":
 				shuffleSeed = Integer.parseInt(args[argIndex+1]);
 				argIndex += 2;
 				break;
+			case "-threads":
+				numThreads = Integer.parseInt(args[argIndex+1]);
+				argIndex += 2;
+				break;
+			case "-exportThreads":
+				numExportThreads = Integer.parseInt(args[argIndex+1]);
+				argIndex += 2;
+				break;
 			case "-h":
 			case "--help":
 				printHelp();
@@ -233,6 +309,10 @@ public class ACEReader {
 					+ " or ACE2005 (-ace2005Dir)");
 			System.exit(0);
 		}
+		if(toCoNLL && toTensor){
+			printHelp("Please specify only one of -toCoNLLFormat and -toTensorFormat.");
+			System.exit(0);
+		}
 		if(print){
 			if(ace2004DirName != null && ace2004OutputDir == null){
 				printHelp("Please specify the output directory for ACE2004.");
@@ -253,16 +333,32 @@ public class ACEReader {
 		if(tokenizer == null){
 			tokenizer = new StanfordTokenizer();
 		}
+		useLazyLabels(tokenizer, splitter);
+		ACEAnnotationCache annotationCache = null;
+		if(annotationCacheFileName != null){
+			// The components are wrapped, so that everything using them goes through the cache,
+			// except for the tokenizer, which is wrapped only for the export below
+			annotationCache = new ACEAnnotationCache(new File(annotationCacheFileName));
+			if(posTagger != null){
+				posTagger = annotationCache.wrap(posTagger);
+			}
+			if(splitter != null){
+				splitter = annotationCache.wrap(splitter);
+			}
+		}
 		if(print && toCoNLL && printRelations){
 			System.err.println("Currently relations are ignored when printing in CoNLL format.");
 		}
+		if(print && toTensor && printRelations){
+			System.err.println("Currently relations are ignored when printing in tensor format.");
+		}
 		
-		// Get documents list
+		// Get documents list, where the archives are read separately
 		List<File> fileList = new ArrayList<File>();
-		if(ace2004DirName != null){
+		if(ace2004DirName != null && !isArchive(ace2004DirName)){
 			extractDocList(fileList, ace2004DirName, ace2004Domains);
 		}
-		if(ace2005DirName != null){
+		if(ace2005DirName != null && !isArchive(ace2005DirName)){
 			extractDocList(fileList, ace2005DirName, ace2005Domains, "/timex2norm");
 		}
 		
@@ -281,85 +377,106 @@ public class ACEReader {
 		// Start reading data
 		List<ACEDocument> ace2004Docs = new ArrayList<ACEDocument>();
 		List<ACEDocument> ace2005Docs = new ArrayList<ACEDocument>();
-		List<ACEDocument> docs = new ArrayList<ACEDocument>();
-		int docCount = 0;
-		int[] entityCount = new int[1];
-		int[] entityMentionCount = new int[1];
-		int[] valueCount = new int[1];
-		int[] valueMentionCount = new int[1];
-		int[] relationCount = new int[1];
-		int[] relationMentionCount = new int[1];
-		int[] eventCount = new int[1];
-		int[] eventMentionCount = new int[1];
-		int overlapCount = 0;
-		int allLowercaseCount = 0;
+		AtomicInteger entityCount = new AtomicInteger();
+		AtomicInteger entityMentionCount = new AtomicInteger();
+		AtomicInteger valueCount = new AtomicInteger();
+		AtomicInteger valueMentionCount = new AtomicInteger();
+		AtomicInteger relationCount = new AtomicInteger();
+		AtomicInteger relationMentionCount = new AtomicInteger();
+		AtomicInteger eventCount = new AtomicInteger();
+		AtomicInteger eventMentionCount = new AtomicInteger();
+		AtomicInteger overlapCount = new AtomicInteger();
+		AtomicInteger allLowercaseCount = new AtomicInteger();
+		AtomicInteger realignedMentionCount = new AtomicInteger();
 		
-		Map<Integer, Integer> wordCountInMention = new HashMap<Integer, Integer>();
-		Map<ACEEntityType, Integer> entityTypeCount = new HashMap<ACEEntityType, Integer>();
-		Map<ACERelationType, Integer> relationTypeCount = new HashMap<ACERelationType, Integer>();
-		Map<ACEValueType, Integer> valueTypeCount = new HashMap<ACEValueType, Integer>();
-		Map<ACEEventType, Integer> eventTypeCount = new HashMap<ACEEventType, Integer>();
-		Map<ACEEntityType, Integer> entityTypeMentionCount = new HashMap<ACEEntityType, Integer>();
-		Map<ACERelationType, Integer> relationTypeMentionCount = new HashMap<ACERelationType, Integer>();
-		Map<ACEValueType, Integer> valueTypeMentionCount = new HashMap<ACEValueType, Integer>();
-		Map<ACEEventType, Integer> eventTypeMentionCount = new HashMap<ACEEventType, Integer>();
-		for(File sgmFile: fileList){
-			try {
-				ACEDocument doc = new ACEDocument(sgmFile.getAbsolutePath(), excludeMetadata);
-				docCount++;
-//				printMentions(doc, doc.mentions);
-				
-				// Count mentions and objects
-				count(doc, doc.entities, entityTypeCount, entityTypeMentionCount, entityCount, entityMentionCount);
-				count(doc, doc.relations, relationTypeCount, relationTypeMentionCount, relationCount, relationMentionCount);
-				count(doc, doc.values, valueTypeCount, valueTypeMentionCount, valueCount, valueMentionCount);
-				count(doc, doc.events, eventTypeCount, eventTypeMentionCount, eventCount, eventMentionCount);
-				
-				// Count mention overlaps
-				for(int i=0; i<doc.entityMentions.size(); i++){
-					ACEEntityMention mention1 = doc.entityMentions.get(i);
-					boolean hasOverlap = false;
-					for(int j=0; j<doc.entityMentions.size(); j++){
-						if(j==i) continue;
-						ACEEntityMention mention2 = doc.entityMentions.get(j);
-						hasOverlap |= mention1.overlapsWith(mention2);
-					}
-					overlapCount += hasOverlap ? 1 : 0;
-					int wordCount = fixTokens(tokenizer.tokenize(mention1.text)).size();
-					int count = wordCountInMention.getOrDefault(wordCount, 0);
-					wordCountInMention.put(wordCount, count+1);
-				}
-				
-				// Count lowercased documents
-				allLowercaseCount += doc.textInLowercase ? 1 : 0;
-				
-				docs.add(doc);
-				if(doc.versionIsACE2004){
-					ace2004Docs.add(doc);
-				} else {
-					ace2005Docs.add(doc);
-				}
-			} catch (IOException | SAXException e) {
-				System.err.println(sgmFile);
+		// The statistics are collected while the documents are being read in parallel
+		ConcurrentMap<Integer, Integer> wordCountInMention = new ConcurrentHashMap<Integer, Integer>();
+		ConcurrentMap<ACEEntityType, Integer> entityTypeCount = new ConcurrentHashMap<ACEEntityType, Integer>();
+		ConcurrentMap<ACERelationType, Integer> relationTypeCount = new ConcurrentHashMap<ACERelationType, Integer>();
+		ConcurrentMap<ACEValueType, Integer> valueTypeCount = new ConcurrentHashMap<ACEValueType, Integer>();
+		ConcurrentMap<ACEEventType, Integer> eventTypeCount = new ConcurrentHashMap<ACEEventType, Integer>();
+		ConcurrentMap<ACEEntityType, Integer> entityTypeMentionCount = new ConcurrentHashMap<ACEEntityType, Integer>();
+		ConcurrentMap<ACERelationType, Integer> relationTypeMentionCount = new ConcurrentHashMap<ACERelationType, Integer>();
+		ConcurrentMap<ACEValueType, Integer> valueTypeMentionCount = new ConcurrentHashMap<ACEValueType, Integer>();
+		ConcurrentMap<ACEEventType, Integer> eventTypeMentionCount = new ConcurrentHashMap<ACEEventType, Integer>();
+		// All tokens are split further with the same rules, including the tokens from the sentence splitter.
+		// The mentions counted in the statistics are not cached, so the cache keeps only the exported sentences.
+		PostProcessingTokenizer statisticsTokenizer = new PostProcessingTokenizer(tokenizer);
+		PostProcessingTokenizer exportTokenizer = new PostProcessingTokenizer(
+				annotationCache == null ? tokenizer : annotationCache.wrap(tokenizer));
+		if(!statisticsTokenizer.isThreadSafe()){
+			numThreads = 1;
+		}
+		ACEDocumentCache cache = null;
+		if(cacheFileName != null){
+			try{
+				cache = new ACEDocumentCache(new File(cacheFileName));
+			} catch (IOException e){
 				e.printStackTrace();
 			}
 		}
+		Consumer<ACEDocument> collectStatistics = doc -> {
+//			printMentions(doc, doc.mentions);
+			
+			// Count mentions and objects
+			count(doc, doc.entities, entityTypeCount, entityTypeMentionCount, entityCount, entityMentionCount);
+			count(doc, doc.relations, relationTypeCount, relationTypeMentionCount, relationCount, relationMentionCount);
+			count(doc, doc.values, valueTypeCount, valueTypeMentionCount, valueCount, valueMentionCount);
+			count(doc, doc.events, eventTypeCount, eventTypeMentionCount, eventCount, eventMentionCount);
+			
+			// Count mention overlaps
+			for(int i=0; i<doc.entityMentions.size(); i++){
+				ACEEntityMention mention1 = doc.entityMentions.get(i);
+				boolean hasOverlap = false;
+				for(int j=0; j<doc.entityMentions.size(); j++){
+					if(j==i) continue;
+					ACEEntityMention mention2 = doc.entityMentions.get(j);
+					hasOverlap |= mention1.overlapsWith(mention2);
+				}
+				overlapCount.addAndGet(hasOverlap ? 1 : 0);
+				int wordCount = statisticsTokenizer.tokenize(mention1.text).size();
+				wordCountInMention.merge(wordCount, 1, Integer::sum);
+			}
+			
+			// Count lowercased documents
+			allLowercaseCount.addAndGet(doc.textInLowercase ? 1 : 0);
+			realignedMentionCount.addAndGet(doc.numRealignedMentions);
+		};
+		List<ACEDocument> docs = readDocuments(fileList, excludeMetadata, useStreamingParser, numThreads, cache,
+				collectStatistics);
+		if(ace2004DirName != null && isArchive(ace2004DirName)){
+			docs.addAll(readDocuments(ace2004DirName, ace2004Domains, null, excludeMetadata, useStreamingParser,
+					numThreads, collectStatistics));
+		}
+		if(ace2005DirName != null && isArchive(ace2005DirName)){
+			docs.addAll(readDocuments(ace2005DirName, ace2005Domains, "timex2norm", excludeMetadata,
+					useStreamingParser, numThreads, collectStatistics));
+		}
+		int docCount = docs.size();
+		for(ACEDocument doc: docs){
+			if(doc.versionIsACE2004){
+				ace2004Docs.add(doc);
+			} else {
+				ace2005Docs.add(doc);
+			}
+		}
 		System.out.println("Total documents: "+docCount);
-		System.out.println("Total lowercased documents: "+allLowercaseCount);
-		System.out.println("Total entities: "+entityCount[0]);
-		System.out.println("Total mentions: "+entityMentionCount[0]);
-		System.out.println("Total mentions overlaps: "+overlapCount);
+		System.out.println("Total lowercased documents: "+allLowercaseCount.get());
+		System.out.println("Total entities: "+entityCount.get());
+		System.out.println("Total mentions: "+entityMentionCount.get());
+		System.out.println("Total mentions overlaps: "+overlapCount.get());
+		System.out.println("Total realigned mentions: "+realignedMentionCount.get());
 		System.out.println("Word count stats in entity mentions:");
-		for(int key: wordCountInMention.keySet()){
+		for(int key: sorted(wordCountInMention.keySet())){
 			System.out.println("\t"+key+": "+wordCountInMention.get(key));
 		}
 		System.out.println();
-		System.out.println("Total relations: "+relationCount[0]);
-		System.out.println("Total relation mentions: "+relationMentionCount[0]);
-		System.out.println("Total values: "+valueCount[0]);
-		System.out.println("Total value mentions: "+valueMentionCount[0]);
-		System.out.println("Total events: "+eventCount[0]);
-		System.out.println("Total event mentions: "+eventMentionCount[0]);
+		System.out.println("Total relations: "+relationCount.get());
+		System.out.println("Total relation mentions: "+relationMentionCount.get());
+		System.out.println("Total values: "+valueCount.get());
+		System.out.println("Total value mentions: "+valueMentionCount.get());
+		System.out.println("Total events: "+eventCount.get());
+		System.out.println("Total event mentions: "+eventMentionCount.get());
 
 		System.out.println();
 		System.out.println("Entity mention type counts:");
@@ -411,24 +528,43 @@ public class ACEReader {
 		
 		if(print){
 			if(ace2004Docs.size() > 0){
-				System.out.println("Printing ACE2004 dataset to "+ace2004OutputDir+"/{train,dev,test}.data");
+				System.out.println("Printing ACE2004 dataset to "+ace2004OutputDir+"/{train,dev,test}"+(toTensor ? ".*.bin" : ".data"));
 				printDataset(ace2004OutputDir, ace2004Docs, datasplit, printEntities, printRelations,
-						(tokenize || toCoNLL) ? tokenizer : null, posTag ? posTagger : null, splitter,
-								toCoNLL, ignoreOverlaps, useBILOU, splitByDocument, shuffle, shuffleSeed);
+						(tokenize || toCoNLL || toTensor) ? exportTokenizer : null, useSplitterTokens,
+								posTag ? posTagger : null, splitter,
+								toCoNLL, toTensor, ignoreOverlaps, useBILOU, splitByDocument, shuffle, hashSplit, shuffleSeed,
+								numExportThreads);
 			}
 			if(ace2005Docs.size() > 0){
-				System.out.println("Printing ACE2005 dataset to "+ace2005OutputDir+"/{train,dev,test}.data");
+				System.out.println("Printing ACE2005 dataset to "+ace2005OutputDir+"/{train,dev,test}"+(toTensor ? ".*.bin" : ".data"));
 				printDataset(ace2005OutputDir, ace2005Docs, datasplit, printEntities, printRelations,
-						(tokenize || toCoNLL) ? tokenizer : null, posTag ? posTagger : null,
-								splitter, toCoNLL, ignoreOverlaps, useBILOU, splitByDocument, shuffle, shuffleSeed);
+						(tokenize || toCoNLL || toTensor) ? exportTokenizer : null, useSplitterTokens,
+								posTag ? posTagger : null,
+								splitter, toCoNLL, toTensor, ignoreOverlaps, useBILOU, splitByDocument, shuffle, hashSplit, shuffleSeed,
+								numExportThreads);
+			}
+		}
+		if(annotationCache != null){
+			System.out.println();
+			for(String stage: new String[]{ACEAnnotationCache.SPLIT, ACEAnnotationCache.TOKENIZE, ACEAnnotationCache.TAG}){
+				System.out.println("Annotation cache "+stage+": "+annotationCache.hits(stage)+" reused, "
+						+annotationCache.misses(stage)+" computed");
 			}
+			annotationCache.save();
 		}
 	}
 
 	private static void printDataset(String outputDir, List<ACEDocument> docs, double[] datasplit,
-			boolean printEntities, boolean printRelations, Tokenizer tokenizer, POSTagger posTagger,
-			SentenceSplitter splitter, boolean toCoNLL, boolean ignoreOverlaps, boolean useBILOU,
-			boolean splitByDocument, boolean shuffle, int shuffleSeed) throws FileNotFoundException {
+			boolean printEntities, boolean printRelations, PostProcessingTokenizer tokenizer, boolean useSplitterTokens,
+			POSTagger posTagger, SentenceSplitter splitter, boolean toCoNLL, boolean toTensor, boolean ignoreOverlaps,
+			boolean useBILOU, boolean splitByDocument, boolean shuffle, boolean hashSplit, int shuffleSeed,
+			int numExportThreads) throws IOException {
+		if(hashSplit){
+			printDatasetByHash(outputDir, docs, datasplit, printEntities, printRelations, tokenizer, useSplitterTokens,
+					posTagger, splitter, toCoNLL, toTensor, ignoreOverlaps, useBILOU, splitByDocument, shuffleSeed,
+					numExportThreads);
+			return;
+		}
 		List<ACESentence> trainSentences = new ArrayList<ACESentence>();
 		List<ACESentence> devSentences = new ArrayList<ACESentence>();
 		List<ACESentence> testSentences = new ArrayList<ACESentence>();
@@ -437,19 +573,164 @@ public class ACEReader {
 			List<ACEDocument> devDocs = new ArrayList<ACEDocument>();
 			List<ACEDocument> testDocs = new ArrayList<ACEDocument>();
 			splitData(docs, trainDocs, devDocs, testDocs, datasplit, shuffle, shuffleSeed);
-			trainSentences = getSentences(trainDocs, splitter, ignoreOverlaps);
-			devSentences = getSentences(devDocs, splitter, ignoreOverlaps);
-			testSentences = getSentences(testDocs, splitter, ignoreOverlaps);
+			trainSentences = getSentences(trainDocs, splitter, ignoreOverlaps, useSplitterTokens);
+			devSentences = getSentences(devDocs, splitter, ignoreOverlaps, useSplitterTokens);
+			testSentences = getSentences(testDocs, splitter, ignoreOverlaps, useSplitterTokens);
 		} else {
-			List<ACESentence> aceSentences = getSentences(docs, splitter, ignoreOverlaps);
+			List<ACESentence> aceSentences = getSentences(docs, splitter, ignoreOverlaps, useSplitterTokens);
 			trainSentences = new ArrayList<ACESentence>();
 			devSentences = new ArrayList<ACESentence>();
 			testSentences = new ArrayList<ACESentence>();
 			splitData(aceSentences, trainSentences, devSentences, testSentences, datasplit, shuffle, shuffleSeed);
 		}
-		writeData(trainSentences, outputDir, "/train.data", tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU);
-		writeData(devSentences, outputDir, "/dev.data", tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU);
-		writeData(testSentences, outputDir, "/test.data", tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU);
+		if(toTensor){
+			// The ids are shared by the three sets, with the label O as 0
+			LabelRegistry<VocabularyEntry> vocabulary = new LabelRegistry<VocabularyEntry>(VocabularyEntry::new);
+			LabelRegistry<VocabularyEntry> posTags = posTagger != null
+					? new LabelRegistry<VocabularyEntry>(VocabularyEntry::new) : null;
+			LabelRegistry<WordLabel> labels = printEntities ? WordLabel.newRegistry() : null;
+			if(labels != null){
+				labels.get("O");
+			}
+			writeTensorData(trainSentences, outputDir, "/train", tokenizer, posTagger, vocabulary, posTags, labels,
+					useBILOU, numExportThreads);
+			writeTensorData(devSentences, outputDir, "/dev", tokenizer, posTagger, vocabulary, posTags, labels,
+					useBILOU, numExportThreads);
+			writeTensorData(testSentences, outputDir, "/test", tokenizer, posTagger, vocabulary, posTags, labels,
+					useBILOU, numExportThreads);
+			vocabulary.save(new File(outputDir+"/vocab.txt"));
+			if(posTags != null){
+				posTags.save(new File(outputDir+"/pos.txt"));
+			}
+			if(labels != null){
+				labels.save(new File(outputDir+"/labels.txt"));
+			}
+			return;
+		}
+		writeData(trainSentences, outputDir, "/train.data", tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU,
+				numExportThreads);
+		writeData(devSentences, outputDir, "/dev.data", tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU,
+				numExportThreads);
+		writeData(testSentences, outputDir, "/test.data", tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU,
+				numExportThreads);
+	}
+
+	/**
+	 * Prints the dataset with each document (or each sentence, if not splitByDocument) assigned to the training,
+	 * development, or test set by {@link HashDataSplit} with the given seed.<br>
+	 * The documents are split and formatted in parallel, and the sentences are written to the files as soon as
+	 * their documents are done, in the order of the documents, so the sentences are never collected in lists.
+	 */
+	private static void printDatasetByHash(String outputDir, List<ACEDocument> docs, double[] datasplit,
+			boolean printEntities, boolean printRelations, PostProcessingTokenizer tokenizer, boolean useSplitterTokens,
+			POSTagger posTagger, SentenceSplitter splitter, boolean toCoNLL, boolean toTensor, boolean ignoreOverlaps,
+			boolean useBILOU, boolean splitByDocument, int seed, int numThreads) throws IOException {
+		if(!splitter.isThreadSafe() || (tokenizer != null && !tokenizer.isThreadSafe())
+				|| (posTagger != null && !posTagger.isThreadSafe())){
+			numThreads = 1;
+		}
+		HashDataSplit dataSplit = new HashDataSplit(datasplit, seed);
+		String[] names = new String[]{"/train", "/dev", "/test"};
+		int[] numObjects = new int[names.length];
+		List<Map<String, Integer>> entityCounts = new ArrayList<Map<String, Integer>>();
+		List<Map<String, Integer>> relationCounts = new ArrayList<Map<String, Integer>>();
+		Writer[] writers = new Writer[names.length];
+		TensorWriter[] tensorWriters = new TensorWriter[names.length];
+		LabelRegistry<VocabularyEntry> vocabulary = new LabelRegistry<VocabularyEntry>(VocabularyEntry::new);
+		LabelRegistry<VocabularyEntry> posTags = posTagger != null
+				? new LabelRegistry<VocabularyEntry>(VocabularyEntry::new) : null;
+		LabelRegistry<WordLabel> labels = toTensor && printEntities ? WordLabel.newRegistry() : null;
+		if(labels != null){
+			labels.get("O");
+		}
+		try{
+			for(int i=0; i<names.length; i++){
+				entityCounts.add(new HashMap<String, Integer>());
+				relationCounts.add(new HashMap<String, Integer>());
+				if(toTensor){
+					tensorWriters[i] = new TensorWriter(outputDir+names[i], vocabulary, posTags, labels);
+				} else {
+					writers[i] = new BufferedWriter(new FileWriter(outputDir+names[i]+".data"), WRITE_BUFFER_SIZE);
+				}
+			}
+			processInOrder(docs, numThreads, doc -> {
+				List<ACESentence> sentences = getSentences(doc, splitter, ignoreOverlaps, useSplitterTokens);
+				int docSet = dataSplit.assign(HashDataSplit.getID(doc));
+				List<AssignedSentence> result = new ArrayList<AssignedSentence>(sentences.size());
+				for(ACESentence sentence: sentences){
+					AssignedSentence assigned = new AssignedSentence();
+					assigned.sentence = sentence;
+					assigned.set = splitByDocument ? docSet : dataSplit.assign(HashDataSplit.getID(sentence));
+					if(toTensor){
+						assigned.tokens = getTokens(sentence, tokenizer, posTagger);
+						if(labels != null){
+							assigned.labels = spansToLabels(sentence.entities, assigned.tokens,
+									new TokenOffsetIndex(assigned.tokens), useBILOU);
+						}
+					} else {
+						assigned.text = new StringBuilder();
+						writeSentence(sentence, assigned.text, tokenizer, posTagger, printEntities, printRelations,
+								toCoNLL, useBILOU);
+					}
+					result.add(assigned);
+				}
+				return new Pair<Integer, List<AssignedSentence>>(docSet, result);
+			}, result -> {
+				if(splitByDocument){
+					numObjects[result.first()]++;
+				}
+				for(AssignedSentence assigned: result.second()){
+					try{
+						if(toTensor){
+							tensorWriters[assigned.set].add(assigned.tokens, assigned.labels);
+						} else {
+							writers[assigned.set].append(assigned.text);
+						}
+					} catch (IOException e){
+						throw new UncheckedIOException(e);
+					}
+					if(!splitByDocument){
+						numObjects[assigned.set]++;
+					}
+					countTypes(assigned.sentence, entityCounts.get(assigned.set), relationCounts.get(assigned.set));
+				}
+			});
+		} finally {
+			for(int i=0; i<names.length; i++){
+				if(writers[i] != null){
+					writers[i].close();
+				}
+				if(tensorWriters[i] != null){
+					tensorWriters[i].close();
+				}
+			}
+		}
+		if(toTensor){
+			vocabulary.save(new File(outputDir+"/vocab.txt"));
+			if(posTags != null){
+				posTags.save(new File(outputDir+"/pos.txt"));
+			}
+			if(labels != null){
+				labels.save(new File(outputDir+"/labels.txt"));
+			}
+		}
+		reportOrphanMentions(docs);
+		System.out.println("Number of objects ("+(splitByDocument ? "ACEDocument" : "ACESentence")+"):");
+		System.out.println("Training: "+numObjects[HashDataSplit.TRAIN]);
+		System.out.println("Dev: "+numObjects[HashDataSplit.DEV]);
+		System.out.println("Test: "+numObjects[HashDataSplit.TEST]);
+		for(int i=0; i<names.length; i++){
+			printStatistics(entityCounts.get(i), relationCounts.get(i));
+		}
+	}
+	
+	/** A sentence with its set, and either its formatted text or its tokens and labels */
+	private static class AssignedSentence {
+		public ACESentence sentence;
+		public int set;
+		public StringBuilder text;
+		public List<CoreLabel> tokens;
+		public List<WordLabel> labels;
 	}
 
 	/**
@@ -463,98 +744,233 @@ public class ACEReader {
 	 */
 	public static List<ACESentence> getSentences(List<ACEDocument> docs, SentenceSplitter splitter,
 			boolean ignoreOverlappingEntities) {
+		return getSentences(docs, splitter, ignoreOverlappingEntities, false);
+	}
+
+	/**
+	 * Split documents into sentences with their corresponding annotations (entities, relations,
+	 * events, timexes, values)
+	 * @param docs The list of ACEDocument to be split
+	 * @param splitter The sentence splitter
+	 * @param ignoreOverlappingEntities Whether to ignore overlapping entities by removing the
+	 * 									shorter one when there is an overlap.
+	 * @param keepTokens Whether to keep the tokens produced by the sentence splitter in
+	 * 					 {@link ACESentence#tokens}, so that the sentences need not be tokenized again.
+	 * @return
+	 */
+	public static List<ACESentence> getSentences(List<ACEDocument> docs, SentenceSplitter splitter,
+			boolean ignoreOverlappingEntities, boolean keepTokens) {
+		List<ACESentence> aceSentences = new ArrayList<ACESentence>();
+		for(ACEDocument doc: docs){
+			aceSentences.addAll(getSentences(doc, splitter, ignoreOverlappingEntities, keepTokens));
+		}
+		reportOrphanMentions(docs);
+		return aceSentences;
+	}
+	
+	/**
+	 * Prints the mentions in the documents which are not inside any sentence
+	 */
+	private static void reportOrphanMentions(List<ACEDocument> docs){
 		List<ACEEntityMention> orphanEntities = new ArrayList<ACEEntityMention>();
 		List<ACERelationMention> orphanRelations = new ArrayList<ACERelationMention>();
 		List<ACEEventMention> orphanEvents = new ArrayList<ACEEventMention>();
 		List<ACETimexMention> orphanTimexes = new ArrayList<ACETimexMention>();
 		List<ACEValueMention> orphanValues = new ArrayList<ACEValueMention>();
-		List<ACESentence> aceSentences = new ArrayList<ACESentence>();
 		for(ACEDocument doc: docs){
-			for(CoreLabel sentence: fixSplit(splitter.split(doc.text))){
-				Span sentenceSpan = new Span(sentence.beginPosition(), sentence.endPosition());
-				ACESentence aceSentence = new ACESentence(doc, sentenceSpan, sentence.value());
-				for(ACEEntityMention mention: doc.entityMentions){
-					if(sentenceSpan.contains(mention.span)){
-						mention.containingSentence = aceSentence;
-						ACEEntityMention newMention = new ACEEntityMention(mention);
-						newMention.span.start -= sentenceSpan.start;
-						newMention.span.end -= sentenceSpan.start;
-						newMention.headSpan.start -= sentenceSpan.start;
-						newMention.headSpan.end -= sentenceSpan.start;
-
-						boolean add = true;
-						if(ignoreOverlappingEntities){
-							for(int i=aceSentence.entities.size()-1; i >= 0; i--){
-								ACEEntityMention existingMention = aceSentence.entities.get(i);
-								if(newMention.overlapsWith(existingMention)){
-									if(newMention.span.length() > existingMention.span.length()){
-										aceSentence.entities.remove(i);
-									} else {
-										add = false;
-										break;
-									}
-								}
-							}
-						}
-						if(add){
-							aceSentence.addEntityMention(newMention);
-						}
-					}
+			orphanEntities.addAll(returnOrphanMentions(doc.entityMentions));
+			orphanRelations.addAll(returnOrphanMentions(doc.relationMentions));
+			orphanEvents.addAll(returnOrphanMentions(doc.eventMentions));
+			orphanTimexes.addAll(returnOrphanMentions(doc.timexMentions));
+			orphanValues.addAll(returnOrphanMentions(doc.valueMentions));
+		}
+		System.out.println("The number of entity mentions not inside a sentence: "+orphanEntities.size()+" "+toIDString(orphanEntities));
+		System.out.println("The number of relation mentions not inside a sentence: "+orphanRelations.size()+" "+toIDString(orphanRelations));
+		System.out.println("The number of event mentions not inside a sentence: "+orphanEvents.size()+" "+toIDString(orphanEvents));
+		System.out.println("The number of timex mentions not inside a sentence: "+orphanTimexes.size()+" "+toIDString(orphanTimexes));
+		System.out.println("The number of value mentions not inside a sentence: "+orphanValues.size()+" "+toIDString(orphanValues));
+	}
+	
+	/**
+	 * Split a document into sentences with their corresponding annotations (entities, relations,
+	 * events, timexes, values).<br>
+	 * Unlike {@link #getSentences(List, SentenceSplitter, boolean, boolean)}, this does not report the
+	 * mentions which are not inside any sentence.
+	 * The sentences are corrected with {@link PostProcessingSentenceSplitter}, unless the splitter already is one.
+	 * @param doc The ACEDocument to be split
+	 * @param splitter The sentence splitter
+	 * @param ignoreOverlappingEntities Whether to ignore overlapping entities by removing the
+	 * 									shorter one when there is an overlap.
+	 * @param keepTokens Whether to keep the tokens produced by the sentence splitter in
+	 * 					 {@link ACESentence#tokens}, so that the sentences need not be tokenized again.
+	 * @return
+	 */
+	public static List<ACESentence> getSentences(ACEDocument doc, SentenceSplitter splitter,
+			boolean ignoreOverlappingEntities, boolean keepTokens) {
+		List<ACESentence> aceSentences = new ArrayList<ACESentence>();
+		if(!(splitter instanceof PostProcessingSentenceSplitter)){
+			splitter = new PostProcessingSentenceSplitter(splitter);
+		}
+		List<CoreLabel> sentences = keepTokens ? splitter.splitWithTokens(doc.text) : splitter.split(doc.text);
+		for(CoreLabel sentence: sentences){
+			Span sentenceSpan = new Span(sentence.beginPosition(), sentence.endPosition());
+			ACESentence aceSentence = new ACESentence(doc, sentenceSpan, sentence.value());
+			if(keepTokens){
+				List<CoreLabel> sentenceTokens = sentence.get(TokensAnnotation.class);
+				for(CoreLabel token: sentenceTokens){
+					token.setBeginPosition(token.beginPosition() - sentenceSpan.start);
+					token.setEndPosition(token.endPosition() - sentenceSpan.start);
 				}
-				for(ACERelationMention relation: doc.relationMentions){
-					if(sentenceSpan.contains(relation.span)){
-						boolean add = true;
-						ACERelationMention newRelation = new ACERelationMention(relation);
-						newRelation.span.start -= sentenceSpan.start;
-						newRelation.span.end -= sentenceSpan.start;
-						for(ACEEntityMention argMention: newRelation.args){
-							if(!sentenceSpan.contains(argMention.span)){
+				aceSentence.tokens = sentenceTokens;
+			}
+			aceSentences.add(aceSentence);
+		}
+		assignMentions(doc, aceSentences, ignoreOverlappingEntities);
+		return aceSentences;
+	}
+	
+	/**
+	 * Adds the mentions in the document to the sentences containing them, and sets their
+	 * {@link ACEObjectMention#containingSentence}.<br>
+	 * The entity mentions and relation mentions are copied with spans relative to the sentence, while the
+	 * other mentions are added as they are. A relation mention is added only if its arguments are also in the sentence,
+	 * and its arguments are the same objects as the corresponding entity mentions in the sentence.
+	 * The mentions are placed using a {@link SpanIndex} over the sentence spans, and the overlapping entities are
+	 * resolved in a sweep over the mentions of each sentence.
+	 * @param doc The document containing the mentions
+	 * @param aceSentences The sentences of the document
+	 * @param ignoreOverlappingEntities Whether to ignore overlapping entities by removing the
+	 * 									shorter one when there is an overlap.
+	 */
+	public static void assignMentions(ACEDocument doc, List<ACESentence> aceSentences,
+			boolean ignoreOverlappingEntities){
+		List<Span> sentenceSpans = new ArrayList<Span>();
+		for(ACESentence aceSentence: aceSentences){
+			sentenceSpans.add(aceSentence.span);
+		}
+		SpanIndex index = new SpanIndex(sentenceSpans);
+		List<List<ACEEntityMention>> entitiesBySentence = groupBySentence(doc.entityMentions, index, aceSentences.size());
+		List<List<ACERelationMention>> relationsBySentence = groupBySentence(doc.relationMentions, index, aceSentences.size());
+		List<List<ACEEventMention>> eventsBySentence = groupBySentence(doc.eventMentions, index, aceSentences.size());
+		List<List<ACETimexMention>> timexesBySentence = groupBySentence(doc.timexMentions, index, aceSentences.size());
+		List<List<ACEValueMention>> valuesBySentence = groupBySentence(doc.valueMentions, index, aceSentences.size());
+		for(int sentenceIdx=0; sentenceIdx<aceSentences.size(); sentenceIdx++){
+			ACESentence aceSentence = aceSentences.get(sentenceIdx);
+			Span sentenceSpan = aceSentence.span;
+			List<ACEEntityMention> entities = entitiesBySentence.get(sentenceIdx);
+			// The overlaps are resolved on the document mentions, as shifting the spans does not change them,
+			// so that only the mentions which are kept are copied
+			List<ACEEntityMention> keptEntities = new ArrayList<ACEEntityMention>(entities.size());
+			// When the mentions are sorted by their start, a mention which ends before the start of the current
+			// mention cannot overlap with the following mentions, so only the remaining ones need to be checked
+			boolean canSweep = isSortedByStart(entities);
+			List<ACEEntityMention> activeEntities = new ArrayList<ACEEntityMention>();
+			for(ACEEntityMention mention: entities){
+				mention.containingSentence = aceSentence;
+				boolean add = true;
+				if(ignoreOverlappingEntities){
+					List<ACEEntityMention> candidates = keptEntities;
+					if(canSweep){
+						activeEntities.removeIf(existingMention -> existingMention.span.end <= mention.span.start
+								&& existingMention.span.start < mention.span.start);
+						candidates = activeEntities;
+					}
+					for(int i=candidates.size()-1; i >= 0; i--){
+						ACEEntityMention existingMention = candidates.get(i);
+						if(mention.overlapsWith(existingMention)){
+							if(mention.span.length() > existingMention.span.length()){
+								candidates.remove(i);
+								if(canSweep){
+									removeSameInstance(keptEntities, existingMention);
+								}
+							} else {
 								add = false;
 								break;
 							}
-							argMention.span.start -= sentenceSpan.start;
-							argMention.span.end -= sentenceSpan.start;
-							argMention.headSpan.start -= sentenceSpan.start;
-							argMention.headSpan.end -= sentenceSpan.start;
-						}
-						if(add){
-							relation.containingSentence = aceSentence;
-							aceSentence.addRelationMention(newRelation);
 						}
 					}
 				}
-				for(ACEEventMention event: doc.eventMentions){
-					if(sentenceSpan.contains(event.span)){
-						event.containingSentence = aceSentence;
-						aceSentence.addEventMention(event);
+				if(add){
+					keptEntities.add(mention);
+					if(canSweep){
+						activeEntities.add(mention);
 					}
 				}
-				for(ACETimexMention timex: doc.timexMentions){
-					if(sentenceSpan.contains(timex.span)){
-						timex.containingSentence = aceSentence;
-						aceSentence.addTimexMention(timex);
+			}
+			// The copies relative to the sentence, also used as the arguments of the relations in the sentence
+			Map<ACEEntityMention, ACEEntityMention> sentenceMentions = new IdentityHashMap<ACEEntityMention, ACEEntityMention>();
+			for(ACEEntityMention mention: keptEntities){
+				ACEEntityMention newMention = new ACEEntityMention(mention, sentenceSpan.start);
+				sentenceMentions.put(mention, newMention);
+				aceSentence.addEntityMention(newMention);
+			}
+			for(ACERelationMention relation: relationsBySentence.get(sentenceIdx)){
+				boolean add = true;
+				for(ACEEntityMention argMention: relation.args){
+					if(!sentenceSpan.contains(argMention.span)){
+						add = false;
+						break;
 					}
 				}
-				for(ACEValueMention value: doc.valueMentions){
-					if(sentenceSpan.contains(value.span)){
-						value.containingSentence = aceSentence;
-						aceSentence.addValueMention(value);
+				if(add){
+					ACEEntityMention[] args = new ACEEntityMention[relation.args.length];
+					for(int i=0; i<args.length; i++){
+						args[i] = sentenceMentions.computeIfAbsent(relation.args[i],
+								argMention -> new ACEEntityMention(argMention, sentenceSpan.start));
 					}
+					relation.containingSentence = aceSentence;
+					aceSentence.addRelationMention(new ACERelationMention(relation, sentenceSpan.start, args));
 				}
-				aceSentences.add(aceSentence);
 			}
-			orphanEntities.addAll(returnOrphanMentions(doc.entityMentions));
-			orphanRelations.addAll(returnOrphanMentions(doc.relationMentions));
-			orphanEvents.addAll(returnOrphanMentions(doc.eventMentions));
-			orphanTimexes.addAll(returnOrphanMentions(doc.timexMentions));
-			orphanValues.addAll(returnOrphanMentions(doc.valueMentions));
+			for(ACEEventMention event: eventsBySentence.get(sentenceIdx)){
+				event.containingSentence = aceSentence;
+				aceSentence.addEventMention(event);
+			}
+			for(ACETimexMention timex: timexesBySentence.get(sentenceIdx)){
+				timex.containingSentence = aceSentence;
+				aceSentence.addTimexMention(timex);
+			}
+			for(ACEValueMention value: valuesBySentence.get(sentenceIdx)){
+				value.containingSentence = aceSentence;
+				aceSentence.addValueMention(value);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the mentions contained in each sentence, keeping the order of the mentions.
+	 */
+	private static <T extends ACEObjectMention<?>> List<List<T>> groupBySentence(List<T> mentions, SpanIndex index,
+			int numSentences){
+		List<List<T>> result = new ArrayList<List<T>>(numSentences);
+		for(int i=0; i<numSentences; i++){
+			result.add(new ArrayList<T>());
+		}
+		for(T mention: mentions){
+			index.forEachContaining(mention.span, sentenceIdx -> result.get(sentenceIdx).add(mention));
+		}
+		return result;
+	}
+	
+	private static boolean isSortedByStart(List<? extends ACEObjectMention<?>> mentions){
+		for(int i=1; i<mentions.size(); i++){
+			if(mentions.get(i).span.start < mentions.get(i-1).span.start){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes the given object from the list, comparing by identity instead of {@link Object#equals(Object)}
+	 */
+	private static <T> void removeSameInstance(List<T> list, T object){
+		for(int i=list.size()-1; i>=0; i--){
+			if(list.get(i) == object){
+				list.remove(i);
+				return;
+			}
 		}
-		System.out.println("The number of entity mentions not inside a sentence: "+orphanEntities.size()+" "+toIDString(orphanEntities));
-		System.out.println("The number of relation mentions not inside a sentence: "+orphanRelations.size()+" "+toIDString(orphanRelations));
-		System.out.println("The number of event mentions not inside a sentence: "+orphanEvents.size()+" "+toIDString(orphanEvents));
-		System.out.println("The number of timex mentions not inside a sentence: "+orphanTimexes.size()+" "+toIDString(orphanTimexes));
-		System.out.println("The number of value mentions not inside a sentence: "+orphanValues.size()+" "+toIDString(orphanValues));
-		return aceSentences;
 	}
 	
 	private static String toIDString(List<? extends ACEObjectMention<?>> mentions){
@@ -580,123 +996,6 @@ public class ACEReader {
 		return orphanMentions;
 	}
 	
-	private static List<CoreLabel> fixSplit(List<CoreLabel> sentences){
-		List<CoreLabel> result = new ArrayList<CoreLabel>();
-		for(int i=0; i<sentences.size(); i++){
-			CoreLabel sentence = sentences.get(i);
-			CoreLabel nextSentence = null;
-			
-			while(sentence != null){
-				if(i < sentences.size()-1){
-					nextSentence = sentences.get(i+1);
-				} else {
-					nextSentence = null;
-				}
-				if (sentence.value().contains("\n\n") || (sentence.endPosition() <= 70 && sentence.value().contains("\n"))){
-					// Split if contains double new lines or new lines in the beginning of document
-					int startIndex = -1;
-					int startIndexOrig = -1;
-					if(sentence.endPosition() <= 70 && sentence.value().contains("\n")){
-						startIndex = sentence.value().indexOf("\n");
-						startIndexOrig = sentence.originalText().indexOf("\n");
-					} else {
-						startIndex = sentence.value().indexOf("\n\n");
-						startIndexOrig = sentence.originalText().indexOf("\n\n");
-					}
-					int nextSentenceIndex = -1;
-					int nextSentenceIndexOrig = -1;
-					Matcher matcher = java.util.regex.Pattern.compile("[\n\t ]+").matcher(sentence.value().substring(startIndex));
-					if(matcher.find()){
-						nextSentenceIndex = matcher.end() + startIndex;
-					}
-					matcher = java.util.regex.Pattern.compile("[\n\t ]+").matcher(sentence.originalText().substring(startIndexOrig));
-					if(matcher.find()){
-						nextSentenceIndexOrig = matcher.end() + startIndexOrig;
-					}
-
-					CoreLabel newSentence = new CoreLabel();
-					newSentence.setBeginPosition(nextSentenceIndex+sentence.beginPosition());
-					newSentence.setEndPosition(sentence.endPosition());
-					newSentence.setAfter(sentence.after());
-					newSentence.setBefore(sentence.value().substring(startIndex, nextSentenceIndex));
-					newSentence.setOriginalText(sentence.originalText().substring(nextSentenceIndexOrig));
-					newSentence.setWord(sentence.word().substring(nextSentenceIndex));
-					newSentence.setValue(sentence.value().substring(nextSentenceIndex));
-					sentence.setEndPosition(startIndex+sentence.beginPosition());
-					sentence.setAfter(newSentence.before());
-					sentence.setOriginalText(sentence.originalText().substring(0, startIndexOrig));
-					sentence.setWord(sentence.word().substring(0, startIndex));
-					sentence.setValue(sentence.value().substring(0, startIndex));
-					result.add(sentence);
-					sentence = newSentence;
-				} else if(nextSentence != null && nextSentence.beginPosition() == sentence.endPosition()){
-					// Combine with next if no space
-					sentence.setAfter(nextSentence.after());
-					sentence.setEndPosition(nextSentence.endPosition());
-					sentence.setOriginalText(sentence.originalText() + nextSentence.before() + nextSentence.originalText());
-					sentence.setWord(sentence.word() + nextSentence.before() + nextSentence.word());
-					sentence.setValue(sentence.value() + nextSentence.before() + nextSentence.value());
-					i += 1;
-				} else {
-					result.add(sentence);
-					sentence = null;
-				}
-			}
-		}
-		return result;
-	}
-	
-	private static List<CoreLabel> fixTokens(List<CoreLabel> tokens){
-		List<CoreLabel> result = new ArrayList<CoreLabel>();
-		for(int i=0; i<tokens.size(); i++){
-			CoreLabel token = tokens.get(i);
-//			CoreLabel nextToken = null;
-			
-			while(token != null){
-//				if(i < tokens.size()-1){
-//					nextToken = tokens.get(i+1);
-//				} else {
-//					nextToken = null;
-//				}
-				if (token.value().matches("([^-]*-[A-Z].*|[^-]*[A-Z][^-]*-[^-]+-[^-]*)")){
-					// Split if contains dash followed by an uppercase letter or contains two dashes
-					int startIndex = -1;
-					int startIndexOrig = -1;
-					Matcher matcher = Pattern.compile("-").matcher(token.value());
-					if(matcher.find()){
-						startIndex = matcher.start();
-					}
-					matcher = Pattern.compile("-").matcher(token.originalText());
-					if(matcher.find()){
-						startIndexOrig = matcher.start();
-					}
-					int nextTokenIndex = startIndex+1;
-					int nextTokenIndexOrig = startIndexOrig+1;
-
-					CoreLabel newToken = new CoreLabel();
-					newToken.setBeginPosition(nextTokenIndex+token.beginPosition());
-					newToken.setEndPosition(token.endPosition());
-					newToken.setAfter(token.after());
-					newToken.setBefore(token.value().substring(startIndex, nextTokenIndex));
-					newToken.setOriginalText(token.originalText().substring(nextTokenIndexOrig));
-					newToken.setWord(token.word().substring(nextTokenIndex));
-					newToken.setValue(token.value().substring(nextTokenIndex));
-					token.setEndPosition(startIndex+token.beginPosition());
-					token.setAfter(newToken.before());
-					token.setOriginalText(token.originalText().substring(0, startIndexOrig));
-					token.setWord(token.word().substring(0, startIndex));
-					token.setValue(token.value().substring(0, startIndex));
-					result.add(token);
-					token = newToken;
-				} else {
-					result.add(token);
-					token = null;
-				}
-			}
-		}
-		return result;
-	}
-	
 	private static <T> void splitData(List<T> aceObjects, List<T> trainObjects, List<T> devObjects,
 			List<T> testObjects, double[] datasplit, boolean shuffle, int shuffleSeed){
 		int total = aceObjects.size();
@@ -724,23 +1023,27 @@ public class ACEReader {
 	
 	private static void printStatistics(List<ACESentence> sentences){
 		Map<String, Integer> entityCounts = new HashMap<String, Integer>();
-		for(ACESentence sentence: sentences){
-			for(ACEEntityMention entity: sentence.entities){
-				if(!entityCounts.containsKey(entity.entity.type.name())){
-					entityCounts.put(entity.entity.type.name(), 0);
-				}
-				entityCounts.put(entity.entity.type.name(), entityCounts.get(entity.entity.type.name())+1);
-			}
-		}
 		Map<String, Integer> relationCounts = new HashMap<String, Integer>();
 		for(ACESentence sentence: sentences){
-			for(ACERelationMention relation: sentence.relations){
-				if(!relationCounts.containsKey(relation.relation.type.name())){
-					relationCounts.put(relation.relation.type.name(), 0);
-				}
-				relationCounts.put(relation.relation.type.name(), relationCounts.get(relation.relation.type.name())+1);
-			}
+			countTypes(sentence, entityCounts, relationCounts);
+		}
+		printStatistics(entityCounts, relationCounts);
+	}
+	
+	/**
+	 * Adds the entity and relation types in the sentence to the counts
+	 */
+	private static void countTypes(ACESentence sentence, Map<String, Integer> entityCounts,
+			Map<String, Integer> relationCounts){
+		for(ACEEntityMention entity: sentence.entities){
+			entityCounts.merge(entity.entity.type.name(), 1, Integer::sum);
 		}
+		for(ACERelationMention relation: sentence.relations){
+			relationCounts.merge(relation.relation.type.name(), 1, Integer::sum);
+		}
+	}
+	
+	private static void printStatistics(Map<String, Integer> entityCounts, Map<String, Integer> relationCounts){
 		System.out.println("Statistics of Entities:");
 		for(String type: sorted(entityCounts.keySet())){
 			System.out.println(type.toString()+": "+entityCounts.get(type));
@@ -759,165 +1062,300 @@ public class ACEReader {
 	}
 	
 	private static void writeData(List<ACESentence> sentences, String outputDir, String name,
-			Tokenizer tokenizer, POSTagger posTagger, boolean printEntities, boolean printRelations,
-			boolean toCoNLL, boolean useBILOU) throws FileNotFoundException{
-		PrintWriter printer = new PrintWriter(new File(outputDir+name));
-		for(ACESentence sentence: sentences){
-			if(tokenizer != null){
-				List<CoreLabel> tokens = fixTokens(tokenizer.tokenize(sentence.text));
-				if(posTagger != null){
-					posTagger.tagCoreLabels(tokens);
+			PostProcessingTokenizer tokenizer, POSTagger posTagger, boolean printEntities, boolean printRelations,
+			boolean toCoNLL, boolean useBILOU, int numThreads) throws IOException{
+		if((tokenizer != null && !tokenizer.isThreadSafe()) || (posTagger != null && !posTagger.isThreadSafe())){
+			numThreads = 1;
+		}
+		try(Writer writer = new BufferedWriter(new FileWriter(outputDir+name), WRITE_BUFFER_SIZE)){
+			if(numThreads <= 1){
+				// The same buffer is reused for all sentences
+				StringBuilder buffer = new StringBuilder();
+				for(ACESentence sentence: sentences){
+					buffer.setLength(0);
+					writeSentence(sentence, buffer, tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU);
+					writer.append(buffer);
 				}
-				if(toCoNLL){
-					List<WordLabel> outputTokens = spansToLabels(sentence.entities, tokens, useBILOU);
-					if(posTagger != null){
-						for(int i=0; i<tokens.size(); i++){
-							String annotations = "";
-							if(printEntities){
-								annotations += outputTokens.get(i).form;
-							}
-							printer.println(String.format("%s\t%s\t%s",tokens.get(i).value(), tokens.get(i).tag(), annotations));
-						}
-					} else {
-						for(int i=0; i<tokens.size(); i++){
-							String annotations = "";
-							if(printEntities){
-								annotations += outputTokens.get(i).form;
-							}
-							printer.println(String.format("%s\t%s",tokens.get(i).value(), annotations));
-						}
-					}
-					printer.println();
-				} else {
-					StringBuilder stringBuilder = new StringBuilder();
-					for(CoreLabel token: tokens){
-						if(stringBuilder.length() > 0){
-							stringBuilder.append(" ");
-						}
-						stringBuilder.append(token.value());
-						token.setWord(escapeBracket(token.word()));
+			} else {
+				processInOrder(sentences, numThreads, sentence -> {
+					StringBuilder buffer = new StringBuilder();
+					writeSentence(sentence, buffer, tokenizer, posTagger, printEntities, printRelations, toCoNLL, useBILOU);
+					return buffer;
+				}, buffer -> {
+					try{
+						writer.append(buffer);
+					} catch (IOException e){
+						throw new UncheckedIOException(e);
 					}
-					printer.println(stringBuilder.toString());
+				});
+			}
+		}
+		printStatistics(sentences);
+	}
+	
+	/**
+	 * Writes the sentences as arrays of ids with a {@link TensorWriter}, with the given base name in the output directory.
+	 */
+	private static void writeTensorData(List<ACESentence> sentences, String outputDir, String name,
+			PostProcessingTokenizer tokenizer, POSTagger posTagger, LabelRegistry<VocabularyEntry> vocabulary,
+			LabelRegistry<VocabularyEntry> posTags, LabelRegistry<WordLabel> labels, boolean useBILOU,
+			int numThreads) throws IOException{
+		if((tokenizer != null && !tokenizer.isThreadSafe()) || (posTagger != null && !posTagger.isThreadSafe())){
+			numThreads = 1;
+		}
+		try(TensorWriter writer = new TensorWriter(outputDir+name, vocabulary, posTags, labels)){
+			// The ids are assigned when the sentences are written in order, so they do not depend on the threads
+			processInOrder(sentences, numThreads, sentence -> {
+				List<CoreLabel> tokens = getTokens(sentence, tokenizer, posTagger);
+				List<WordLabel> tokenLabels = null;
+				if(labels != null){
+					tokenLabels = spansToLabels(sentence.entities, tokens, new TokenOffsetIndex(tokens), useBILOU);
+				}
+				return new Pair<List<CoreLabel>, List<WordLabel>>(tokens, tokenLabels);
+			}, result -> {
+				try{
+					writer.add(result.first(), result.second());
+				} catch (IOException e){
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		printStatistics(sentences);
+	}
+	
+	/**
+	 * Applies the function to each item (e.g., sentence) and passes the results to the consumer in the order of
+	 * the items.<br>
+	 * With more than one thread, the function is applied in parallel, with only a limited number of items
+	 * submitted ahead of the one being consumed.
+	 */
+	private static <S, T> void processInOrder(List<S> items, int numThreads, Function<S, T> function,
+			Consumer<T> consumer){
+		if(numThreads <= 1){
+			for(S item: items){
+				consumer.accept(function.apply(item));
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		ArrayDeque<Future<T>> pending = new ArrayDeque<Future<T>>();
+		int maxPending = 64*numThreads;
+		try{
+			for(S item: items){
+				pending.add(executor.submit(() -> function.apply(item)));
+				if(pending.size() >= maxPending){
+					consumer.accept(getResult(pending.poll()));
+				}
+			}
+			while(!pending.isEmpty()){
+				consumer.accept(getResult(pending.poll()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static <T> T getResult(Future<T> future){
+		try{
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException)cause;
+			} else if(cause instanceof Error){
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+	
+	/**
+	 * Appends the sentence in the output format to the buffer, with the same line separator as {@link java.io.PrintWriter}.
+	 */
+	private static void writeSentence(ACESentence sentence, StringBuilder out, PostProcessingTokenizer tokenizer,
+			POSTagger posTagger, boolean printEntities, boolean printRelations, boolean toCoNLL, boolean useBILOU){
+		if(tokenizer != null){
+			List<CoreLabel> tokens = getTokens(sentence, tokenizer, posTagger);
+			TokenOffsetIndex tokenIndex = new TokenOffsetIndex(tokens);
+			if(toCoNLL){
+				List<WordLabel> outputTokens = spansToLabels(sentence.entities, tokens, tokenIndex, useBILOU);
+				for(int i=0; i<tokens.size(); i++){
+					out.append(tokens.get(i).value()).append('\t');
 					if(posTagger != null){
-						stringBuilder = new StringBuilder();
-						for(CoreLabel token: tokens){
-							if(stringBuilder.length() > 0){
-								stringBuilder.append(" ");
-							}
-							stringBuilder.append(token.tag());
-						}
-						printer.println(stringBuilder.toString());
+						out.append(tokens.get(i).tag()).append('\t');
 					}
 					if(printEntities){
-						stringBuilder = new StringBuilder();
-						for(ACEEntityMention mention: sentence.entities){
-							Span span = findWordSpan(mention.span, tokens);
-							Span headSpan = findWordSpan(mention.headSpan, tokens);
-							if(stringBuilder.length() > 0){
-								stringBuilder.append("|");
-							}
-							stringBuilder.append(String.format("%s,%s,%s,%s %s", span.start, span.end, headSpan.start, headSpan.end, mention.label.form));
-						}
-						printer.println(stringBuilder.toString());
+						out.append(outputTokens.get(i).form);
 					}
-
-					if(printRelations){
-						stringBuilder = new StringBuilder();
-						for(ACERelationMention relation: sentence.relations){
-							if(stringBuilder.length() > 0){
-								stringBuilder.append("|");
-							}
-							stringBuilder.append(relation.relation.type() + "::" + relation.relation.subtype());
-							for(ACEEntityMention mention: relation.args){
-								Span span = findWordSpan(mention.span, tokens);
-								Span headSpan = findWordSpan(mention.headSpan, tokens);
-								stringBuilder.append(String.format(" %s,%s,%s,%s %s", span.start, span.end, headSpan.start, headSpan.end, mention.label.form));
-							}
+					out.append(NEWLINE);
+				}
+				out.append(NEWLINE);
+			} else {
+				for(int i=0; i<tokens.size(); i++){
+					CoreLabel token = tokens.get(i);
+					if(i > 0){
+						out.append(' ');
+					}
+					out.append(token.value());
+					token.setWord(escapeBracket(token.word()));
+				}
+				out.append(NEWLINE);
+				if(posTagger != null){
+					for(int i=0; i<tokens.size(); i++){
+						if(i > 0){
+							out.append(' ');
 						}
-						printer.println(stringBuilder.toString());
+						out.append(tokens.get(i).tag());
 					}
-					
-					printer.println();
+					out.append(NEWLINE);
 				}
-			} else {
-				printer.println(sentence.text.replaceAll("[\n\t]", " "));
-				StringBuilder stringBuilder;
-				
 				if(printEntities){
-					stringBuilder = new StringBuilder();
+					boolean first = true;
 					for(ACEEntityMention mention: sentence.entities){
-						Span span = mention.span;
-						Span headSpan = mention.headSpan;
-						if(stringBuilder.length() > 0){
-							stringBuilder.append("|");
+						if(!first){
+							out.append('|');
 						}
-						stringBuilder.append(String.format("%s,%s,%s,%s %s", span.start, span.end, headSpan.start, headSpan.end, mention.label.form));
+						first = false;
+						appendMention(out, findWordSpan(mention.span, tokens, tokenIndex),
+								findWordSpan(mention.headSpan, tokens, tokenIndex), mention.label.form);
 					}
-					printer.println(stringBuilder.toString());
+					out.append(NEWLINE);
 				}
-				
+
 				if(printRelations){
-					stringBuilder = new StringBuilder();
+					boolean first = true;
 					for(ACERelationMention relation: sentence.relations){
-						if(stringBuilder.length() > 0){
-							stringBuilder.append("|");
+						if(!first){
+							out.append('|');
 						}
-						stringBuilder.append(relation.relation.type() + "::" + relation.relation.subtype());
+						first = false;
+						out.append(relation.relation.type()).append("::").append(relation.relation.subtype());
 						for(ACEEntityMention mention: relation.args){
-							Span span = mention.span;
-							Span headSpan = mention.headSpan;
-							stringBuilder.append(String.format(" %s,%s,%s,%s %s", span.start, span.end, headSpan.start, headSpan.end, mention.label.form));
+							out.append(' ');
+							appendMention(out, findWordSpan(mention.span, tokens, tokenIndex),
+									findWordSpan(mention.headSpan, tokens, tokenIndex), mention.label.form);
 						}
 					}
-					
-					printer.println(stringBuilder.toString());
+					out.append(NEWLINE);
 				}
 				
-				printer.println();
+				out.append(NEWLINE);
+			}
+		} else {
+			String text = sentence.text;
+			for(int i=0; i<text.length(); i++){
+				char c = text.charAt(i);
+				out.append(c == '\n' || c == '\t' ? ' ' : c);
+			}
+			out.append(NEWLINE);
+			
+			if(printEntities){
+				boolean first = true;
+				for(ACEEntityMention mention: sentence.entities){
+					if(!first){
+						out.append('|');
+					}
+					first = false;
+					appendMention(out, mention.span, mention.headSpan, mention.label.form);
+				}
+				out.append(NEWLINE);
+			}
+			
+			if(printRelations){
+				boolean first = true;
+				for(ACERelationMention relation: sentence.relations){
+					if(!first){
+						out.append('|');
+					}
+					first = false;
+					out.append(relation.relation.type()).append("::").append(relation.relation.subtype());
+					for(ACEEntityMention mention: relation.args){
+						out.append(' ');
+						appendMention(out, mention.span, mention.headSpan, mention.label.form);
+					}
+				}
+				out.append(NEWLINE);
 			}
+			
+			out.append(NEWLINE);
 		}
-		printer.close();
-		printStatistics(sentences);
 	}
 	
-	private static List<WordLabel> spansToLabels(List<ACEEntityMention> mentions, List<CoreLabel> tokens, boolean useBILOU){
+	/**
+	 * Appends a mention in the span format: "start,end,headStart,headEnd label"
+	 */
+	private static void appendMention(StringBuilder out, Span span, Span headSpan, String label){
+		out.append(span.start).append(',').append(span.end).append(',')
+			.append(headSpan.start).append(',').append(headSpan.end).append(' ').append(label);
+	}
+	
+	/**
+	 * Returns the tokens of the sentence, tagged with the POS tagger if it is not null.<br>
+	 * The tokens from the sentence splitter are reused if available, post-processed in the same way.
+	 */
+	private static List<CoreLabel> getTokens(ACESentence sentence, PostProcessingTokenizer tokenizer, POSTagger posTagger){
+		List<CoreLabel> tokens = sentence.tokens != null ? tokenizer.postProcess(sentence.tokens) : tokenizer.tokenize(sentence.text);
+		if(posTagger != null){
+			posTagger.tagCoreLabels(tokens);
+		}
+		return tokens;
+	}
+	
+	private static List<WordLabel> spansToLabels(List<ACEEntityMention> mentions, List<CoreLabel> tokens,
+			TokenOffsetIndex tokenIndex, boolean useBILOU){
 		WordLabel[] result = new WordLabel[tokens.size()];
-		Arrays.fill(result, null);
 		for(ACEEntityMention mention: mentions){
-			Span span = findWordSpan(mention.span, tokens);
-			String type = mention.label.form;
+			Span span = findWordSpan(mention.span, tokens, tokenIndex);
+			String[] forms = getWordLabelForms(mention.label.form);
 			for(int i=span.start; i<span.end; i++){
-				String addition = "";
-				if(result[i] != null){
-					addition = "H";
-				}
+				int prefix;
 				if(i == span.start && i == span.end-1){
-					if(useBILOU){
-						result[i] = WordLabel.get("U"+addition+"-"+type);
-					} else {
-						result[i] = WordLabel.get("B"+addition+"-"+type);
-					}
+					prefix = useBILOU ? PREFIX_U : PREFIX_B;
 				} else if (i == span.end-1){
-					if(useBILOU){
-						result[i] = WordLabel.get("L"+addition+"-"+type);
-					} else {
-						result[i] = WordLabel.get("I"+addition+"-"+type);
-					}
+					prefix = useBILOU ? PREFIX_L : PREFIX_I;
 				} else if (i == span.start){
-					result[i] = WordLabel.get("B"+addition+"-"+type);
+					prefix = PREFIX_B;
 				} else {
-					result[i] = WordLabel.get("I"+addition+"-"+type);
+					prefix = PREFIX_I;
 				}
+				if(result[i] != null){
+					prefix += LABEL_PREFIXES.length/2;
+				}
+				// Registered on first use, so the ids follow the order in which the labels are used
+				result[i] = WordLabel.get(forms[prefix]);
 			}
 		}
+		WordLabel outside = null;
 		for(int i=0; i<result.length; i++){
 			if(result[i] == null){
-				result[i] = WordLabel.get("O");
+				if(outside == null){
+					outside = WordLabel.get("O");
+				}
+				result[i] = outside;
 			}
 		}
 		return Arrays.asList(result);
 	}
 	
+	/**
+	 * Returns the forms of the word labels of the given entity type, indexed by the position of the prefix in
+	 * {@link #LABEL_PREFIXES}.<br>
+	 * The array is filled before it is published by {@link ConcurrentMap#computeIfAbsent}, and never modified
+	 * afterwards, so the export threads can read it without synchronization.
+	 */
+	private static String[] getWordLabelForms(String type){
+		return WORD_LABEL_FORMS.computeIfAbsent(type, key -> {
+			String[] forms = new String[LABEL_PREFIXES.length];
+			for(int i=0; i<forms.length; i++){
+				forms[i] = LABEL_PREFIXES[i]+"-"+key;
+			}
+			return forms;
+		});
+	}
+	
 	private static String escapeBracket(String word){
 		if(word.contains("(")){
 			return "-LRB-";
@@ -936,17 +1374,16 @@ public class ACEReader {
 		}
 	}
 	
-	private static Span findWordSpan(Span mention, List<CoreLabel> tokens){
-		int start = -1;
-		int end = -1;
-		for(int i=0; i<tokens.size(); i++){
-			CoreLabel token = tokens.get(i);
-			if(token.beginPosition() <= mention.start && token.endPosition() > mention.start && start == -1){
-				start = i;
-			}
-			if(token.beginPosition() < mention.end && token.endPosition() >= mention.end){
-				end = i+1;
-			}
+	/**
+	 * Returns the span of the tokens covering the given character span, using the index of the token offsets.<br>
+	 * The start is the first token containing the start of the span, and the end is one after the last token
+	 * containing the end of the span, or -1 if there is no such token.
+	 */
+	private static Span findWordSpan(Span mention, List<CoreLabel> tokens, TokenOffsetIndex tokenIndex){
+		int start = tokenIndex.findTokenStartingSpan(mention.start);
+		int end = tokenIndex.findTokenEndingSpan(mention.end);
+		if(end != -1){
+			end += 1;
 		}
 		if(start == -1 || end == -1){
 			System.out.println("Mention ["+mention.start+","+mention.end+"] not found in ["+tokens.get(0).beginPosition()+","+tokens.get(tokens.size()-1).endPosition()+"]");
@@ -986,7 +1423,10 @@ public class ACEReader {
 	}
 	
 	/**
-	 * Reads directories containing ACE 2004 and/or ACE 2005 data and return them as {@link ACEDocument} objects.
+	 * Reads directories containing ACE 2004 and/or ACE 2005 data and return them as {@link ACEDocument} objects.<br>
+	 * Each of the paths can also be a .tar, .tgz, .tar.gz, or .zip archive of the directory,
+	 * which is read with {@link ACEArchiveReader} without extracting it, optionally followed by
+	 * {@link ACEArchiveReader#ROOT_SEPARATOR} and the directory inside the archive (e.g., corpus.tgz!data/English).
 	 * @param ace2004DirName The path to ACE 2004 directory. Can be null.
 	 * @param ace2005DirName The path to ACE 2005 directory. Can be null.
 	 * @param ace2004Domains The list of domains for ACE 2004 to be included.
@@ -996,23 +1436,215 @@ public class ACEReader {
 	 * @throws SAXException
 	 */
 	public static List<ACEDocument> readDocuments(String ace2004DirName, String ace2005DirName, List<String> ace2004Domains, List<String> ace2005Domains) throws IOException, SAXException{
-		List<ACEDocument> result = new ArrayList<ACEDocument>();
 		List<File> fileList = new ArrayList<File>();
-		if(ace2004DirName != null){
+		if(ace2004DirName != null && !isArchive(ace2004DirName)){
 			extractDocList(fileList, ace2004DirName, ace2004Domains);
 		}
-		if(ace2005DirName != null){
+		if(ace2005DirName != null && !isArchive(ace2005DirName)){
 			extractDocList(fileList, ace2005DirName, ace2005Domains, "/timex2norm");
 		}
-		for(File sgmFile: fileList){
-			result.add(new ACEDocument(sgmFile.getAbsolutePath()));
+		List<ACEDocument> result = readDocuments(fileList, false, false, DEFAULT_NUM_THREADS);
+		if(ace2004DirName != null && isArchive(ace2004DirName)){
+			result.addAll(ACEArchiveReader.readDocuments(new File(ACEArchiveReader.getArchivePath(ace2004DirName)),
+					ACEArchiveReader.getRoot(ace2004DirName), ace2004Domains, null, false, false, DEFAULT_NUM_THREADS));
+		}
+		if(ace2005DirName != null && isArchive(ace2005DirName)){
+			result.addAll(ACEArchiveReader.readDocuments(new File(ACEArchiveReader.getArchivePath(ace2005DirName)),
+					ACEArchiveReader.getRoot(ace2005DirName), ace2005Domains, "timex2norm", false, false, DEFAULT_NUM_THREADS));
+		}
+		return result;
+	}
+	
+	/**
+	 * Makes the tokenizer and the sentence splitter return {@link LazyCoreLabel}s if they support it,
+	 * since the labels are only read during the export and never copied
+	 */
+	private static void useLazyLabels(Tokenizer tokenizer, SentenceSplitter splitter){
+		if(tokenizer instanceof RegexTokenizer){
+			((RegexTokenizer)tokenizer).lazyLabels = true;
+		}
+		if(splitter instanceof StanfordSentenceSplitter){
+			((StanfordSentenceSplitter)splitter).lazyLabels = true;
+		} else if(splitter instanceof RuleBasedSentenceSplitter){
+			((RuleBasedSentenceSplitter)splitter).lazyLabels = true;
+		}
+	}
+	
+	/**
+	 * Whether the path is an archive file to be read with {@link ACEArchiveReader} instead of a directory
+	 */
+	private static boolean isArchive(String path){
+		return ACEArchiveReader.isArchive(path) && new File(ACEArchiveReader.getArchivePath(path)).isFile();
+	}
+	
+	/**
+	 * Reads the given ACE documents in parallel, using at most numThreads threads.<br>
+	 * The returned list follows the order of the input files, regardless of the order the documents are read.
+	 * @param fileList The list of .sgm files to be read. The .apf.xml files are expected in the same directory.
+	 * @param excludeMetadata Whether to exclude the text before the &lt;body&gt; tag.
+	 * @param useStreamingParser Whether to read the .apf.xml files with the streaming parser instead of the DOM parser.
+	 * @param numThreads The maximum number of documents read at the same time.
+	 * @return
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	public static List<ACEDocument> readDocuments(List<File> fileList, boolean excludeMetadata, boolean useStreamingParser,
+			int numThreads) throws IOException, SAXException{
+		return readDocuments(fileList, excludeMetadata, useStreamingParser, numThreads, (ACEDocumentCache)null);
+	}
+	
+	/**
+	 * Reads the given ACE documents in parallel like {@link #readDocuments(List, boolean, boolean, int)},
+	 * taking the documents from the cache when the files have not changed since they were cached.<br>
+	 * The documents which are not in the cache are added to it, and the cache is saved after all documents are read.
+	 * @param fileList The list of .sgm files to be read. The .apf.xml files are expected in the same directory.
+	 * @param excludeMetadata Whether to exclude the text before the &lt;body&gt; tag.
+	 * @param useStreamingParser Whether to read the .apf.xml files with the streaming parser instead of the DOM parser.
+	 * @param numThreads The maximum number of documents read at the same time.
+	 * @param cache The cache of parsed documents, or null to always parse the files.
+	 * @return
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	public static List<ACEDocument> readDocuments(List<File> fileList, boolean excludeMetadata, boolean useStreamingParser,
+			int numThreads, ACEDocumentCache cache) throws IOException, SAXException{
+		List<ACEDocument> result = new ArrayList<ACEDocument>();
+		List<Future<ACEDocument>> futures = submitDocuments(fileList, excludeMetadata, useStreamingParser, numThreads,
+				cache, null);
+		try{
+			for(Future<ACEDocument> future: futures){
+				result.add(getDocument(future));
+			}
+		} catch (IOException | SAXException | RuntimeException e) {
+			// Stop reading the remaining documents
+			for(Future<ACEDocument> future: futures){
+				future.cancel(true);
+			}
+			throw e;
+		}
+		if(cache != null){
+			cache.save();
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads the given ACE documents in parallel, calling onRead on each document right after it is read,
+	 * possibly from multiple threads at the same time.<br>
+	 * The documents which cannot be read are skipped, printing the error.
+	 */
+	private static List<ACEDocument> readDocuments(List<File> fileList, boolean excludeMetadata,
+			boolean useStreamingParser, int numThreads, ACEDocumentCache cache, Consumer<ACEDocument> onRead){
+		List<ACEDocument> result = new ArrayList<ACEDocument>();
+		List<Future<ACEDocument>> futures = submitDocuments(fileList, excludeMetadata, useStreamingParser, numThreads,
+				cache, onRead);
+		for(int i=0; i<futures.size(); i++){
+			try{
+				result.add(getDocument(futures.get(i)));
+			} catch (IOException | SAXException e) {
+				System.err.println(fileList.get(i));
+				e.printStackTrace();
+			}
+		}
+		if(cache != null){
+			try{
+				cache.save();
+			} catch (IOException e){
+				e.printStackTrace();
+			}
 		}
 		return result;
 	}
+	
+	/**
+	 * Reads the documents in the archive (optionally followed by {@link ACEArchiveReader#ROOT_SEPARATOR} and
+	 * the directory inside it) in parallel, calling onRead on each document right after it is read,
+	 * possibly from multiple threads at the same time.<br>
+	 * The documents which cannot be parsed are skipped, printing the error, while an archive which cannot be read
+	 * stops the reading, since the corpus would be incomplete.
+	 */
+	private static List<ACEDocument> readDocuments(String archivePath, Collection<String> domains, String subdirName,
+			boolean excludeMetadata, boolean useStreamingParser, int numThreads, Consumer<ACEDocument> onRead)
+					throws IOException{
+		File archive = new File(ACEArchiveReader.getArchivePath(archivePath));
+		List<ACEDocument> result = new ArrayList<ACEDocument>();
+		List<String> sgmPaths = new ArrayList<String>();
+		List<Future<ACEDocument>> futures = ACEArchiveReader.submitDocuments(archive, ACEArchiveReader.getRoot(archivePath),
+				domains, subdirName, excludeMetadata, useStreamingParser, numThreads, onRead, sgmPaths);
+		for(int i=0; i<futures.size(); i++){
+			try{
+				result.add(getDocument(futures.get(i)));
+			} catch (IOException | SAXException e) {
+				System.err.println(archive+"!"+sgmPaths.get(i));
+				e.printStackTrace();
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Registers the entity type labels beforehand, so that the label IDs do not depend on the reading order
+	 */
+	static void registerEntityTypeLabels(){
+		for(ACEEntityType type: ACEEntityType.values()){
+			SpanLabel.get(type.name());
+		}
+	}
+	
+	private static List<Future<ACEDocument>> submitDocuments(List<File> fileList, boolean excludeMetadata,
+			boolean useStreamingParser, int numThreads, ACEDocumentCache cache, Consumer<ACEDocument> onRead){
+		registerEntityTypeLabels();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		List<Future<ACEDocument>> futures = new ArrayList<Future<ACEDocument>>();
+		for(File sgmFile: fileList){
+			futures.add(executor.submit(() -> {
+				ACEDocument doc = cache == null ? null : cache.get(sgmFile, excludeMetadata);
+				if(doc == null){
+					doc = new ACEDocument(sgmFile.getAbsolutePath(), excludeMetadata, useStreamingParser);
+					if(cache != null){
+						cache.put(sgmFile, excludeMetadata, doc);
+					}
+				}
+				if(onRead != null){
+					onRead.accept(doc);
+				}
+				return doc;
+			}));
+		}
+		executor.shutdown();
+		return futures;
+	}
+	
+	static ACEDocument getDocument(Future<ACEDocument> future) throws IOException, SAXException{
+		try{
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException)cause;
+			} else if(cause instanceof SAXException){
+				throw (SAXException)cause;
+			} else if(cause instanceof RuntimeException){
+				throw (RuntimeException)cause;
+			} else if(cause instanceof Error){
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
 
+	/**
+	 * Adds the .sgm files in the domain directories to the list, sorted by path like the documents in an archive,
+	 * so that the data split does not depend on the order of the files in the file system
+	 */
 	private static void extractDocList(List<File> fileList, String aceDirName, Collection<String> aceDomains, String... additionalPath) {
 		File aceDir = new File(aceDirName);
-		for(File subdir: aceDir.listFiles()){
+		File[] subdirs = aceDir.listFiles();
+		Arrays.sort(subdirs);
+		for(File subdir: subdirs){
 			if(!subdir.isDirectory()){
 				continue;
 			}
@@ -1020,7 +1652,9 @@ public class ACEReader {
 			if(additionalPath.length > 0){
 				subdir = new File(subdir.getAbsolutePath()+additionalPath[0]);
 			}
-			for(File sgmFile: subdir.listFiles()){
+			File[] files = subdir.listFiles();
+			Arrays.sort(files);
+			for(File sgmFile: files){
 				if(!sgmFile.getName().endsWith(".sgm")){
 					continue;
 				}
@@ -1029,22 +1663,18 @@ public class ACEReader {
 		}
 	}
 	
-	private static void count(ACEDocument doc, List<? extends ACEObject> objects, Map<? extends ACEEventArgumentType, Integer> objectCountMap, Map<? extends ACEEventArgumentType, Integer> mentionCountMap, int[] objectCount, int[] mentionCount){
+	private static void count(ACEDocument doc, List<? extends ACEObject> objects, ConcurrentMap<? extends ACEEventArgumentType, Integer> objectCountMap, ConcurrentMap<? extends ACEEventArgumentType, Integer> mentionCountMap, AtomicInteger objectCount, AtomicInteger mentionCount){
 		for(ACEObject object: objects){
 			if(object.mentions().isEmpty() && object.type() != ACERelation.ACERelationType.METONYMY){
 				System.out.println("Non-metonymy empty mention set at "+doc.uri+": "+object.id);
 			}
-			int count = objectCountMap.getOrDefault(object.type(), 0);
-			objectCountMap.put(object.type(), count+1);
-			count = objectCountMap.getOrDefault(object.subtype(),  0);
-			objectCountMap.put(object.subtype(), count+1);
-			count = mentionCountMap.getOrDefault(object.type(), 0);
+			objectCountMap.merge(object.type(), 1, Integer::sum);
+			objectCountMap.merge(object.subtype(), 1, Integer::sum);
 			// Metonymy relations do not have mentions
-			mentionCountMap.put(object.type(), count+Math.max(1, object.mentions().size()));
-			count = mentionCountMap.getOrDefault(object.subtype(),  0);
-			mentionCountMap.put(object.subtype(), count+Math.max(1, object.mentions().size()));
-			objectCount[0] += 1;
-			mentionCount[0] += object.mentions().size();
+			mentionCountMap.merge(object.type(), Math.max(1, object.mentions().size()), Integer::sum);
+			mentionCountMap.merge(object.subtype(), Math.max(1, object.mentions().size()), Integer::sum);
+			objectCount.incrementAndGet();
+			mentionCount.addAndGet(object.mentions().size());
 			for(ACEObjectMention<?> mention: object.mentions()){
 				if(!mention.text.equals(unescape(mention.getText(doc.text)))){
 					System.err.println("===TEXT===");
@@ -1085,24 +1715,36 @@ public class ACEReader {
 				+ "\t[-ace2004OutputBasePath]\n"
 				+ "\t[-ace2005OutputBasePath]\n"
 				+ "\t[-dataSplit <two_or_three_comma_separated_values>]\n"
-				+ "\t[-tokenizer (stanford|regex)]\n"
+				+ "\t[-tokenizer (stanford|regex|splitter)]\n"
 				+ "\t[-posTagger (stanford)]\n"
-				+ "\t[-splitter (stanford)]\n"
-				+ "\t[-toCoNLLFormat]\n"
+				+ "\t[-splitter (stanford|rule)]\n"
+				+ "\t[-toCoNLLFormat | -toTensorFormat]\n"
 				+ "\t[-ignoreOverlaps]\n"
 				+ "\t[-useBILOU]\n"
 				+ "\t[-splitBySentences]\n"
+				+ "\t[-hashSplit]\n"
+				+ "\t[-useStreamingParser]\n"
+				+ "\t[-cacheFile <path>]\n"
+				+ "\t[-annotationCacheFile <path>]\n"
+				+ "\t[-threads <num_threads>]\n"
+				+ "\t[-exportThreads <num_threads>]\n"
 				
 				+ "\n"
 				
 				+ "-ace2004Dir <dirname>\n"
 				+ "\tPath to ACE2004 directory containing the domain subdirectories.\n"
+				+ "\tThis can also be a .tgz, .tar.gz, .tar, or .zip archive, which is read without extracting it.\n"
+				+ "\tThe directory inside the archive containing the domain subdirectories can be given after \"!\",\n"
+				+ "\te.g., corpus.tgz!data/English, which is required if the archive contains several languages.\n"
 				
 				+ "\n"
 				
 				+ "-ace2005Dir <dirname>\n"
 				+ "\tPath to ACE2004 directory containing the domain subdirectories.\n"
 				+ "\tOnly the data from timex2norm version will be used.\n"
+				+ "\tThis can also be a .tgz, .tar.gz, .tar, or .zip archive, which is read without extracting it.\n"
+				+ "\tThe directory inside the archive containing the domain subdirectories can be given after \"!\",\n"
+				+ "\te.g., corpus.tgz!data/English, which is required if the archive contains several languages.\n"
 				
 				+ "\n"
 				
@@ -1140,6 +1782,25 @@ public class ACEReader {
 				
 				+ "\n"
 				
+				+ "-useStreamingParser\n"
+				+ "\tRead the APF annotation files in a single pass with a streaming XML parser instead of building the DOM.\n"
+				+ "\tThis is faster and produces the same documents.\n"
+				
+				+ "\n"
+				
+				+ "-cacheFile <path>\n"
+				+ "\tStore the parsed documents in the given file, and read them from there in the next runs.\n"
+				+ "\tThe documents whose .sgm or .apf.xml files have changed are parsed again.\n"
+				
+				+ "\n"
+				
+				+ "-annotationCacheFile <path>\n"
+				+ "\tStore the results of the sentence splitter, tokenizer, and POS tagger in the given file,\n"
+				+ "\tkeyed by the hash of their inputs and the component, and reuse them in the next runs.\n"
+				+ "\tOnly the changed texts, and the stages after a changed component, are processed again.\n"
+				
+				+ "\n"
+				
 				+ "-convertEntitiesToInline\n"
 				+ "\tPrint the entities into files.\n"
 				+ "\tNeed -ace2004OutputBasePath, -ace2005OutputBasePath, and -dataSplit options.\n"
@@ -1160,9 +1821,10 @@ public class ACEReader {
 				
 				+ "\n"
 				
-				+ "-tokenizer (stanford,regex)\n"
+				+ "-tokenizer (stanford,regex,splitter)\n"
 				+ "\tIf specified, the sentences will be tokenized, and the spans will be token-based.\n"
 				+ "\tCurrently there are two tokenizers supported: Stanford and regex-based.\n"
+				+ "\tUse splitter to reuse the tokens produced by the sentence splitter instead of tokenizing again.\n"
 				
 				+ "\n"
 				
@@ -1172,14 +1834,23 @@ public class ACEReader {
 				
 				+ "\n"
 				
-				+ "-splitter (stanford)\n"
+				+ "-splitter (stanford,rule)\n"
 				+ "\tThe sentence splitter to split the data.\n"
-				+ "\tCurrently only Stanford Splitter is supported.\n"
+				+ "\tCurrently there are two splitters supported: Stanford and a faster rule-based splitter.\n"
 				
 				+ "\n"
 				
 				+ "-toCoNLLFormat\n"
-				+ "\tOutput conversion in CoNLL format.\n"
+				+ "\tOutput conversion in CoNLL format. Cannot be used with -toTensorFormat.\n"
+				
+				+ "\n"
+				
+				+ "-toTensorFormat\n"
+				+ "\tOutput the tokens, POS tags (with -posTagger), and entity labels (with -printEntities) of each set\n"
+				+ "\tas arrays of 32-bit little-endian ids in {train,dev,test}.{tokens,pos,labels}.bin, with the\n"
+				+ "\ttoken offsets of the sentences in {train,dev,test}.offsets.bin.\n"
+				+ "\tThe forms of the ids are listed in vocab.txt, pos.txt, and labels.txt, one per line.\n"
+				+ "\tCannot be used with -toCoNLLFormat.\n"
 				
 				+ "\n"
 				
@@ -1190,7 +1861,7 @@ public class ACEReader {
 				
 				+ "-useBILOU\n"
 				+ "\tTo use BILOU (Begin, Inside, Last, Outside, Unit) format instead of BIO.\n"
-				+ "\tOnly applicable when -toCoNLLFormat is used.\n"
+				+ "\tOnly applicable when -toCoNLLFormat or -toTensorFormat is used.\n"
 				
 				+ "\n"
 				
@@ -1204,8 +1875,29 @@ public class ACEReader {
 				
 				+ "\n"
 				
+				+ "-hashSplit\n"
+				+ "\tAssign each document (or sentence, with -splitBySentences) to training, development, or test\n"
+				+ "\tby a hash of its ID with the seed, instead of by its position in the (shuffled) dataset.\n"
+				+ "\tThe assignment of a document does not depend on the other documents, and the sentences are\n"
+				+ "\twritten as their documents are processed, without collecting the sentences of each set first.\n"
+				+ "\tThe sizes of the sets follow -dataSplit only approximately.\n"
+				
+				+ "\n"
+				
 				+ "-seed <seed>\n"
 				+ "\tThe seed used to initialize the Random object used to shuffle the dataset.\n"
+				+ "\tWith -hashSplit, the seed of the hash.\n"
+				
+				+ "\n"
+				
+				+ "-threads <num_threads>\n"
+				+ "\tThe number of documents to be read in parallel. Defaults to the number of processors.\n"
+				
+				+ "\n"
+				
+				+ "-exportThreads <num_threads>\n"
+				+ "\tThe number of threads used to tokenize, POS tag, and format the sentences when printing the dataset.\n"
+				+ "\tThe output is the same regardless of the number of threads. Defaults to 1.\n"
 				
 				);
 		if(message != null){
@@ -56,17 +56,33 @@ public class ACERelationMention extends ACEObjectMention<ACERelation> implements
 	}
 
 	public ACERelationMention(ACERelationMention mention) {
-		super(mention.id, new Span(mention.span.start, mention.span.end), mention.text, mention.relation);
-		this.args = new ACEEntityMention[mention.args.length];
-		for(int i=0; i<this.args.length; i++){
-			this.args[i] = new ACEEntityMention(mention.args[i]);
-		}
+		this(mention, 0, copyArgs(mention.args));
+	}
+	
+	/**
+	 * Copies the relation mention with the span shifted to the left by the given offset, and with the given
+	 * arguments, which are not copied.
+	 * @param mention
+	 * @param offset
+	 * @param args
+	 */
+	public ACERelationMention(ACERelationMention mention, int offset, ACEEntityMention[] args) {
+		super(mention.id, new Span(mention.span.start-offset, mention.span.end-offset), mention.text, mention.relation);
+		this.args = args;
 		this.syntacticClass = mention.syntacticClass;
 		this.relation = mention.relation;
 		this.timestamp = mention.timestamp;
 		this.timestampType = mention.timestampType;
 	}
 	
+	private static ACEEntityMention[] copyArgs(ACEEntityMention[] args){
+		ACEEntityMention[] result = new ACEEntityMention[args.length];
+		for(int i=0; i<args.length; i++){
+			result[i] = new ACEEntityMention(args[i]);
+		}
+		return result;
+	}
+	
 	public String getParentID(){
 		return relation.id;
 	}
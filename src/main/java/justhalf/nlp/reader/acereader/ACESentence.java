@@ -6,6 +6,8 @@ package justhalf.nlp.reader.acereader;
 import java.util.ArrayList;
 import java.util.List;
 
+import edu.stanford.nlp.ling.CoreLabel;
+
 /**
  * Represents a sentence in ACEDocument
  */
@@ -19,6 +21,11 @@ public class ACESentence {
 	public List<ACEEventMention> events;
 	public List<ACETimexMention> timexes;
 	public List<ACEValueMention> values;
+	/**
+	 * The tokens of this sentence as produced by the sentence splitter, with offsets relative to this sentence.<br>
+	 * This is null if the sentence was split without keeping the tokens.
+	 */
+	public List<CoreLabel> tokens;
 	
 	public ACESentence(ACEDocument sourceDoc, Span span, String text){
 		this(sourceDoc, span, text, null, null, null, null, null);
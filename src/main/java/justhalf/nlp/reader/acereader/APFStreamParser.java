@@ -0,0 +1,435 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.SAXException;
+
+/**
+ * <p>Reads the annotations in an APF file into an {@link ACEDocument} in a single pass using a StAX pull parser.</p>
+ *
+ * <p>This produces the same objects as the DOM-based parsing in {@link ACEDocument}, but without building
+ * the DOM of the whole file and without searching the DOM again for each kind of annotation.
+ * Entities, values, timexes, and events are created when their start tags are read, and their mentions
+ * are created when the mention end tags are read. Relations are created only at their end tags, since
+ * the relation arguments are needed to resolve the relation mention arguments in ACE 2004.</p>
+ *
+ * <p>As in the LDC releases, the objects referred to by a relation or an event are expected to appear
+ * before the relation or the event in the APF file.</p>
+ */
+class APFStreamParser {
+
+	/** StAX factories are not guaranteed to be thread-safe, so one is created for each thread */
+	private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// Do not try to load the DTD declared in the APF files
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	});
+
+	private ACEDocument doc;
+	private XMLStreamReader reader;
+	/** The names of the currently open elements in lowercase, excluding charseq */
+	private List<String> openElements;
+
+	private ACEEntity entity;
+	private ACEValue value;
+	private ACETimex timex;
+	private RelationData relation;
+	private ACEEvent event;
+	private MentionData mention;
+
+	/** The attributes and the charseqs of a mention, collected until its end tag is read */
+	private static class MentionData {
+		public Map<String, String> attributes;
+		public Charseq extent;
+		public Charseq ldcExtent;
+		public Charseq head;
+		public Charseq scope;
+		public Charseq anchor;
+		/** The reference ID and the role of each argument, in the order of appearance */
+		public List<String[]> args;
+
+		public MentionData(Map<String, String> attributes){
+			this.attributes = attributes;
+			this.args = new ArrayList<String[]>();
+		}
+	}
+
+	/** The attributes, arguments, and mentions of a relation, collected until its end tag is read */
+	private static class RelationData {
+		public Map<String, String> attributes;
+		public ACEEntity[] args;
+		public ACETimex[] timestamp;
+		public String[] timestampType;
+		public List<MentionData> mentions;
+
+		public RelationData(Map<String, String> attributes){
+			this.attributes = attributes;
+			this.args = new ACEEntity[2];
+			this.timestamp = new ACETimex[1];
+			this.timestampType = new String[1];
+			this.mentions = new ArrayList<MentionData>();
+		}
+	}
+
+	private static class Charseq {
+		public Span span;
+		public String text;
+
+		public Charseq(Span span, String text){
+			this.span = span;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Create a parser which adds the annotations to the given document.<br>
+	 * The text of the document must have been set, since the spans are relative to {@link ACEDocument#text}.
+	 * @param doc
+	 */
+	public APFStreamParser(ACEDocument doc){
+		this.doc = doc;
+		this.openElements = new ArrayList<String>();
+	}
+
+	/**
+	 * Reads the annotations from the given APF stream into the document, then sorts and fixes the mentions
+	 * in the same way as the DOM-based parsing.
+	 * @param apfStream
+	 * @throws SAXException If the APF file is not a well-formed XML file.
+	 */
+	public void parse(InputStream apfStream) throws SAXException {
+		try{
+			reader = FACTORY.get().createXMLStreamReader(apfStream, "UTF-8");
+			try{
+				while(reader.hasNext()){
+					int eventType = reader.next();
+					if(eventType == XMLStreamConstants.START_ELEMENT){
+						String name = reader.getLocalName().toLowerCase();
+						if(name.equals("charseq")){
+							// This also consumes the end tag
+							readCharseq();
+						} else {
+							startElement(name);
+							openElements.add(name);
+						}
+					} else if(eventType == XMLStreamConstants.END_ELEMENT){
+						endElement(openElements.remove(openElements.size()-1));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e){
+			throw new SAXException(e);
+		}
+		Collections.sort(doc.entityMentions);
+		doc.checkAndFixMentions(doc.entityMentions);
+		Collections.sort(doc.valueMentions);
+		doc.checkAndFixMentions(doc.valueMentions);
+		Collections.sort(doc.timexMentions);
+		doc.checkAndFixMentions(doc.timexMentions);
+		Collections.sort(doc.relationMentions);
+		doc.checkAndFixMentions(doc.relationMentions);
+		Collections.sort(doc.eventMentions);
+		doc.checkAndFixMentions(doc.eventMentions);
+	}
+
+	private void startElement(String name){
+		switch(name){
+		case "source_file":
+			Map<String, String> sourceAttributes = readAttributes();
+			String version = getAttribute(sourceAttributes, "VERSION");
+			doc.versionIsACE2004 = version.equals("4.0"); // ACE 2005 doesn't have version
+			doc.uri = getAttribute(sourceAttributes, "URI");
+			break;
+		case "entity":
+			Map<String, String> attributes = readAttributes();
+			entity = new ACEEntity(getAttribute(attributes, "ID"), getAttribute(attributes, "TYPE"),
+					getAttribute(attributes, "SUBTYPE"), getAttribute(attributes, "CLASS"));
+			break;
+		case "value":
+			attributes = readAttributes();
+			value = new ACEValue(getAttribute(attributes, "ID"), getAttribute(attributes, "TYPE"),
+					getAttribute(attributes, "SUBTYPE"));
+			break;
+		case "timex2":
+			attributes = readAttributes();
+			timex = new ACETimex(getAttribute(attributes, "ID"), getAttribute(attributes, "VAL"),
+					getAttribute(attributes, "MOD"), getAttribute(attributes, "ANCHOR_VAL"),
+					getAttribute(attributes, "ANCHOR_DIR"), getAttribute(attributes, "SET"),
+					getAttribute(attributes, "COMMENT"));
+			break;
+		case "relation":
+			relation = new RelationData(readAttributes());
+			break;
+		case "event":
+			attributes = readAttributes();
+			event = new ACEEvent(getAttribute(attributes, "ID"), getAttribute(attributes, "TYPE"),
+					getAttribute(attributes, "SUBTYPE"), getAttribute(attributes, "TENSE"),
+					getAttribute(attributes, "GENERICITY"), getAttribute(attributes, "POLARITY"),
+					getAttribute(attributes, "MODALITY"));
+			break;
+		case "entity_mention":
+		case "value_mention":
+		case "timex2_mention":
+		case "event_mention":
+			mention = new MentionData(readAttributes());
+			break;
+		case "relation_mention":
+			if(relation != null){
+				mention = new MentionData(readAttributes());
+				relation.mentions.add(mention);
+			}
+			break;
+		case "rel_entity_arg":
+		case "relation_argument":
+			// Only the direct children of the relation are the relation arguments
+			if(relation != null && currentElement().equals("relation")
+					&& name.equals(doc.versionIsACE2004 ? "rel_entity_arg" : "relation_argument")){
+				attributes = readAttributes();
+				doc.setRelationArgument(getAttribute(attributes, doc.versionIsACE2004 ? "ENTITYID" : "REFID"),
+						getAttribute(attributes, doc.versionIsACE2004 ? "ARGNUM" : "ROLE"),
+						relation.args, relation.timestamp, relation.timestampType);
+			}
+			break;
+		case "rel_mention_arg":
+		case "relation_mention_argument":
+			if(relation != null && mention != null
+					&& name.equals(doc.versionIsACE2004 ? "rel_mention_arg" : "relation_mention_argument")){
+				attributes = readAttributes();
+				mention.args.add(new String[]{
+						getAttribute(attributes, doc.versionIsACE2004 ? "ENTITYMENTIONID" : "REFID"),
+						getAttribute(attributes, doc.versionIsACE2004 ? "ARGNUM" : "ROLE")});
+			}
+			break;
+		case "event_argument":
+			if(event != null){
+				attributes = readAttributes();
+				doc.addEventArgument(event, getAttribute(attributes, "REFID"), getAttribute(attributes, "ROLE"));
+			}
+			break;
+		case "event_mention_argument":
+			if(event != null && mention != null){
+				attributes = readAttributes();
+				mention.args.add(new String[]{getAttribute(attributes, "REFID"), getAttribute(attributes, "ROLE")});
+			}
+			break;
+		}
+	}
+
+	private void endElement(String name){
+		switch(name){
+		case "entity_mention":
+			if(entity != null && mention != null){
+				// All entities in ACE are contiguous
+				Span headSpan = mention.head == null ? null : mention.head.span;
+				String aceHeadText = mention.head == null ? "" : mention.head.text;
+				ACEEntityMention entityMention = new ACEEntityMention(getAttribute(mention.attributes, "ID"),
+						getAttribute(mention.attributes, "TYPE"), getAttribute(mention.attributes, "LDCTYPE"),
+						getAttribute(mention.attributes, "LDCATR"), entity, mention.extent.span, headSpan,
+						mention.extent.text, aceHeadText, SpanLabel.get(entity.type.name()));
+				entity.addMention(entityMention);
+				doc.entityMentions.add(entityMention);
+				doc.objectMentionsById.put(entityMention.getFullID(), entityMention);
+			}
+			mention = null;
+			break;
+		case "entity":
+			if(entity != null){
+				doc.entities.add(entity);
+				doc.objectsById.put(entity.id, entity);
+			}
+			entity = null;
+			break;
+		case "value_mention":
+			if(value != null && mention != null){
+				Charseq charseq = getExtent(mention, "value_mention");
+				ACEValueMention valueMention = new ACEValueMention(getAttribute(mention.attributes, "ID"),
+						charseq.span, charseq.text, value);
+				value.addMention(valueMention);
+				doc.valueMentions.add(valueMention);
+				doc.objectMentionsById.put(valueMention.getFullID(), valueMention);
+			}
+			mention = null;
+			break;
+		case "value":
+			if(value != null){
+				doc.values.add(value);
+				// ACEValue declares its own id field, which is not set, so use the one in ACEObject
+				doc.objectsById.put(((ACEObject)value).id, value);
+			}
+			value = null;
+			break;
+		case "timex2_mention":
+			if(timex != null && mention != null){
+				Charseq charseq = getExtent(mention, "timex2_mention");
+				ACETimexMention timexMention = new ACETimexMention(getAttribute(mention.attributes, "ID"),
+						charseq.span, charseq.text, timex);
+				timex.addMention(timexMention);
+				doc.timexMentions.add(timexMention);
+				doc.objectMentionsById.put(timexMention.getFullID(), timexMention);
+			}
+			mention = null;
+			break;
+		case "timex2":
+			if(timex != null){
+				doc.timexes.add(timex);
+				doc.objectsById.put(timex.id, timex);
+			}
+			timex = null;
+			break;
+		case "relation_mention":
+			mention = null;
+			break;
+		case "relation":
+			if(relation != null){
+				addRelation(relation);
+			}
+			relation = null;
+			break;
+		case "event_mention":
+			if(event != null && mention != null){
+				addEventMention(mention);
+			}
+			mention = null;
+			break;
+		case "event":
+			if(event != null){
+				doc.events.add(event);
+			}
+			event = null;
+			break;
+		}
+	}
+
+	private void addRelation(RelationData relation){
+		Map<String, String> attributes = relation.attributes;
+		ACERelation aceRelation = new ACERelation(relation.args, getAttribute(attributes, "ID"),
+				getAttribute(attributes, "TYPE"), getAttribute(attributes, "SUBTYPE"),
+				getAttribute(attributes, "TENSE"), getAttribute(attributes, "MODALITY"),
+				relation.timestamp[0], relation.timestampType[0]);
+		for(MentionData relationMention: relation.mentions){
+			ACETimexMention[] timestamp = new ACETimexMention[1];
+			String[] timestampType = new String[1];
+			ACEEntityMention[] args = new ACEEntityMention[2];
+			for(String[] arg: relationMention.args){
+				doc.setRelationMentionArgument(aceRelation, arg[0], arg[1], args, timestamp, timestampType);
+			}
+			String id = getAttribute(relationMention.attributes, "ID");
+			String syntacticClass = getAttribute(relationMention.attributes,
+					doc.versionIsACE2004 ? "LDCLEXICALCONDITION" : "LEXICALCONDITION");
+			Charseq charseq = doc.versionIsACE2004 ? relationMention.ldcExtent : relationMention.extent;
+			if(charseq == null){
+				throw new RuntimeException("No <charseq> found in the relation mention: "+id);
+			}
+			ACERelationMention aceRelationMention = new ACERelationMention(args, id, syntacticClass,
+					charseq.span, charseq.text, timestamp[0], timestampType[0], aceRelation);
+			aceRelation.addMention(aceRelationMention);
+			doc.relationMentions.add(aceRelationMention);
+		}
+		doc.relations.add(aceRelation);
+	}
+
+	private void addEventMention(MentionData eventMention){
+		ACEObjectMention<?>[] args = new ACEObjectMention<?>[eventMention.args.size()];
+		for(int i=0; i<args.length; i++){
+			args[i] = doc.objectMentionsById.get(eventMention.args.get(i)[0]);
+		}
+		Charseq charseq = getExtent(eventMention, "event_mention");
+		if(eventMention.scope == null || eventMention.anchor == null){
+			throw new RuntimeException("No <charseq> found in the scope or anchor of the event mention: "
+					+getAttribute(eventMention.attributes, "ID"));
+		}
+		ACEEventMention aceEventMention = new ACEEventMention(getAttribute(eventMention.attributes, "ID"),
+				charseq.span, charseq.text, event, eventMention.scope.span, eventMention.scope.text,
+				eventMention.anchor.span, eventMention.anchor.text, args);
+		event.addMention(aceEventMention);
+		doc.eventMentions.add(aceEventMention);
+	}
+
+	private static Charseq getExtent(MentionData mention, String mentionName){
+		if(mention.extent == null){
+			throw new RuntimeException("No <charseq> found in the "+mentionName+": "
+					+getAttribute(mention.attributes, "ID"));
+		}
+		return mention.extent;
+	}
+
+	/**
+	 * Reads the current charseq tag until its end tag, and stores it in the current mention
+	 * if it is the first charseq of its parent kind (extent, head, etc.) in the mention.
+	 */
+	private void readCharseq() throws XMLStreamException {
+		if(mention == null){
+			// Outside of mentions, such as the names in entity attributes
+			reader.getElementText();
+			return;
+		}
+		Map<String, String> attributes = readAttributes();
+		String text = reader.getElementText();
+		String parent = currentElement();
+		Charseq charseq = null;
+		switch(parent){
+		case "extent":
+			if(mention.extent == null){
+				charseq = mention.extent = new Charseq(null, text);
+			}
+			break;
+		case "ldc_extent":
+			if(mention.ldcExtent == null){
+				charseq = mention.ldcExtent = new Charseq(null, text);
+			}
+			break;
+		case "head":
+			if(mention.head == null){
+				charseq = mention.head = new Charseq(null, text);
+			}
+			break;
+		case "ldc_scope":
+			if(mention.scope == null){
+				charseq = mention.scope = new Charseq(null, text);
+			}
+			break;
+		case "anchor":
+			if(mention.anchor == null){
+				charseq = mention.anchor = new Charseq(null, text);
+			}
+			break;
+		}
+		if(charseq != null){
+			charseq.span = doc.getSpan(getAttribute(attributes, "START"), getAttribute(attributes, "END"));
+		}
+	}
+
+	private String currentElement(){
+		return openElements.isEmpty() ? "" : openElements.get(openElements.size()-1);
+	}
+
+	/**
+	 * Returns the attributes of the current start tag, with the attribute names in lowercase
+	 */
+	private Map<String, String> readAttributes(){
+		Map<String, String> result = new HashMap<String, String>();
+		for(int i=0; i<reader.getAttributeCount(); i++){
+			result.put(reader.getAttributeLocalName(i).toLowerCase(), reader.getAttributeValue(i));
+		}
+		return result;
+	}
+
+	private static String getAttribute(Map<String, String> attributes, String attrName){
+		return attributes.getOrDefault(attrName.toLowerCase(), "");
+	}
+
+}
@@ -0,0 +1,80 @@
+package justhalf.nlp.reader.acereader;
+
+/**
+ * Assigns objects to the training, development, and test sets by a seeded hash of their ids.<br>
+ *
+ * Each object is assigned independently of the others, so the assignment does not depend on the order or
+ * the number of the objects, and can be computed in parallel while the objects are being read.
+ * The same id with the same seed and ratios is always assigned to the same set, on any machine,
+ * while the sizes of the sets only follow the ratios approximately.
+ */
+public class HashDataSplit {
+
+	public static final int TRAIN = 0;
+	public static final int DEV = 1;
+	public static final int TEST = 2;
+
+	private final double trainThreshold;
+	private final double devThreshold;
+	private final long seed;
+
+	/**
+	 * Creates the split with the given ratios of the training, development, and test sets, which sum up to 1.
+	 * @param datasplit
+	 * @param seed
+	 */
+	public HashDataSplit(double[] datasplit, long seed){
+		this.trainThreshold = datasplit[0];
+		this.devThreshold = datasplit[0]+datasplit[1];
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the set ({@link #TRAIN}, {@link #DEV}, or {@link #TEST}) of the object with the given id.
+	 * @param id
+	 * @return
+	 */
+	public int assign(String id){
+		// The top 53 bits give a uniform double in [0, 1)
+		double value = (hash(id, seed) >>> 11) * 0x1.0p-53;
+		if(value < trainThreshold){
+			return TRAIN;
+		} else if(value < devThreshold){
+			return DEV;
+		}
+		return TEST;
+	}
+
+	/**
+	 * FNV-1a over the characters starting from the seed, followed by the SplitMix64 finalizer to spread the bits
+	 */
+	private static long hash(String id, long seed){
+		long hash = 0xcbf29ce484222325L ^ seed;
+		for(int i=0; i<id.length(); i++){
+			hash ^= id.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+
+	/**
+	 * Returns the id used to assign a document
+	 * @param doc
+	 * @return
+	 */
+	public static String getID(ACEDocument doc){
+		return doc.uri;
+	}
+
+	/**
+	 * Returns the id used to assign a sentence, which is the id of its document and its span
+	 * @param sentence
+	 * @return
+	 */
+	public static String getID(ACESentence sentence){
+		return getID(sentence.sourceDoc)+"#"+sentence.span.start+","+sentence.span.end;
+	}
+
+}
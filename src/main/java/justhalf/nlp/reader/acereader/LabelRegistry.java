@@ -0,0 +1,155 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * A registry interning labels by their forms, assigning ids 0, 1, 2, ... in the order the labels are created.<br>
+ *
+ * The registry can be used by many threads at once. Looking up an existing label does not lock, and creating a label
+ * only locks the part of the map where it is put, so each form gets exactly one label and one id.<br>
+ *
+ * {@link SpanLabel} and {@link WordLabel} each have a global registry used by their static get methods, which
+ * creates all the label objects used in the documents and the output.
+ * Separate registries number the forms of a dataset from 0, as the ids of {@link TensorWriter}, which registers
+ * the forms in the order the sentences are written: the words and the POS tags as {@link VocabularyEntry}s,
+ * and the labels as {@link WordLabel}s with {@link WordLabel#newRegistry()}.
+ * The labels can be saved with {@link #save(File)} and registered in the same order with {@link #load(File)},
+ * to have the same ids across runs.
+ *
+ * @param <L> The label class
+ */
+public class LabelRegistry<L> {
+
+	private final BiFunction<String, Integer, L> factory;
+	private final ConcurrentHashMap<String, L> labels = new ConcurrentHashMap<String, L>();
+	private final ConcurrentHashMap<Integer, L> labelsById = new ConcurrentHashMap<Integer, L>();
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	/**
+	 * Creates an empty registry, which creates the labels with the given factory from the form and the id.
+	 * @param factory
+	 */
+	public LabelRegistry(BiFunction<String, Integer, L> factory){
+		this.factory = factory;
+	}
+
+	/**
+	 * Returns the label with the given form, creating it with the next id if it does not exist yet.
+	 * @param form
+	 * @return
+	 */
+	public L get(String form){
+		L label = labels.get(form);
+		if(label != null){
+			return label;
+		}
+		return labels.computeIfAbsent(form, this::create);
+	}
+
+	/**
+	 * Returns the label with the given id, or null if there is none.
+	 * @param id
+	 * @return
+	 */
+	public L get(int id){
+		return labelsById.get(id);
+	}
+
+	/**
+	 * Returns the label with the given form, or null if it does not exist, without creating it.
+	 * @param form
+	 * @return
+	 */
+	public L getIfExists(String form){
+		return labels.get(form);
+	}
+
+	/**
+	 * Returns the number of labels in this registry.<br>
+	 * While another thread is creating a label, its id is already taken but the label is not counted yet,
+	 * so this is not necessarily the id of the next label.
+	 * @return
+	 */
+	public int size(){
+		return labels.size();
+	}
+
+	/**
+	 * Returns an unmodifiable view of the labels by their forms.
+	 * @return
+	 */
+	public Map<String, L> labels(){
+		return Collections.unmodifiableMap(labels);
+	}
+
+	/**
+	 * Returns an unmodifiable view of the labels by their ids.
+	 * @return
+	 */
+	public Map<Integer, L> labelsById(){
+		return Collections.unmodifiableMap(labelsById);
+	}
+
+	/**
+	 * Saves the forms of the labels in the order of their ids, one per line.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException{
+		Map<L, String> forms = new IdentityHashMap<L, String>();
+		for(Map.Entry<String, L> entry: labels.entrySet()){
+			forms.put(entry.getValue(), entry.getKey());
+		}
+		try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))){
+			// Stop at the first missing id, which can only be a label still being created by another thread
+			for(int id=0; labelsById.containsKey(id); id++){
+				writer.println(forms.get(labelsById.get(id)));
+			}
+		}
+	}
+
+	/**
+	 * Registers the labels saved with {@link #save(File)}, so that they get the same ids as when they were saved.<br>
+	 * The labels which already exist in this registry should have the same ids as in the file,
+	 * otherwise an IllegalStateException is thrown.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void load(File file) throws IOException{
+		try(BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)){
+			int id = 0;
+			String line;
+			while((line = reader.readLine()) != null){
+				L label = get(line);
+				if(!label.equals(labelsById.get(id))){
+					throw new IllegalStateException("The label "+line+" in "+file+" should have the id "+id
+							+", but the registry already has different labels");
+				}
+				id++;
+			}
+		}
+	}
+
+	/**
+	 * Called by {@link ConcurrentHashMap#computeIfAbsent(Object, java.util.function.Function)} exactly once per form,
+	 * so the ids are consecutive.
+	 */
+	private L create(String form){
+		int id = nextId.getAndIncrement();
+		L label = factory.apply(form, id);
+		labelsById.put(id, label);
+		return label;
+	}
+
+}
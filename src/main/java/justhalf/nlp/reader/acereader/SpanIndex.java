@@ -0,0 +1,84 @@
+package justhalf.nlp.reader.acereader;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * An index over a list of spans (e.g., the sentences of a document) to find the spans containing a given span.<br>
+ *
+ * When the spans are sorted by both start and end, which is the case for sentences from the sentence splitters,
+ * the spans containing a given span form a contiguous range which is found by binary search in O(log n).
+ * Otherwise all spans are checked.
+ */
+class SpanIndex {
+
+	private final int[] starts;
+	private final int[] ends;
+	private final boolean isMonotone;
+
+	public SpanIndex(List<Span> spans){
+		this.starts = new int[spans.size()];
+		this.ends = new int[spans.size()];
+		boolean isMonotone = true;
+		for(int i=0; i<spans.size(); i++){
+			starts[i] = spans.get(i).start;
+			ends[i] = spans.get(i).end;
+			if(i > 0 && (starts[i] < starts[i-1] || ends[i] < ends[i-1])){
+				isMonotone = false;
+			}
+		}
+		this.isMonotone = isMonotone;
+	}
+
+	/**
+	 * Calls the action with the index of each span containing the given span, in increasing order of the index.
+	 * @param span
+	 * @param action
+	 */
+	public void forEachContaining(Span span, IntConsumer action){
+		if(!isMonotone){
+			for(int i=0; i<starts.length; i++){
+				if(starts[i] <= span.start && ends[i] >= span.end){
+					action.accept(i);
+				}
+			}
+			return;
+		}
+		// The spans starting not after the span are [0, last], and among them those ending not before
+		// the span are [first, last], since the ends are also sorted
+		int last = lastAtMost(starts, span.start);
+		int first = firstAtLeast(ends, span.end);
+		for(int i=first; i<=last; i++){
+			action.accept(i);
+		}
+	}
+
+	private static int lastAtMost(int[] values, int value){
+		int low = 0;
+		int high = values.length-1;
+		while(low <= high){
+			int mid = (low+high) >>> 1;
+			if(values[mid] <= value){
+				low = mid+1;
+			} else {
+				high = mid-1;
+			}
+		}
+		return high;
+	}
+
+	private static int firstAtLeast(int[] values, int value){
+		int low = 0;
+		int high = values.length-1;
+		while(low <= high){
+			int mid = (low+high) >>> 1;
+			if(values[mid] >= value){
+				high = mid-1;
+			} else {
+				low = mid+1;
+			}
+		}
+		return low;
+	}
+
+}
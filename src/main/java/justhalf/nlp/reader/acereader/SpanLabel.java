@@ -1,28 +1,22 @@
 package justhalf.nlp.reader.acereader;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
 
 public class SpanLabel implements Comparable<SpanLabel>, Serializable{
 	
 	private static final long serialVersionUID = -2821034438335023157L;
-	public static final Map<String, SpanLabel> LABELS = new HashMap<String, SpanLabel>();
-	public static final Map<Integer, SpanLabel> LABELS_INDEX = new HashMap<Integer, SpanLabel>();
+	/** The registry used by {@link #get(String)} and {@link #get(int)} */
+	public static final LabelRegistry<SpanLabel> REGISTRY = new LabelRegistry<SpanLabel>(SpanLabel::new);
+	public static final Map<String, SpanLabel> LABELS = REGISTRY.labels();
+	public static final Map<Integer, SpanLabel> LABELS_INDEX = REGISTRY.labelsById();
 	
 	public static SpanLabel get(String form){
-		if(!LABELS.containsKey(form)){
-			SpanLabel label = new SpanLabel(form, LABELS.size());
-			synchronized(LABELS){
-				LABELS.put(form, label);
-				LABELS_INDEX.put(label.id, label);
-			}
-		}
-		return LABELS.get(form);
+		return REGISTRY.get(form);
 	}
 	
 	public static SpanLabel get(int id){
-		return LABELS_INDEX.get(id);
+		return REGISTRY.get(id);
 	}
 	
 	public String form;
@@ -0,0 +1,176 @@
+package justhalf.nlp.reader.acereader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Writes tokenized sentences as arrays of ids, which can be memory-mapped by the training code without parsing.<br>
+ *
+ * Each array is written into its own file as consecutive 32-bit little-endian integers:
+ * <ul>
+ * <li>&lt;base&gt;{@value #TOKENS_SUFFIX}: the id of each token in the vocabulary</li>
+ * <li>&lt;base&gt;{@value #POS_SUFFIX}: the id of the POS tag of each token, if POS tags are written</li>
+ * <li>&lt;base&gt;{@value #LABELS_SUFFIX}: the id of the BIO or BILOU label of each token, if labels are written</li>
+ * <li>&lt;base&gt;{@value #OFFSETS_SUFFIX}: the number of sentences plus one offsets, where the tokens of
+ * sentence i are at positions offsets[i] (inclusive) to offsets[i+1] (exclusive) in the other arrays</li>
+ * </ul>
+ * The ids are taken from the given registries, which can be shared by several writers (e.g., for the training,
+ * development, and test sets) and saved with {@link LabelRegistry#save(File)} to map the ids back to the forms.
+ */
+public class TensorWriter implements Closeable {
+
+	public static final String TOKENS_SUFFIX = ".tokens.bin";
+	public static final String POS_SUFFIX = ".pos.bin";
+	public static final String LABELS_SUFFIX = ".labels.bin";
+	public static final String OFFSETS_SUFFIX = ".offsets.bin";
+
+	private final LabelRegistry<VocabularyEntry> vocabulary;
+	private final LabelRegistry<VocabularyEntry> posTags;
+	private final LabelRegistry<WordLabel> labels;
+	private final IntArrayWriter tokensWriter;
+	private final IntArrayWriter posWriter;
+	private final IntArrayWriter labelsWriter;
+	private final IntArrayWriter offsetsWriter;
+	/** The writers opened so far, in the order they are closed */
+	private final List<IntArrayWriter> writers = new ArrayList<IntArrayWriter>();
+	private int numTokens = 0;
+	private int numSentences = 0;
+
+	/**
+	 * Creates the files for the given base path.
+	 * If one of the files cannot be created, the files already opened are closed.
+	 * @param basePath The path of the files without the suffixes
+	 * @param vocabulary The registry of the token ids
+	 * @param posTags The registry of the POS tag ids, or null to not write the POS tags
+	 * @param labels The registry of the label ids, or null to not write the labels
+	 * @throws IOException
+	 */
+	public TensorWriter(String basePath, LabelRegistry<VocabularyEntry> vocabulary,
+			LabelRegistry<VocabularyEntry> posTags, LabelRegistry<WordLabel> labels) throws IOException{
+		this.vocabulary = vocabulary;
+		this.posTags = posTags;
+		this.labels = labels;
+		try{
+			this.tokensWriter = open(basePath+TOKENS_SUFFIX);
+			this.posWriter = posTags == null ? null : open(basePath+POS_SUFFIX);
+			this.labelsWriter = labels == null ? null : open(basePath+LABELS_SUFFIX);
+			this.offsetsWriter = open(basePath+OFFSETS_SUFFIX);
+			offsetsWriter.write(0);
+		} catch (IOException | RuntimeException e){
+			for(IntArrayWriter writer: writers){
+				try{
+					writer.close();
+				} catch (IOException closeException){
+					e.addSuppressed(closeException);
+				}
+			}
+			throw e;
+		}
+	}
+
+	private IntArrayWriter open(String filename) throws IOException{
+		IntArrayWriter writer = new IntArrayWriter(new File(filename));
+		writers.add(writer);
+		return writer;
+	}
+
+	/**
+	 * Writes a sentence.
+	 * @param tokens The tokens, with the POS tags if they are written
+	 * @param tokenLabels The label of each token, if the labels are written
+	 * @throws IOException
+	 */
+	public void add(List<CoreLabel> tokens, List<WordLabel> tokenLabels) throws IOException{
+		for(int i=0; i<tokens.size(); i++){
+			CoreLabel token = tokens.get(i);
+			tokensWriter.write(vocabulary.get(token.value()).id);
+			if(posWriter != null){
+				posWriter.write(posTags.get(token.tag()).id);
+			}
+			if(labelsWriter != null){
+				labelsWriter.write(labels.get(tokenLabels.get(i).form).id);
+			}
+		}
+		numTokens += tokens.size();
+		numSentences += 1;
+		offsetsWriter.write(numTokens);
+	}
+
+	/**
+	 * Returns the number of sentences written so far
+	 * @return
+	 */
+	public int size(){
+		return numSentences;
+	}
+
+	/**
+	 * Closes all the files, even if some of them fail to close.
+	 * The first exception is thrown, with the other ones added as suppressed.
+	 */
+	@Override
+	public void close() throws IOException{
+		IOException exception = null;
+		for(IntArrayWriter writer: writers){
+			try{
+				writer.close();
+			} catch (IOException e){
+				if(exception == null){
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		if(exception != null){
+			throw exception;
+		}
+	}
+
+	/**
+	 * Writes integers in little-endian order through a buffer
+	 */
+	private static class IntArrayWriter {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		public IntArrayWriter(File file) throws IOException{
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		public void write(int value) throws IOException{
+			if(buffer.remaining() < 4){
+				flush();
+			}
+			buffer.putInt(value);
+		}
+
+		private void flush() throws IOException{
+			buffer.flip();
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		public void close() throws IOException{
+			try{
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+package justhalf.nlp.reader.acereader;
+
+/**
+ * A word or a POS tag in a vocabulary, with the id assigned by a {@link LabelRegistry}.<br>
+ * {@link TensorWriter} numbers the tokens and the POS tags with these, while the BIO or BILOU labels
+ * of the tokens are {@link WordLabel}s.
+ */
+public class VocabularyEntry {
+
+	public final String form;
+	public final int id;
+
+	public VocabularyEntry(String form, int id) {
+		this.form = form;
+		this.id = id;
+	}
+
+	public String toString(){
+		return String.format("%s(%d)", form, id);
+	}
+}
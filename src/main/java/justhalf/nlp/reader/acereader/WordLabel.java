@@ -1,28 +1,30 @@
 package justhalf.nlp.reader.acereader;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
 
 public class WordLabel implements Comparable<WordLabel>, Serializable{
 	
 	private static final long serialVersionUID = -2821034438335023157L;
-	public static final Map<String, WordLabel> LABELS = new HashMap<String, WordLabel>();
-	public static final Map<Integer, WordLabel> LABELS_INDEX = new HashMap<Integer, WordLabel>();
+	/** The registry used by {@link #get(String)} and {@link #get(int)} */
+	public static final LabelRegistry<WordLabel> REGISTRY = newRegistry();
+	public static final Map<String, WordLabel> LABELS = REGISTRY.labels();
+	public static final Map<Integer, WordLabel> LABELS_INDEX = REGISTRY.labelsById();
+	
+	/**
+	 * Returns a new empty registry of WordLabel, separate from the default {@link #REGISTRY}.
+	 * @return
+	 */
+	public static LabelRegistry<WordLabel> newRegistry(){
+		return new LabelRegistry<WordLabel>(WordLabel::new);
+	}
 	
 	public static WordLabel get(String form){
-		if(!LABELS.containsKey(form)){
-			WordLabel label = new WordLabel(form, LABELS.size());
-			synchronized(LABELS){
-				LABELS.put(form, label);
-				LABELS_INDEX.put(label.id, label);
-			}
-		}
-		return LABELS.get(form);
+		return REGISTRY.get(form);
 	}
 	
 	public static WordLabel get(int id){
-		return LABELS_INDEX.get(id);
+		return REGISTRY.get(id);
 	}
 	
 	public String form;
@@ -5,7 +5,9 @@ import java.util.List;
 
 import edu.emory.mathcs.nlp.component.template.node.NLPNode;
 import edu.emory.mathcs.nlp.tokenization.EnglishTokenizer;
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.util.LazyCoreLabel;
 
 /**
  * An implementation of {@link SentenceSplitter} using NLP4J
@@ -13,6 +15,8 @@ import edu.stanford.nlp.ling.CoreLabel;
 public class NLP4JSentenceSplitter implements SentenceSplitter {
 	
 	public edu.emory.mathcs.nlp.tokenization.Tokenizer nlp4jTokenizer;
+	/** Whether to return the sentences and the tokens as {@link LazyCoreLabel}s */
+	public boolean lazyLabels = false;
 
 	public NLP4JSentenceSplitter() {
 		nlp4jTokenizer = new EnglishTokenizer();
@@ -35,32 +39,75 @@ public class NLP4JSentenceSplitter implements SentenceSplitter {
 
 	@Override
 	public List<CoreLabel> split(String input) {
+		return toSentences(input, nlp4jTokenizer.segmentize(input));
+	}
+	
+	/**
+	 * Since NLP4J tokenizes the input while splitting, the tokens are returned directly
+	 * instead of tokenizing each sentence again.
+	 */
+	@Override
+	public List<CoreLabel> splitWithTokens(String input) {
 		List<NLPNode[]> sentences = nlp4jTokenizer.segmentize(input);
-		List<CoreLabel> result = new ArrayList<CoreLabel>();
+		List<CoreLabel> result = toSentences(input, sentences);
 		int lastEnd = 0;
-		String between = "";
-		for(NLPNode[] tokens: sentences){
-			CoreLabel sentence = new CoreLabel();
-			int start = tokens[0].getStartOffset();
-			int end = tokens[tokens.length-1].getEndOffset();
-			between = input.substring(lastEnd, start);
-			if(result.size() > 0){
-				result.get(result.size()-1).setAfter(between);
+		for(int i=0; i<sentences.size(); i++){
+			NLPNode[] nodes = sentences.get(i);
+			List<CoreLabel> tokens = new ArrayList<CoreLabel>(nodes.length-1);
+			for(int j=1; j<nodes.length; j++){
+				NLPNode node = nodes[j];
+				int start = node.getStartOffset();
+				int end = node.getEndOffset();
+				int nextStart = nextStart(input, sentences, i, j);
+				CoreLabel token = LazyCoreLabel.newLabel(lazyLabels, input, lastEnd, start, end, nextStart);
+				String wordForm = node.getWordForm();
+				if(wordForm.length() != end-start || !input.regionMatches(start, wordForm, 0, wordForm.length())){
+					token.setWord(wordForm);
+					token.setValue(wordForm);
+				}
+				tokens.add(token);
+				lastEnd = end;
 			}
-			sentence.setBefore(between);
-			sentence.setBeginPosition(start);
-			sentence.setEndPosition(end);
-			String sentenceText = input.substring(start, end);
-			sentence.setOriginalText(sentenceText);
-			sentence.setWord(sentenceText);
-			sentence.setValue(sentenceText);
-			result.add(sentence);
+			result.get(i).set(TokensAnnotation.class, tokens);
 		}
-		between = input.substring(lastEnd);
-		if(result.size() > 0){
-			result.get(result.size()-1).setAfter(between);
+		return result;
+	}
+	
+	/**
+	 * Converts the NLP4J sentences into {@link CoreLabel}s.<br>
+	 * 
+	 * Each sentence from NLP4J starts with an artificial root node at offset 0, so the first word is at index 1.
+	 * Only the offsets of the first and last word of each sentence are used, so with {@link #lazyLabels},
+	 * where the texts are computed from the input only when requested, this runs in linear time
+	 * in the number of sentences.
+	 */
+	private List<CoreLabel> toSentences(String input, List<NLPNode[]> sentences){
+		List<CoreLabel> result = new ArrayList<CoreLabel>(sentences.size());
+		int lastEnd = 0;
+		for(int i=0; i<sentences.size(); i++){
+			NLPNode[] tokens = sentences.get(i);
+			int start = tokens[1].getStartOffset();
+			int end = tokens[tokens.length-1].getEndOffset();
+			int nextStart = nextStart(input, sentences, i, tokens.length-1);
+			result.add(LazyCoreLabel.newLabel(lazyLabels, input, lastEnd, start, end, nextStart));
+			lastEnd = end;
 		}
 		return result;
 	}
+	
+	/**
+	 * Returns the start offset of the word after the j-th node in the i-th sentence,
+	 * or the input length if it is the last word
+	 */
+	private static int nextStart(String input, List<NLPNode[]> sentences, int i, int j){
+		NLPNode[] nodes = sentences.get(i);
+		if(j+1 < nodes.length){
+			return nodes[j+1].getStartOffset();
+		} else if(i+1 < sentences.size()){
+			return sentences.get(i+1)[1].getStartOffset();
+		} else {
+			return input.length();
+		}
+	}
 
 }
@@ -0,0 +1,210 @@
+package justhalf.nlp.sentencesplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.tokenizer.Tokenizer;
+
+/**
+ * Splits long documents into sentences in parallel, using any thread-safe {@link SentenceSplitter}.<br>
+ *
+ * The document is first cut at blank lines into chunks of at least {@link #minChunkSize} characters.
+ * The chunks are then split concurrently on a {@link ForkJoinPool}, and the results are stitched back
+ * with the offsets, {@link CoreLabel#before()}, and {@link CoreLabel#after()} relative to the whole document,
+ * so the output has the same format as {@link SentenceSplitter#split(String)}. Similarly, the chunks can be
+ * split with tokens using {@link #splitWithTokens(String)}, in which case the token offsets are shifted,
+ * while the {@link CoreLabel#before()} and {@link CoreLabel#after()} of the tokens are kept as produced
+ * by the underlying splitter for each chunk.<br>
+ *
+ * Blank lines are treated as hard sentence boundaries, so the result is the same as the sequential split
+ * as long as no sentence spans a blank line. If the underlying splitter is not thread-safe
+ * (see {@link #isThreadSafe()}), the document is split sequentially.
+ */
+public class ParallelSentenceSplitter implements SentenceSplitter {
+
+	/** The default minimum number of characters split as one task */
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 16;
+
+	public SentenceSplitter splitter;
+	public ForkJoinPool pool;
+	public int minChunkSize;
+
+	public ParallelSentenceSplitter(SentenceSplitter splitter){
+		this(splitter, ForkJoinPool.commonPool());
+	}
+
+	public ParallelSentenceSplitter(SentenceSplitter splitter, ForkJoinPool pool){
+		this(splitter, pool, DEFAULT_MIN_CHUNK_SIZE);
+	}
+
+	public ParallelSentenceSplitter(SentenceSplitter splitter, ForkJoinPool pool, int minChunkSize){
+		this.splitter = splitter;
+		this.pool = pool;
+		this.minChunkSize = minChunkSize;
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return splitter.isThreadSafe();
+	}
+
+	@Override
+	public String[] splitToString(String input) {
+		List<CoreLabel> sentences = split(input);
+		String[] result = new String[sentences.size()];
+		for(int i=0; i<result.length; i++){
+			result[i] = sentences.get(i).word();
+		}
+		return result;
+	}
+
+	@Override
+	public List<CoreLabel> split(String input) {
+		return split(input, false, null);
+	}
+
+	@Override
+	public List<CoreLabel> splitWithTokens(String input) {
+		return split(input, true, null);
+	}
+
+	@Override
+	public List<CoreLabel> splitWithTokens(String input, Tokenizer tokenizer) {
+		return split(input, true, tokenizer);
+	}
+
+	private List<CoreLabel> split(String input, boolean withTokens, Tokenizer tokenizer){
+		List<Integer> cuts = findCuts(input);
+		if(cuts.size() <= 2 || !splitter.isThreadSafe() || (tokenizer != null && !tokenizer.isThreadSafe())){
+			return splitChunk(input, withTokens, tokenizer);
+		}
+		List<List<CoreLabel>> chunks = pool.invoke(new SplitTask(input, cuts, 0, cuts.size()-1, withTokens, tokenizer));
+		List<CoreLabel> result = new ArrayList<CoreLabel>();
+		int lastEnd = 0;
+		for(int i=0; i<chunks.size(); i++){
+			List<CoreLabel> sentences = chunks.get(i);
+			if(sentences.isEmpty()){
+				continue;
+			}
+			int offset = cuts.get(i);
+			for(CoreLabel sentence: sentences){
+				shift(sentence, offset);
+				if(withTokens){
+					for(CoreLabel token: sentence.get(TokensAnnotation.class)){
+						shift(token, offset);
+					}
+				}
+			}
+			// Fix the text between the chunks, which was cut by the chunk boundary
+			CoreLabel first = sentences.get(0);
+			String between = input.substring(lastEnd, first.beginPosition());
+			first.setBefore(between);
+			if(!result.isEmpty()){
+				CoreLabel previous = result.get(result.size()-1);
+				previous.setAfter(between);
+			}
+			result.addAll(sentences);
+			lastEnd = sentences.get(sentences.size()-1).endPosition();
+		}
+		if(!result.isEmpty()){
+			result.get(result.size()-1).setAfter(input.substring(lastEnd));
+		}
+		return result;
+	}
+
+	private List<CoreLabel> splitChunk(String chunk, boolean withTokens, Tokenizer tokenizer){
+		if(!withTokens){
+			return splitter.split(chunk);
+		} else if(tokenizer == null){
+			return splitter.splitWithTokens(chunk);
+		} else {
+			return splitter.splitWithTokens(chunk, tokenizer);
+		}
+	}
+
+	/**
+	 * Returns the positions where the input can be cut, including 0 and the input length.
+	 * Each cut is placed at the first non-whitespace character after a blank line, such that each chunk
+	 * has at least {@link #minChunkSize} characters.
+	 */
+	private List<Integer> findCuts(String input){
+		List<Integer> cuts = new ArrayList<Integer>();
+		cuts.add(0);
+		int lastCut = 0;
+		int length = input.length();
+		int pos = input.indexOf('\n', minChunkSize);
+		while(pos >= 0 && pos < length){
+			// Look for another new line with only whitespaces in between
+			int next = pos+1;
+			boolean isBlankLine = false;
+			while(next < length && Character.isWhitespace(input.charAt(next))){
+				if(input.charAt(next) == '\n'){
+					isBlankLine = true;
+				}
+				next++;
+			}
+			if(isBlankLine && next < length && next-lastCut >= minChunkSize){
+				cuts.add(next);
+				lastCut = next;
+				pos = input.indexOf('\n', next+minChunkSize);
+			} else {
+				pos = input.indexOf('\n', next);
+			}
+		}
+		cuts.add(length);
+		return cuts;
+	}
+
+	private static void shift(CoreLabel label, int offset){
+		label.setBeginPosition(label.beginPosition() + offset);
+		label.setEndPosition(label.endPosition() + offset);
+	}
+
+	/**
+	 * Splits the chunks from cuts[startChunk] to cuts[endChunk], returning the sentences of each chunk
+	 * with the offsets relative to the chunk
+	 */
+	private class SplitTask extends RecursiveTask<List<List<CoreLabel>>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private String input;
+		private List<Integer> cuts;
+		private int startChunk;
+		private int endChunk;
+		private boolean withTokens;
+		private Tokenizer tokenizer;
+
+		public SplitTask(String input, List<Integer> cuts, int startChunk, int endChunk, boolean withTokens,
+				Tokenizer tokenizer){
+			this.input = input;
+			this.cuts = cuts;
+			this.startChunk = startChunk;
+			this.endChunk = endChunk;
+			this.withTokens = withTokens;
+			this.tokenizer = tokenizer;
+		}
+
+		@Override
+		protected List<List<CoreLabel>> compute() {
+			if(endChunk - startChunk == 1){
+				String chunk = input.substring(cuts.get(startChunk), cuts.get(endChunk));
+				List<List<CoreLabel>> result = new ArrayList<List<CoreLabel>>();
+				result.add(splitChunk(chunk, withTokens, tokenizer));
+				return result;
+			}
+			int middle = (startChunk + endChunk)/2;
+			SplitTask left = new SplitTask(input, cuts, startChunk, middle, withTokens, tokenizer);
+			SplitTask right = new SplitTask(input, cuts, middle, endChunk, withTokens, tokenizer);
+			left.fork();
+			List<List<CoreLabel>> result = right.compute();
+			result.addAll(0, left.join());
+			return result;
+		}
+	}
+
+}
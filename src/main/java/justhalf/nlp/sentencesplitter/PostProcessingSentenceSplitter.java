@@ -0,0 +1,167 @@
+package justhalf.nlp.sentencesplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * A {@link SentenceSplitter} which corrects the sentences of another splitter:
+ * <ol>
+ * <li>A sentence containing a blank line is split at the blank line, and a sentence ending within the first
+ * {@link #headerLength} characters of the input is split at every new line, as the beginning of a document
+ * usually contains headers (e.g., the document ID and the date) without punctuations.</li>
+ * <li>A sentence is merged with the next one if there is no whitespace between them.</li>
+ * </ol>
+ * The sentences are checked by scanning the characters, so the sentences without new lines are only checked
+ * for merging.
+ */
+public class PostProcessingSentenceSplitter implements SentenceSplitter {
+
+	public static final int DEFAULT_HEADER_LENGTH = 70;
+
+	public SentenceSplitter splitter;
+	/** The sentences ending at or before this offset are split at every new line */
+	public int headerLength;
+
+	/**
+	 * Wraps the given splitter with the {@link #DEFAULT_HEADER_LENGTH}
+	 * @param splitter
+	 */
+	public PostProcessingSentenceSplitter(SentenceSplitter splitter){
+		this(splitter, DEFAULT_HEADER_LENGTH);
+	}
+
+	/**
+	 * Wraps the given splitter, splitting the sentences ending at or before headerLength at every new line
+	 * @param splitter
+	 * @param headerLength
+	 */
+	public PostProcessingSentenceSplitter(SentenceSplitter splitter, int headerLength){
+		this.splitter = splitter;
+		this.headerLength = headerLength;
+	}
+
+	@Override
+	public boolean isThreadSafe(){
+		return splitter.isThreadSafe();
+	}
+
+	@Override
+	public String[] splitToString(String input){
+		List<CoreLabel> sentences = split(input);
+		String[] result = new String[sentences.size()];
+		for(int i=0; i<sentences.size(); i++){
+			result[i] = sentences.get(i).value();
+		}
+		return result;
+	}
+
+	@Override
+	public List<CoreLabel> split(String input){
+		return postProcess(splitter.split(input));
+	}
+
+	/**
+	 * Returns the sentences and the tokens of the wrapped splitter, with the tokens reassigned to the corrected
+	 * sentences by their offsets. The tokens in the whitespace between the sentences are dropped.
+	 */
+	@Override
+	public List<CoreLabel> splitWithTokens(String input){
+		List<CoreLabel> sentences = splitter.splitWithTokens(input);
+		List<CoreLabel> tokens = new ArrayList<CoreLabel>();
+		for(CoreLabel sentence: sentences){
+			tokens.addAll(sentence.get(TokensAnnotation.class));
+		}
+		sentences = postProcess(sentences);
+		int tokenIdx = 0;
+		for(CoreLabel sentence: sentences){
+			List<CoreLabel> sentenceTokens = new ArrayList<CoreLabel>();
+			while(tokenIdx < tokens.size() && tokens.get(tokenIdx).beginPosition() < sentence.endPosition()){
+				CoreLabel token = tokens.get(tokenIdx++);
+				if(token.beginPosition() >= sentence.beginPosition()){
+					sentenceTokens.add(token);
+				}
+			}
+			sentence.set(TokensAnnotation.class, sentenceTokens);
+		}
+		return sentences;
+	}
+
+	/**
+	 * Returns the corrected sentences.
+	 * The sentences which are split or merged are modified in place, and the new sentences are added after them.
+	 * @param sentences
+	 * @return
+	 */
+	public List<CoreLabel> postProcess(List<CoreLabel> sentences){
+		List<CoreLabel> result = new ArrayList<CoreLabel>(sentences.size());
+		for(int i=0; i<sentences.size(); i++){
+			CoreLabel sentence = sentences.get(i);
+			while(sentence != null){
+				CoreLabel nextSentence = i < sentences.size()-1 ? sentences.get(i+1) : null;
+				int startIndex = -1;
+				int startIndexOrig = -1;
+				String value = sentence.value();
+				int firstNewline = value.indexOf('\n');
+				if(firstNewline != -1){
+					if(sentence.endPosition() <= headerLength){
+						startIndex = firstNewline;
+						startIndexOrig = sentence.originalText().indexOf('\n');
+					} else {
+						startIndex = value.indexOf("\n\n", firstNewline);
+						if(startIndex != -1){
+							startIndexOrig = sentence.originalText().indexOf("\n\n");
+						}
+					}
+				}
+				if(startIndex != -1){
+					// Split at the new line, with the following whitespaces between the sentences
+					int nextSentenceIndex = skipWhitespaces(value, startIndex);
+					int nextSentenceIndexOrig = skipWhitespaces(sentence.originalText(), startIndexOrig);
+
+					CoreLabel newSentence = new CoreLabel();
+					newSentence.setBeginPosition(nextSentenceIndex+sentence.beginPosition());
+					newSentence.setEndPosition(sentence.endPosition());
+					newSentence.setAfter(sentence.after());
+					newSentence.setBefore(value.substring(startIndex, nextSentenceIndex));
+					newSentence.setOriginalText(sentence.originalText().substring(nextSentenceIndexOrig));
+					newSentence.setWord(sentence.word().substring(nextSentenceIndex));
+					newSentence.setValue(value.substring(nextSentenceIndex));
+					sentence.setEndPosition(startIndex+sentence.beginPosition());
+					sentence.setAfter(newSentence.before());
+					sentence.setOriginalText(sentence.originalText().substring(0, startIndexOrig));
+					sentence.setWord(sentence.word().substring(0, startIndex));
+					sentence.setValue(value.substring(0, startIndex));
+					result.add(sentence);
+					sentence = newSentence;
+				} else if(nextSentence != null && nextSentence.beginPosition() == sentence.endPosition()){
+					// Combine with next if no space
+					sentence.setAfter(nextSentence.after());
+					sentence.setEndPosition(nextSentence.endPosition());
+					sentence.setOriginalText(sentence.originalText() + nextSentence.before() + nextSentence.originalText());
+					sentence.setWord(sentence.word() + nextSentence.before() + nextSentence.word());
+					sentence.setValue(value + nextSentence.before() + nextSentence.value());
+					i += 1;
+				} else {
+					result.add(sentence);
+					sentence = null;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the position after the new lines, tabs, and spaces starting at the given position
+	 */
+	private static int skipWhitespaces(String text, int start){
+		int end = start;
+		while(end < text.length() && (text.charAt(end) == '\n' || text.charAt(end) == '\t' || text.charAt(end) == ' ')){
+			end++;
+		}
+		return end;
+	}
+
+}
@@ -0,0 +1,268 @@
+package justhalf.nlp.sentencesplitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.util.LazyCoreLabel;
+
+/**
+ * A fast implementation of {@link SentenceSplitter} using simple rules, without tokenizing the input<br>
+ *
+ * The input is scanned once for sentence-final punctuation (. ! ?), optionally followed by closing quotes
+ * or brackets, and followed by a whitespace or the end of the input. A period is not considered as
+ * a sentence boundary when:
+ * <ul>
+ * <li>It is part of an ellipsis (..)</li>
+ * <li>It follows a title abbreviation such as "Mr." or "Dr.", which never ends a sentence</li>
+ * <li>It follows another abbreviation (e.g., "Inc.", "etc.") or an initial or acronym (e.g., "J.", "U.S.", "p.m."),
+ * unless the next word is a common sentence starter such as "The" or "He"</li>
+ * </ul>
+ * These rules are modeled after the abbreviation handling in the PTB tokenizer of Stanford CoreNLP,
+ * and so the output mostly agrees with {@link StanfordSentenceSplitter}.<br>
+ *
+ * Similar to {@link StanfordSentenceSplitter}, new lines do not mark sentence boundaries.
+ */
+public class RuleBasedSentenceSplitter implements SentenceSplitter {
+
+	/** Abbreviations which never end a sentence, in lowercase and without the period */
+	public static final String[] DEFAULT_TITLE_ABBREVIATIONS = new String[]{
+		"mr", "mrs", "ms", "messrs", "dr", "drs", "prof", "profs", "sen", "sens", "rep", "reps", "gov", "govs",
+		"gen", "lt", "col", "maj", "sgt", "cpl", "pvt", "capt", "adm", "cmdr", "comdr", "brig", "lieut", "pfc",
+		"spc", "det", "supt", "supts", "atty", "attys", "rev", "hon", "pres", "mt", "st", "ste", "ave",
+		"mme", "mlle", "vs", "no", "nos", "fig", "figs", "vol", "pp", "approx", "dept",
+	};
+
+	/**
+	 * Abbreviations which may end a sentence when followed by a sentence starter,
+	 * in lowercase and without the final period
+	 */
+	public static final String[] DEFAULT_ABBREVIATIONS = new String[]{
+		"jan", "feb", "mar", "apr", "jun", "jul", "aug", "sep", "sept", "oct", "nov", "dec",
+		"mon", "tue", "tues", "wed", "thu", "thur", "thurs", "fri", "sat", "sun",
+		"ala", "ariz", "ark", "calif", "colo", "conn", "del", "fla", "ga", "ill", "ind", "kan", "kans", "ky",
+		"la", "mass", "md", "mich", "minn", "miss", "mo", "mont", "neb", "nev", "okla", "ore", "pa", "penn",
+		"tenn", "tex", "va", "vt", "wash", "wis", "wisc", "wyo",
+		"inc", "co", "cos", "corp", "ltd", "plc", "bancorp", "bhd", "assn", "univ", "intl", "sys", "natl", "mfg",
+		"jr", "sr", "bros", "ph.d", "blvd", "rd", "esq", "etc", "al", "seq", "est", "ext", "tel", "sq",
+		"e.g", "i.e", "cf", "ca", "min", "max", "hr", "hrs", "oz", "lb", "lbs", "ft", "yr", "yrs",
+	};
+
+	/** Words which commonly start a sentence, used to decide whether an abbreviation ends a sentence */
+	public static final String[] DEFAULT_SENTENCE_STARTERS = new String[]{
+		"A", "All", "An", "And", "As", "At", "But", "Each", "For", "He", "Her", "His", "However", "I", "If", "In",
+		"It", "Its", "Many", "Meanwhile", "Most", "My", "No", "Not", "On", "Our", "She", "Since", "So", "Some",
+		"That", "The", "Their", "There", "These", "They", "This", "Those", "Thus", "To", "US", "We", "What",
+		"When", "Which", "While", "Who", "Why", "Yet", "You",
+	};
+
+	public Set<String> titleAbbreviations;
+	public Set<String> abbreviations;
+	public Set<String> sentenceStarters;
+	/** Whether to return the sentences as {@link LazyCoreLabel}s */
+	public boolean lazyLabels = false;
+	/** The length of the longest abbreviation, so longer words can be skipped without a dictionary lookup */
+	private int maxAbbreviationLength;
+
+	public RuleBasedSentenceSplitter() {
+		this(Arrays.asList(DEFAULT_TITLE_ABBREVIATIONS), Arrays.asList(DEFAULT_ABBREVIATIONS),
+				Arrays.asList(DEFAULT_SENTENCE_STARTERS));
+	}
+
+	/**
+	 * Create a splitter with custom dictionaries.
+	 * @param titleAbbreviations
+	 * 		Abbreviations which never end a sentence, in lowercase and without the final period
+	 * @param abbreviations
+	 * 		Abbreviations which end a sentence only when followed by a sentence starter,
+	 * 		in lowercase and without the final period
+	 * @param sentenceStarters
+	 * 		Words which commonly start a sentence (case-sensitive)
+	 */
+	public RuleBasedSentenceSplitter(Collection<String> titleAbbreviations, Collection<String> abbreviations,
+			Collection<String> sentenceStarters){
+		this.titleAbbreviations = new HashSet<String>(titleAbbreviations);
+		this.abbreviations = new HashSet<String>(abbreviations);
+		this.sentenceStarters = new HashSet<String>(sentenceStarters);
+		this.maxAbbreviationLength = 0;
+		for(String abbreviation: this.titleAbbreviations){
+			maxAbbreviationLength = Math.max(maxAbbreviationLength, abbreviation.length());
+		}
+		for(String abbreviation: this.abbreviations){
+			maxAbbreviationLength = Math.max(maxAbbreviationLength, abbreviation.length());
+		}
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public String[] splitToString(String input) {
+		List<CoreLabel> sentences = split(input);
+		String[] result = new String[sentences.size()];
+		for(int i=0; i<result.length; i++){
+			result[i] = sentences.get(i).word();
+		}
+		return result;
+	}
+
+	@Override
+	public List<CoreLabel> split(String input) {
+		SentenceList result = new SentenceList(input, lazyLabels);
+		int length = input.length();
+		int start = skipWhitespaces(input, 0);
+		int pos = start;
+		while(pos < length){
+			char c = input.charAt(pos);
+			if(!isTerminator(c)){
+				pos++;
+				continue;
+			}
+			int end = pos+1;
+			while(end < length && isTerminator(input.charAt(end))){
+				end++;
+			}
+			while(end < length && isCloser(input.charAt(end))){
+				end++;
+			}
+			if((end == length || Character.isWhitespace(input.charAt(end))) && isBoundary(input, start, pos, end)){
+				result.add(start, end);
+				start = skipWhitespaces(input, end);
+				pos = start;
+			} else {
+				pos = end;
+			}
+		}
+		if(start < length){
+			int end = length;
+			while(Character.isWhitespace(input.charAt(end-1))){
+				end--;
+			}
+			result.add(start, end);
+		}
+		return result.finish();
+	}
+
+	/**
+	 * Collects the sentences, as {@link LazyCoreLabel}s if lazy is true. Since the text after a sentence extends
+	 * to the beginning of the next sentence, each sentence is created only when the next one is found.
+	 */
+	private static class SentenceList {
+		private String input;
+		private boolean lazy;
+		private List<CoreLabel> sentences;
+		private int lastBegin;
+		private int lastEnd;
+		private int lastBeforeBegin;
+
+		public SentenceList(String input, boolean lazy){
+			this.input = input;
+			this.lazy = lazy;
+			this.sentences = new ArrayList<CoreLabel>();
+			this.lastBegin = -1;
+			this.lastEnd = 0;
+			this.lastBeforeBegin = 0;
+		}
+
+		public void add(int begin, int end){
+			if(lastBegin >= 0){
+				sentences.add(LazyCoreLabel.newLabel(lazy, input, lastBeforeBegin, lastBegin, lastEnd, begin));
+				lastBeforeBegin = lastEnd;
+			}
+			lastBegin = begin;
+			lastEnd = end;
+		}
+
+		public List<CoreLabel> finish(){
+			if(lastBegin >= 0){
+				sentences.add(LazyCoreLabel.newLabel(lazy, input, lastBeforeBegin, lastBegin, lastEnd, input.length()));
+			}
+			return sentences;
+		}
+	}
+
+	/**
+	 * Whether the punctuation sequence starting at termStart (inclusive) and ending at termEnd (exclusive)
+	 * ends the sentence starting at sentenceStart.
+	 */
+	private boolean isBoundary(String input, int sentenceStart, int termStart, int termEnd){
+		if(input.charAt(termStart) != '.'){
+			return true;
+		}
+		if(termStart+1 < termEnd && input.charAt(termStart+1) == '.'){
+			// Ellipsis
+			return false;
+		}
+		int wordStart = termStart;
+		while(wordStart > sentenceStart && !Character.isWhitespace(input.charAt(wordStart-1))){
+			wordStart--;
+		}
+		while(wordStart < termStart && isOpener(input.charAt(wordStart))){
+			wordStart++;
+		}
+		if(wordStart == termStart){
+			return true;
+		}
+		boolean isAbbreviation = isAcronym(input, wordStart, termStart);
+		if(!isAbbreviation && termStart-wordStart <= maxAbbreviationLength){
+			String lowercased = input.substring(wordStart, termStart).toLowerCase();
+			if(titleAbbreviations.contains(lowercased)){
+				return false;
+			}
+			isAbbreviation = abbreviations.contains(lowercased);
+		}
+		if(isAbbreviation){
+			int nextStart = skipWhitespaces(input, termEnd);
+			if(nextStart == input.length()){
+				return true;
+			}
+			int nextEnd = nextStart;
+			while(nextEnd < input.length() && Character.isLetter(input.charAt(nextEnd))){
+				nextEnd++;
+			}
+			return sentenceStarters.contains(input.substring(nextStart, nextEnd));
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the word between start (inclusive) and end (exclusive) is an initial or an acronym with periods,
+	 * such as "J", "U.S", or "p.m"
+	 */
+	private static boolean isAcronym(String input, int start, int end){
+		if((end-start) % 2 == 0){
+			return false;
+		}
+		for(int i=start; i<end; i+=2){
+			if(!Character.isLetter(input.charAt(i))) return false;
+			if(i+1 < end && input.charAt(i+1) != '.') return false;
+		}
+		return true;
+	}
+
+	private static int skipWhitespaces(String input, int pos){
+		while(pos < input.length() && Character.isWhitespace(input.charAt(pos))){
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isTerminator(char c){
+		return c == '.' || c == '!' || c == '?';
+	}
+
+	private static boolean isCloser(char c){
+		return c == '"' || c == '\'' || c == ')' || c == ']' || c == '}' || c == '”' || c == '’';
+	}
+
+	private static boolean isOpener(char c){
+		return c == '"' || c == '\'' || c == '(' || c == '[' || c == '{' || c == '“' || c == '‘';
+	}
+
+}
@@ -1,9 +1,14 @@
 package justhalf.nlp.sentencesplitter;
 
+import java.io.Reader;
+import java.util.Iterator;
 import java.util.List;
 
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
 import justhalf.nlp.NLPInterface;
+import justhalf.nlp.tokenizer.StanfordTokenizer;
+import justhalf.nlp.tokenizer.Tokenizer;
 
 /**
  * An interface for sentence splitters
@@ -28,4 +33,65 @@ public interface SentenceSplitter extends NLPInterface{
 	 * 		List of {@link CoreLabel} objects, each representing a sentence found in the input
 	 */
 	public List<CoreLabel> split(String input);
+	
+	/**
+	 * Split a text into a list of sentences, together with the tokens in each sentence.<br>
+	 * 
+	 * Each CoreLabel corresponds to one sentence, in the same format as {@link #split(String)}.
+	 * The tokens of each sentence are stored as a list of {@link CoreLabel} in the {@link TokensAnnotation}
+	 * of the sentence, with the offsets relative to the input text.<br>
+	 * 
+	 * Implementations which already tokenize the input while splitting should return those tokens,
+	 * so that the input does not need to be tokenized again. By default, each sentence is tokenized
+	 * using the shared {@link StanfordTokenizer#getDefault()}.
+	 * @param input
+	 * 		A text which contains possibly multiple sentences. 
+	 * @return
+	 * 		List of {@link CoreLabel} objects, each representing a sentence found in the input,
+	 * 		with the tokens in the {@link TokensAnnotation}
+	 */
+	public default List<CoreLabel> splitWithTokens(String input){
+		return splitWithTokens(input, StanfordTokenizer.getDefault());
+	}
+	
+	/**
+	 * Split a text into a list of sentences, and tokenize each sentence with the given tokenizer.<br>
+	 * 
+	 * The output format is the same as {@link #splitWithTokens(String)}.
+	 * @param input
+	 * 		A text which contains possibly multiple sentences. 
+	 * @param tokenizer
+	 * 		The tokenizer used to tokenize each sentence
+	 * @return
+	 * 		List of {@link CoreLabel} objects, each representing a sentence found in the input,
+	 * 		with the tokens in the {@link TokensAnnotation}
+	 */
+	public default List<CoreLabel> splitWithTokens(String input, Tokenizer tokenizer){
+		List<CoreLabel> sentences = split(input);
+		for(CoreLabel sentence: sentences){
+			int offset = sentence.beginPosition();
+			List<CoreLabel> tokens = tokenizer.tokenize(input.substring(offset, sentence.endPosition()));
+			for(CoreLabel token: tokens){
+				token.setBeginPosition(token.beginPosition() + offset);
+				token.setEndPosition(token.endPosition() + offset);
+			}
+			sentence.set(TokensAnnotation.class, tokens);
+		}
+		return sentences;
+	}
+	
+	/**
+	 * Split a text coming from a reader into a sequence of sentences incrementally.<br>
+	 * 
+	 * Each sentence is available as soon as it has been determined, without reading the whole input first.
+	 * See {@link StreamingSentenceSplitter} for details.
+	 * @param input
+	 * 		A reader providing a text which contains possibly multiple sentences.
+	 * @return
+	 * 		Iterator of {@link CoreLabel} objects, each representing a sentence found in the input,
+	 * 		with the offsets relative to the beginning of the input
+	 */
+	public default Iterator<CoreLabel> split(Reader input){
+		return new StreamingSentenceSplitter(this).split(input);
+	}
 }
@@ -4,11 +4,13 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.process.DocumentPreprocessor;
 import edu.stanford.nlp.process.PTBTokenizer.PTBTokenizerFactory;
 import edu.stanford.nlp.process.TokenizerFactory;
+import justhalf.nlp.util.LazyCoreLabel;
 
 /**
  * An implementation of {@link SentenceSplitter} using Stanford CoreNLP
@@ -16,6 +18,8 @@ import edu.stanford.nlp.process.TokenizerFactory;
 public class StanfordSentenceSplitter implements SentenceSplitter {
 	
 	private TokenizerFactory<CoreLabel> tokenizerFactory;
+	/** Whether to return the sentences as {@link LazyCoreLabel}s, keeping the tokens from Stanford CoreNLP as they are */
+	public boolean lazyLabels = false;
 
 	public StanfordSentenceSplitter() {
 		tokenizerFactory = PTBTokenizerFactory.newCoreLabelTokenizerFactory("ptb3Escaping=false,invertible=true");
@@ -25,53 +29,81 @@ public class StanfordSentenceSplitter implements SentenceSplitter {
 	public String[] splitToString(String input) {
 		List<String> sentenceList = new ArrayList<String>();
 		for(List<CoreLabel> sentenceTokenized: splitAndTokenize(input)){
-			StringBuilder sentence = new StringBuilder();
-			int lastIndex = -1;
-			for(CoreLabel word: sentenceTokenized){
-				int curIndex = word.beginPosition();
-				if(curIndex < lastIndex) continue;
-				if(sentence.length() > 0){
-					sentence.append(input.substring(lastIndex, curIndex));
-				}
-				sentence.append(word.word());
-				lastIndex = word.endPosition();
-			}
-			sentenceList.add(sentence.toString());
+			sentenceList.add(toSentenceText(input, sentenceTokenized));
 		}
 		return sentenceList.toArray(new String[sentenceList.size()]);
 	}
 	
 	@Override
 	public List<CoreLabel> split(String input){
-		List<CoreLabel> sentenceList = new ArrayList<CoreLabel>();
-		for(List<CoreLabel> sentenceTokenized: splitAndTokenize(input)){
-			StringBuilder sentenceText = new StringBuilder();
+		return toSentences(input, splitAndTokenize(input));
+	}
+	
+	/**
+	 * Since Stanford CoreNLP's document processor already tokenizes the input while splitting,
+	 * the tokens are returned directly instead of tokenizing each sentence again.
+	 */
+	@Override
+	public List<CoreLabel> splitWithTokens(String input){
+		List<List<CoreLabel>> sentencesTokenized = splitAndTokenize(input);
+		List<CoreLabel> sentenceList = toSentences(input, sentencesTokenized);
+		for(int i=0; i<sentenceList.size(); i++){
+			sentenceList.get(i).set(TokensAnnotation.class, sentencesTokenized.get(i));
+		}
+		return sentenceList;
+	}
+	
+	/**
+	 * Converts the tokenized sentences into {@link CoreLabel}s, with the texts computed from the input
+	 * only when requested if {@link #lazyLabels} is true.
+	 */
+	private List<CoreLabel> toSentences(String input, List<List<CoreLabel>> sentencesTokenized){
+		List<CoreLabel> sentenceList = new ArrayList<CoreLabel>(sentencesTokenized.size());
+		int lastEnd = 0;
+		for(int i=0; i<sentencesTokenized.size(); i++){
+			List<CoreLabel> sentenceTokenized = sentencesTokenized.get(i);
 			int sentenceBegin = sentenceTokenized.get(0).beginPosition();
-			String before = sentenceTokenized.get(0).before();
-			String after = sentenceTokenized.get(sentenceTokenized.size()-1).after();
-			int lastIndex = -1;
+			int sentenceEnd = -1;
+			boolean isOriginalText = true;
 			for(CoreLabel word: sentenceTokenized){
-				int curIndex = word.beginPosition();
-				if(curIndex < lastIndex) continue;
-				if(sentenceText.length() > 0){
-					sentenceText.append(input.substring(lastIndex, curIndex));
+				sentenceEnd = Math.max(sentenceEnd, word.endPosition());
+				if(!word.word().equals(word.originalText())){
+					isOriginalText = false;
 				}
-				sentenceText.append(word.word());
-				lastIndex = word.endPosition();
 			}
-			CoreLabel sentence = new CoreLabel();
-			sentence.setBefore(before);
-			sentence.setAfter(after);
-			sentence.setBeginPosition(sentenceBegin);
-			sentence.setEndPosition(lastIndex);
-			sentence.setOriginalText(sentenceText.toString());
-			sentence.setWord(sentenceText.toString());
-			sentence.setValue(sentenceText.toString());
+			int nextBegin = input.length();
+			if(i+1 < sentencesTokenized.size()){
+				nextBegin = sentencesTokenized.get(i+1).get(0).beginPosition();
+			}
+			CoreLabel sentence = LazyCoreLabel.newLabel(lazyLabels, input, lastEnd, sentenceBegin, sentenceEnd, nextBegin);
+			if(!isOriginalText){
+				// The sentence text uses the normalized words, so it differs from the input
+				String sentenceText = toSentenceText(input, sentenceTokenized);
+				sentence.setOriginalText(sentenceText);
+				sentence.setWord(sentenceText);
+				sentence.setValue(sentenceText);
+			}
 			sentenceList.add(sentence);
+			lastEnd = sentenceEnd;
 		}
 		return sentenceList;
 	}
 	
+	private String toSentenceText(String input, List<CoreLabel> sentenceTokenized){
+		StringBuilder sentenceText = new StringBuilder();
+		int lastIndex = -1;
+		for(CoreLabel word: sentenceTokenized){
+			int curIndex = word.beginPosition();
+			if(curIndex < lastIndex) continue;
+			if(sentenceText.length() > 0){
+				sentenceText.append(input.substring(lastIndex, curIndex));
+			}
+			sentenceText.append(word.word());
+			lastIndex = word.endPosition();
+		}
+		return sentenceText.toString();
+	}
+	
 	/**
 	 * Stanford CoreNLP's document processor also tokenize the input sentence while splitting 
 	 * the sentence. This method will return the original output of Stanford CoreNLP
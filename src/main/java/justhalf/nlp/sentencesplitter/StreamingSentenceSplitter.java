@@ -0,0 +1,151 @@
+package justhalf.nlp.sentencesplitter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Splits a text coming from a {@link Reader} into sentences incrementally, using any {@link SentenceSplitter}.<br>
+ *
+ * The input is read in chunks of {@link #chunkSize} characters. After each chunk is read, the pending text
+ * is split using the underlying splitter, and all sentences except the last one are emitted, since the last
+ * sentence might continue in the next chunk. The last sentence is kept as the beginning of the pending text.
+ * So the sentences are available as soon as the text after them has been read, and only the pending text
+ * is kept in memory.<br>
+ *
+ * To keep the memory bounded, if the pending text grows beyond {@link #maxPendingLength} characters without
+ * any sentence boundary, all sentences in it are emitted, even though the last one might not be complete.<br>
+ *
+ * The sentences have the same format as the output of {@link SentenceSplitter#split(String)}, with the
+ * {@link CoreLabel#beginPosition()} and {@link CoreLabel#endPosition()} relative to the beginning of the stream.
+ */
+public class StreamingSentenceSplitter {
+
+	/** The default number of characters read at a time */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	public SentenceSplitter splitter;
+	public int chunkSize;
+	public int maxPendingLength;
+
+	public StreamingSentenceSplitter(SentenceSplitter splitter){
+		this(splitter, DEFAULT_CHUNK_SIZE);
+	}
+
+	public StreamingSentenceSplitter(SentenceSplitter splitter, int chunkSize){
+		this(splitter, chunkSize, 4*chunkSize);
+	}
+
+	public StreamingSentenceSplitter(SentenceSplitter splitter, int chunkSize, int maxPendingLength){
+		if(chunkSize <= 0){
+			throw new IllegalArgumentException("The chunk size must be positive");
+		}
+		this.splitter = splitter;
+		this.chunkSize = chunkSize;
+		this.maxPendingLength = Math.max(chunkSize, maxPendingLength);
+	}
+
+	/**
+	 * Split the text from the given reader into sentences lazily.<br>
+	 *
+	 * {@link IOException}s from the reader are rethrown as {@link UncheckedIOException}.
+	 * The reader is not closed by this method.
+	 * @param input
+	 * 		The reader providing the text
+	 * @return
+	 * 		An iterator over the sentences, each represented as {@link CoreLabel}
+	 */
+	public Iterator<CoreLabel> split(Reader input){
+		return new SentenceIterator(input);
+	}
+
+	private class SentenceIterator implements Iterator<CoreLabel> {
+
+		private Reader input;
+		private char[] readBuffer;
+		private StringBuilder pending;
+		/** The offset of the beginning of the pending text in the stream */
+		private int pendingOffset;
+		private boolean eof;
+		private Deque<CoreLabel> ready;
+
+		public SentenceIterator(Reader input){
+			this.input = input;
+			this.readBuffer = new char[chunkSize];
+			this.pending = new StringBuilder();
+			this.pendingOffset = 0;
+			this.eof = false;
+			this.ready = new ArrayDeque<CoreLabel>();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(ready.isEmpty() && !(eof && pending.length() == 0)){
+				fill();
+			}
+			return !ready.isEmpty();
+		}
+
+		@Override
+		public CoreLabel next() {
+			if(!hasNext()){
+				throw new NoSuchElementException();
+			}
+			return ready.poll();
+		}
+
+		private void fill(){
+			try{
+				int read = input.read(readBuffer);
+				if(read == -1){
+					eof = true;
+				} else {
+					pending.append(readBuffer, 0, read);
+				}
+			} catch (IOException e){
+				throw new UncheckedIOException(e);
+			}
+			String text = pending.toString();
+			List<CoreLabel> sentences = splitter.split(text);
+			if(eof || text.length() >= maxPendingLength){
+				// Everything in the pending text is final
+				for(CoreLabel sentence: sentences){
+					ready.add(shift(sentence));
+				}
+				pendingOffset += text.length();
+				pending.setLength(0);
+				return;
+			}
+			if(sentences.size() <= 1){
+				// Need more text to find the next boundary
+				return;
+			}
+			CoreLabel last = sentences.get(sentences.size()-1);
+			int cut = sentences.get(sentences.size()-2).endPosition();
+			String between = text.substring(cut, last.beginPosition());
+			for(int i=0; i<sentences.size()-1; i++){
+				CoreLabel sentence = sentences.get(i);
+				if(i == sentences.size()-2){
+					sentence.setAfter(between);
+				}
+				ready.add(shift(sentence));
+			}
+			pending.delete(0, cut);
+			pendingOffset += cut;
+		}
+
+		private CoreLabel shift(CoreLabel sentence){
+			sentence.setBeginPosition(sentence.beginPosition() + pendingOffset);
+			sentence.setEndPosition(sentence.endPosition() + pendingOffset);
+			return sentence;
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package justhalf.nlp.tokenizer;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * A {@link Tokenizer} which splits the tokens of another tokenizer further with {@link TokenSplitRule}s
+ */
+public class PostProcessingTokenizer implements Tokenizer {
+
+	public Tokenizer tokenizer;
+	public TokenSplitRule[] rules;
+
+	/**
+	 * Wraps the given tokenizer with the {@link TokenSplitRule#DEFAULT} rule
+	 * @param tokenizer
+	 */
+	public PostProcessingTokenizer(Tokenizer tokenizer){
+		this(tokenizer, TokenSplitRule.DEFAULT);
+	}
+
+	/**
+	 * Wraps the given tokenizer with the given rules, which are applied in order
+	 * @param tokenizer
+	 * @param rules
+	 */
+	public PostProcessingTokenizer(Tokenizer tokenizer, TokenSplitRule... rules){
+		this.tokenizer = tokenizer;
+		this.rules = rules;
+	}
+
+	@Override
+	public String[] tokenizeToString(String sentence){
+		List<CoreLabel> words = tokenize(sentence);
+		String[] result = new String[words.size()];
+		for(int i=0; i<words.size(); i++){
+			result[i] = words.get(i).word();
+		}
+		return result;
+	}
+
+	@Override
+	public List<CoreLabel> tokenize(String sentence){
+		return postProcess(tokenizer.tokenize(sentence));
+	}
+
+	/**
+	 * Applies the rules to the given tokens
+	 * @param tokens
+	 * @return
+	 */
+	public List<CoreLabel> postProcess(List<CoreLabel> tokens){
+		for(TokenSplitRule rule: rules){
+			tokens = rule.apply(tokens);
+		}
+		return tokens;
+	}
+
+	@Override
+	public boolean isThreadSafe(){
+		return tokenizer.isThreadSafe();
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.util.LazyCoreLabel;
 
 /**
  * An implementation of {@link Tokenizer} using simple regular expression<br>
@@ -20,6 +21,8 @@ public class RegexTokenizer implements Tokenizer {
 			+ "((?<=[^\\w\\p{IsL}])(?=[\\w\\p{IsL}]))"; // Previous char is non-letter, next is letter
 	
 	public Pattern pattern;
+	/** Whether to return the tokens as {@link LazyCoreLabel}s, which are faster to create but cannot be copied */
+	public boolean lazyLabels = false;
 
 	public RegexTokenizer() {
 		pattern = Pattern.compile(DEFAULT_REGEX);
@@ -44,43 +47,20 @@ public class RegexTokenizer implements Tokenizer {
 		List<CoreLabel> result = new ArrayList<CoreLabel>();
 		Matcher matcher = pattern.matcher(sentence);
 		int lastEndPos = 0;
-		String lastBetweenText = "";
+		int lastBetweenStart = 0;
 		while(matcher.find()){
 			int start = matcher.start();
 			int end = matcher.end();
 			if(start == lastEndPos && end == lastEndPos){
 				continue;
 			}
-			String wordText = sentence.substring(lastEndPos, start);
-			String betweenText = sentence.substring(start, end);
-			CoreLabel word = new CoreLabel();
-			word.setBefore(lastBetweenText);
-			word.setBeginPosition(lastEndPos);
-			word.setEndPosition(start);
-			word.setValue(wordText);
-			word.setWord(wordText);
-			word.setOriginalText(wordText);
-			word.setAfter(betweenText);
+			result.add(LazyCoreLabel.newLabel(lazyLabels, sentence, lastBetweenStart, lastEndPos, start, end));
 			lastEndPos = end;
-			lastBetweenText = betweenText;
-			result.add(word);
+			lastBetweenStart = start;
 		}
 		if(lastEndPos != sentence.length()){
-			int start = sentence.length();
 			int end = sentence.length();
-			String wordText = sentence.substring(lastEndPos, start);
-			String betweenText = sentence.substring(start, end);
-			CoreLabel word = new CoreLabel();
-			word.setBefore(lastBetweenText);
-			word.setBeginPosition(lastEndPos);
-			word.setEndPosition(start);
-			word.setValue(wordText);
-			word.setWord(wordText);
-			word.setOriginalText(wordText);
-			word.setAfter(betweenText);
-			lastEndPos = end;
-			lastBetweenText = betweenText;
-			result.add(word);
+			result.add(LazyCoreLabel.newLabel(lazyLabels, sentence, lastBetweenStart, lastEndPos, end, end));
 		}
 		return result;
 	}
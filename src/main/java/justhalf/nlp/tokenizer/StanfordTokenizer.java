@@ -22,6 +22,19 @@ public class StanfordTokenizer implements Tokenizer {
 		this(false, false);
 	}
 	
+	/**
+	 * Returns a shared tokenizer with the default settings, created on first use.<br>
+	 * Since the tokenizer is thread-safe, this can be used instead of creating a new tokenizer for each call.
+	 * @return
+	 */
+	public static StanfordTokenizer getDefault(){
+		return DefaultHolder.INSTANCE;
+	}
+	
+	private static class DefaultHolder {
+		private static final StanfordTokenizer INSTANCE = new StanfordTokenizer();
+	}
+	
 	public StanfordTokenizer(boolean normalizeParentheses, boolean unicodeQuotes){
 		factory = PTBTokenizerFactory.newCoreLabelTokenizerFactory("normalizeParentheses="+normalizeParentheses+","
 																+ "normalizeOtherBrackets="+normalizeParentheses+","
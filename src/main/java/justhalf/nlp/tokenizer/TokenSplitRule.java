@@ -0,0 +1,139 @@
+package justhalf.nlp.tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * A rule splitting the tokens matching a pattern at the first occurrence of a separator character.<br>
+ *
+ * The part before the separator stays in the original token, and the part after it becomes a new token,
+ * which is checked against the rule again, so a token can be split several times.
+ * The separator itself is kept as the whitespace between the two tokens.<br>
+ *
+ * The pattern is compiled once, and only the tokens containing the separator are matched against it.
+ * The {@link #DEFAULT} rule is checked with a character scan without using the pattern at all.
+ */
+public class TokenSplitRule {
+
+	/**
+	 * The pattern of the {@link #DEFAULT} rule: a dash followed by an uppercase letter (e.g., "U.S.-Japan"),
+	 * or exactly two dashes with an uppercase letter before the first one (e.g., "Hewlett-Packard-made")
+	 */
+	public static final String DEFAULT_REGEX = "([^-]*-[A-Z].*|[^-]*[A-Z][^-]*-[^-]+-[^-]*)";
+
+	/** The rule used to split the tokens of the ACE corpora, with {@link #DEFAULT_REGEX} and the dash */
+	public static final TokenSplitRule DEFAULT = new TokenSplitRule(DEFAULT_REGEX, '-');
+
+	public final Pattern pattern;
+	public final char separator;
+	private final boolean isDefault;
+
+	/**
+	 * Creates a rule splitting the tokens whose values match the given regex at the first separator.
+	 * @param regex
+	 * @param separator
+	 */
+	public TokenSplitRule(String regex, char separator){
+		this.pattern = Pattern.compile(regex);
+		this.separator = separator;
+		this.isDefault = regex.equals(DEFAULT_REGEX) && separator == '-';
+	}
+
+	/**
+	 * Whether a token with the given value should be split.
+	 * @param value
+	 * @return
+	 */
+	public boolean matches(String value){
+		int firstSeparator = value.indexOf(separator);
+		if(firstSeparator == -1){
+			return false;
+		}
+		if(isDefault){
+			return matchesDefault(value, firstSeparator);
+		}
+		return pattern.matcher(value).matches();
+	}
+
+	/**
+	 * Returns the tokens with the matching tokens split.
+	 * The split tokens are modified in place, and the new tokens are added after them.
+	 * @param tokens
+	 * @return
+	 */
+	public List<CoreLabel> apply(List<CoreLabel> tokens){
+		List<CoreLabel> result = new ArrayList<CoreLabel>(tokens.size());
+		for(CoreLabel token: tokens){
+			while(matches(token.value())){
+				int startIndex = token.value().indexOf(separator);
+				int startIndexOrig = token.originalText().indexOf(separator);
+				int nextTokenIndex = startIndex+1;
+				int nextTokenIndexOrig = startIndexOrig+1;
+
+				CoreLabel newToken = new CoreLabel();
+				newToken.setBeginPosition(nextTokenIndex+token.beginPosition());
+				newToken.setEndPosition(token.endPosition());
+				newToken.setAfter(token.after());
+				newToken.setBefore(token.value().substring(startIndex, nextTokenIndex));
+				newToken.setOriginalText(token.originalText().substring(nextTokenIndexOrig));
+				newToken.setWord(token.word().substring(nextTokenIndex));
+				newToken.setValue(token.value().substring(nextTokenIndex));
+				token.setEndPosition(startIndex+token.beginPosition());
+				token.setAfter(newToken.before());
+				token.setOriginalText(token.originalText().substring(0, startIndexOrig));
+				token.setWord(token.word().substring(0, startIndex));
+				token.setValue(token.value().substring(0, startIndex));
+				result.add(token);
+				token = newToken;
+			}
+			result.add(token);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks {@link #DEFAULT_REGEX} given the position of the first dash
+	 */
+	private static boolean matchesDefault(String value, int firstDash){
+		int length = value.length();
+		// [^-]*-[A-Z].* where the "." does not match line terminators
+		if(firstDash+1 < length && isUppercase(value.charAt(firstDash+1))){
+			boolean hasLineTerminator = false;
+			for(int i=firstDash+2; i<length; i++){
+				if(isLineTerminator(value.charAt(i))){
+					hasLineTerminator = true;
+					break;
+				}
+			}
+			if(!hasLineTerminator){
+				return true;
+			}
+		}
+		// [^-]*[A-Z][^-]*-[^-]+-[^-]*
+		int secondDash = value.indexOf('-', firstDash+1);
+		if(secondDash == -1 || secondDash == firstDash+1 || value.indexOf('-', secondDash+1) != -1){
+			return false;
+		}
+		for(int i=0; i<firstDash; i++){
+			if(isUppercase(value.charAt(i))){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isUppercase(char c){
+		return c >= 'A' && c <= 'Z';
+	}
+
+	/**
+	 * The characters not matched by "." in a {@link Pattern} without flags
+	 */
+	private static boolean isLineTerminator(char c){
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+}
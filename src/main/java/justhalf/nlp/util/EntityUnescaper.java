@@ -0,0 +1,174 @@
+package justhalf.nlp.util;
+
+/**
+ * Unescapes the XML entities &amp;amp;, &amp;lt;, and &amp;gt; (case-insensitively), and optionally the numeric
+ * character references (e.g., &amp;#38; and &amp;#x26;), in a single pass without regular expressions.<br>
+ *
+ * This gives the same result as replacing &amp;amp;, then &amp;lt;, then &amp;gt; one after another, so an
+ * escaped &amp;lt; or &amp;gt; (i.e., &amp;amp;lt; or &amp;amp;gt;) is also unescaped into &lt; or &gt;.
+ * The input string itself is returned when there is nothing to unescape.<br>
+ *
+ * An offset map can be requested, mapping each position in the input to the corresponding position in the result,
+ * so that spans in the escaped text can be converted into spans in the unescaped text.
+ */
+public class EntityUnescaper {
+
+	private EntityUnescaper(){}
+
+	/**
+	 * Unescapes &amp;amp;, &amp;lt;, and &amp;gt;
+	 * @param text
+	 * @return
+	 */
+	public static String unescape(String text){
+		return unescape(text, false, null);
+	}
+
+	/**
+	 * Unescapes &amp;amp;, &amp;lt;, and &amp;gt;, and the numeric character references if unescapeNumeric is true
+	 * @param text
+	 * @param unescapeNumeric
+	 * @return
+	 */
+	public static String unescape(String text, boolean unescapeNumeric){
+		return unescape(text, unescapeNumeric, null);
+	}
+
+	/**
+	 * Unescapes &amp;amp;, &amp;lt;, and &amp;gt;, and the numeric character references if unescapeNumeric is true.<br>
+	 * If offsetMap is not null, it should have length at least text.length()+1, and offsetMap[i] will be set to the
+	 * position in the result corresponding to the position i in the input. The positions inside an entity are mapped
+	 * to the position of the unescaped character.
+	 * @param text
+	 * @param unescapeNumeric
+	 * @param offsetMap
+	 * @return
+	 */
+	public static String unescape(String text, boolean unescapeNumeric, int[] offsetMap){
+		int firstAmp = text.indexOf('&');
+		if(firstAmp == -1){
+			if(offsetMap != null){
+				for(int i=0; i<=text.length(); i++){
+					offsetMap[i] = i;
+				}
+			}
+			return text;
+		}
+		StringBuilder result = null;
+		int length = text.length();
+		int copied = 0; // The position in the input up to which the characters have been copied to the result
+		for(int i=firstAmp; i<length; i++){
+			if(text.charAt(i) != '&'){
+				continue;
+			}
+			int end = -1;
+			int codePoint = -1;
+			if(matches(text, i+1, "amp;")){
+				end = i+5;
+				codePoint = '&';
+				// The result of &amp; can form &lt; or &gt; with the following text
+				if(matches(text, end, "lt;")){
+					end += 3;
+					codePoint = '<';
+				} else if(matches(text, end, "gt;")){
+					end += 3;
+					codePoint = '>';
+				}
+			} else if(matches(text, i+1, "lt;")){
+				end = i+4;
+				codePoint = '<';
+			} else if(matches(text, i+1, "gt;")){
+				end = i+4;
+				codePoint = '>';
+			} else if(unescapeNumeric && i+1 < length && text.charAt(i+1) == '#'){
+				end = findNumericReferenceEnd(text, i+2);
+				if(end != -1){
+					codePoint = getNumericReferenceValue(text, i+2, end);
+				}
+			}
+			if(end == -1){
+				continue;
+			}
+			if(result == null){
+				result = new StringBuilder(length);
+			}
+			if(offsetMap != null){
+				for(int j=copied; j<i; j++){
+					offsetMap[j] = result.length()+j-copied;
+				}
+			}
+			result.append(text, copied, i);
+			if(offsetMap != null){
+				for(int j=i; j<end; j++){
+					offsetMap[j] = result.length();
+				}
+			}
+			result.appendCodePoint(codePoint);
+			copied = end;
+			i = end-1;
+		}
+		if(result == null){
+			if(offsetMap != null){
+				for(int i=0; i<=length; i++){
+					offsetMap[i] = i;
+				}
+			}
+			return text;
+		}
+		if(offsetMap != null){
+			for(int j=copied; j<=length; j++){
+				offsetMap[j] = result.length()+j-copied;
+			}
+		}
+		result.append(text, copied, length);
+		return result.toString();
+	}
+
+	/**
+	 * Whether the text at the given position matches the given lowercase entity name, ignoring ASCII case
+	 */
+	private static boolean matches(String text, int start, String name){
+		if(start+name.length() > text.length()){
+			return false;
+		}
+		for(int i=0; i<name.length(); i++){
+			char c = text.charAt(start+i);
+			char expected = name.charAt(i);
+			if(c != expected && !(expected >= 'a' && expected <= 'z' && c == expected-'a'+'A')){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the position after the ";" of the numeric character reference whose digits (possibly preceded by
+	 * "x" for hexadecimal) start at the given position, or -1 if it is not a valid reference.
+	 */
+	private static int findNumericReferenceEnd(String text, int start){
+		int length = text.length();
+		int pos = start;
+		boolean isHex = pos < length && (text.charAt(pos) == 'x' || text.charAt(pos) == 'X');
+		if(isHex){
+			pos++;
+		}
+		int digitsStart = pos;
+		while(pos < length && Character.digit(text.charAt(pos), isHex ? 16 : 10) != -1 && text.charAt(pos) < 128){
+			pos++;
+		}
+		// At most 7 digits, to stay within the range of valid code points
+		if(pos == digitsStart || pos-digitsStart > 7 || pos >= length || text.charAt(pos) != ';'){
+			return -1;
+		}
+		if(!Character.isValidCodePoint(getNumericReferenceValue(text, start, pos+1))){
+			return -1;
+		}
+		return pos+1;
+	}
+
+	private static int getNumericReferenceValue(String text, int start, int end){
+		boolean isHex = text.charAt(start) == 'x' || text.charAt(start) == 'X';
+		return Integer.parseInt(text.substring(isHex ? start+1 : start, end-1), isHex ? 16 : 10);
+	}
+
+}
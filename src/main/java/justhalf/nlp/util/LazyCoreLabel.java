@@ -0,0 +1,177 @@
+package justhalf.nlp.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotations.AfterAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.BeforeAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.OriginalTextAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.ValueAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.TypesafeMap;
+
+/**
+ * A {@link CoreLabel} whose texts are computed on demand from a shared source string.<br>
+ *
+ * Tokenizers and sentence splitters produce one {@link CoreLabel} per unit, each normally storing its own copy
+ * of the word, value, original text, and the texts before and after it, so the input is copied several times.
+ * This class stores only the source string and the offsets instead, and computes the following annotations
+ * when they are requested:
+ * <ul>
+ * <li>{@link TextAnnotation}, {@link ValueAnnotation}, and {@link OriginalTextAnnotation}:
+ * the text from {@link #textBegin} to {@link #textEnd}</li>
+ * <li>{@link BeforeAnnotation}: the text from {@link #beforeBegin} to {@link #textBegin}</li>
+ * <li>{@link AfterAnnotation}: the text from {@link #textEnd} to {@link #afterEnd}</li>
+ * </ul>
+ * Setting any of these annotations stores the given value, which is then returned instead.
+ * Other annotations, including {@link CoreLabel#beginPosition()} and {@link CoreLabel#endPosition()},
+ * are stored as usual, so the positions can be shifted without affecting the texts.<br>
+ *
+ * Note that the texts are not stored in the underlying map, so {@link #equals(Object)} and {@link #hashCode()}
+ * only consider the stored annotations, and a copy made with {@link CoreLabel#CoreLabel(CoreLabel)} does not
+ * have the texts. Use {@link #materialize()} to get a regular {@link CoreLabel}.<br>
+ *
+ * So the tokenizers and sentence splitters return these only when asked to (e.g., {@link justhalf.nlp.tokenizer.RegexTokenizer#lazyLabels}),
+ * through {@link #newLabel(boolean, String, int, int, int, int)}, and return regular {@link CoreLabel}s by default.
+ */
+public class LazyCoreLabel extends CoreLabel {
+
+	private static final long serialVersionUID = 4372865349734578392L;
+
+	private static final Set<Class<?>> LAZY_KEYS = Collections.unmodifiableSet(new HashSet<Class<?>>(Arrays.asList(
+			TextAnnotation.class, ValueAnnotation.class, OriginalTextAnnotation.class,
+			BeforeAnnotation.class, AfterAnnotation.class)));
+
+	public final String source;
+	public final int beforeBegin;
+	public final int textBegin;
+	public final int textEnd;
+	public final int afterEnd;
+
+	/**
+	 * Create a label for the text between textBegin and textEnd in the source string,
+	 * with the begin and end positions set to textBegin and textEnd.
+	 * @param source
+	 * 		The source string
+	 * @param beforeBegin
+	 * 		The beginning of the text before this label
+	 * @param textBegin
+	 * 		The beginning of the text of this label (inclusive)
+	 * @param textEnd
+	 * 		The end of the text of this label (exclusive)
+	 * @param afterEnd
+	 * 		The end of the text after this label
+	 */
+	public LazyCoreLabel(String source, int beforeBegin, int textBegin, int textEnd, int afterEnd){
+		super(2);
+		this.source = source;
+		this.beforeBegin = beforeBegin;
+		this.textBegin = textBegin;
+		this.textEnd = textEnd;
+		this.afterEnd = afterEnd;
+		setBeginPosition(textBegin);
+		setEndPosition(textEnd);
+	}
+
+	/**
+	 * Returns a {@link LazyCoreLabel} if lazy is true, or otherwise a regular {@link CoreLabel} with the same
+	 * annotations, storing the texts copied from the source string.
+	 * @param lazy
+	 * 		Whether to return a {@link LazyCoreLabel}
+	 * @see #LazyCoreLabel(String, int, int, int, int)
+	 */
+	public static CoreLabel newLabel(boolean lazy, String source, int beforeBegin, int textBegin, int textEnd, int afterEnd){
+		if(lazy){
+			return new LazyCoreLabel(source, beforeBegin, textBegin, textEnd, afterEnd);
+		}
+		String text = source.substring(textBegin, textEnd);
+		CoreLabel label = new CoreLabel();
+		label.setBefore(source.substring(beforeBegin, textBegin));
+		label.setBeginPosition(textBegin);
+		label.setEndPosition(textEnd);
+		label.setValue(text);
+		label.setWord(text);
+		label.setOriginalText(text);
+		label.setAfter(source.substring(textEnd, afterEnd));
+		return label;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <VALUE> VALUE get(Class<? extends TypesafeMap.Key<VALUE>> key) {
+		if(LAZY_KEYS.contains(key) && !super.containsKey(key)){
+			return (VALUE)computeText(key);
+		}
+		return super.get(key);
+	}
+
+	@Override
+	public <VALUE> boolean has(Class<? extends TypesafeMap.Key<VALUE>> key) {
+		return LAZY_KEYS.contains(key) || super.has(key);
+	}
+
+	@Override
+	public <VALUE> boolean containsKey(Class<? extends TypesafeMap.Key<VALUE>> key) {
+		return LAZY_KEYS.contains(key) || super.containsKey(key);
+	}
+
+	@Override
+	public Set<Class<?>> keySet() {
+		Set<Class<?>> result = new LinkedHashSet<Class<?>>(super.keySet());
+		result.addAll(LAZY_KEYS);
+		return result;
+	}
+
+	@Override
+	public Set<Class<?>> keySetNotNull() {
+		Set<Class<?>> result = new LinkedHashSet<Class<?>>(super.keySetNotNull());
+		result.addAll(LAZY_KEYS);
+		return result;
+	}
+
+	@Override
+	public int size() {
+		int result = super.size();
+		for(Class<?> key: LAZY_KEYS){
+			if(!super.containsKey(castKey(key))){
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a regular {@link CoreLabel} with all the annotations of this label, including the computed texts,
+	 * which does not keep a reference to the source string.
+	 * @return
+	 * 		A regular {@link CoreLabel} with the same annotations
+	 */
+	public CoreLabel materialize(){
+		CoreLabel result = new CoreLabel(size());
+		for(Class<?> key: keySet()){
+			Class<? extends TypesafeMap.Key<Object>> typedKey = castKey(key);
+			result.set(typedKey, get(typedKey));
+		}
+		return result;
+	}
+
+	private String computeText(Class<?> key){
+		if(key == BeforeAnnotation.class){
+			return source.substring(beforeBegin, textBegin);
+		} else if(key == AfterAnnotation.class){
+			return source.substring(textEnd, afterEnd);
+		} else {
+			return source.substring(textBegin, textEnd);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends TypesafeMap.Key<Object>> castKey(Class<?> key){
+		return (Class<? extends TypesafeMap.Key<Object>>)key;
+	}
+
+}
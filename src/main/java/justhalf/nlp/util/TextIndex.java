@@ -0,0 +1,68 @@
+package justhalf.nlp.util;
+
+import java.util.Arrays;
+
+/**
+ * An index of the positions of the character n-grams in a text, to find the last occurrence of a string
+ * at or before a given position, giving the same result as {@link String#lastIndexOf(String, int)}.<br>
+ *
+ * The candidate occurrences are the positions of the first n-gram of the string, which are checked starting from
+ * the given position backwards. So the search time does not depend on how far the occurrence is from the
+ * given position, or whether there is any occurrence at all.
+ * Strings shorter than the n-gram are searched with {@link String#lastIndexOf(String, int)}.
+ */
+public class TextIndex {
+
+	private static final int N = 4;
+
+	private final String text;
+	/** The hash of the n-gram at each position in the upper 32 bits and the position in the lower 32 bits, sorted */
+	private final long[] entries;
+
+	public TextIndex(String text){
+		this.text = text;
+		this.entries = new long[Math.max(0, text.length()-N+1)];
+		for(int i=0; i<entries.length; i++){
+			entries[i] = getEntry(text, i, i);
+		}
+		Arrays.sort(entries);
+	}
+
+	/**
+	 * Returns the same value as text.lastIndexOf(str, fromIndex)
+	 * @param str
+	 * @param fromIndex
+	 * @return
+	 */
+	public int lastIndexOf(String str, int fromIndex){
+		if(str.length() < N || fromIndex < 0){
+			return text.lastIndexOf(str, fromIndex);
+		}
+		int maxStart = Math.min(fromIndex, text.length()-str.length());
+		if(maxStart < 0){
+			return -1;
+		}
+		long hash = getEntry(str, 0, 0) >> 32;
+		int idx = Arrays.binarySearch(entries, getEntry(str, 0, maxStart));
+		if(idx < 0){
+			// The insertion point is the first entry after maxStart
+			idx = -idx-2;
+		}
+		for(int i=idx; i>=0 && entries[i] >> 32 == hash; i--){
+			int pos = (int)entries[i];
+			if(text.startsWith(str, pos)){
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	private static long getEntry(String text, int start, int pos){
+		int hash = 0;
+		for(int i=start; i<start+N; i++){
+			hash = 31*hash + text.charAt(i);
+		}
+		return ((long)hash << 32) | pos;
+	}
+
+}
@@ -0,0 +1,121 @@
+package justhalf.nlp.util;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * An index over the character offsets of a list of tokens, to find the tokens at given offsets.<br>
+ *
+ * The begin and end positions of the tokens are copied when the index is created, so the index does not reflect
+ * later changes to the positions. When both the begin and the end positions are non-decreasing, which is the case
+ * for the output of the tokenizers and sentence splitters, each lookup is a binary search in O(log n).
+ * Otherwise each lookup checks all tokens, giving the same results.
+ */
+public class TokenOffsetIndex {
+
+	private final int[] begins;
+	private final int[] ends;
+	private final boolean isSorted;
+
+	public TokenOffsetIndex(List<? extends CoreLabel> tokens){
+		this.begins = new int[tokens.size()];
+		this.ends = new int[tokens.size()];
+		boolean isSorted = true;
+		int i = 0;
+		for(CoreLabel token: tokens){
+			begins[i] = token.beginPosition();
+			ends[i] = token.endPosition();
+			if(i > 0 && (begins[i] < begins[i-1] || ends[i] < ends[i-1])){
+				isSorted = false;
+			}
+			i++;
+		}
+		this.isSorted = isSorted;
+	}
+
+	/**
+	 * Returns the number of tokens in this index
+	 * @return
+	 */
+	public int size(){
+		return begins.length;
+	}
+
+	/**
+	 * Returns the index of the first token containing the character at the given offset,
+	 * i.e., with begin &lt;= offset &lt; end, or -1 if there is none.
+	 * @param offset
+	 * @return
+	 */
+	public int findTokenStartingSpan(int offset){
+		if(!isSorted){
+			for(int i=0; i<begins.length; i++){
+				if(begins[i] <= offset && ends[i] > offset){
+					return i;
+				}
+			}
+			return -1;
+		}
+		// The tokens with begin <= offset are [0, last], and those with end > offset are [first, size)
+		int last = lastAtMost(begins, offset);
+		int first = firstAbove(ends, offset);
+		return first <= last ? first : -1;
+	}
+
+	/**
+	 * Returns the index of the last token containing the character before the given offset,
+	 * i.e., with begin &lt; offset &lt;= end, or -1 if there is none.
+	 * @param offset
+	 * @return
+	 */
+	public int findTokenEndingSpan(int offset){
+		if(!isSorted){
+			for(int i=begins.length-1; i>=0; i--){
+				if(begins[i] < offset && ends[i] >= offset){
+					return i;
+				}
+			}
+			return -1;
+		}
+		// The tokens with begin < offset are [0, last], and those with end >= offset are [first, size)
+		int last = lastAtMost(begins, offset-1);
+		int first = firstAbove(ends, offset-1);
+		return first <= last ? last : -1;
+	}
+
+	/**
+	 * Returns the index of the last value which is at most the given value, or -1 if there is none
+	 */
+	private static int lastAtMost(int[] values, int value){
+		int low = 0;
+		int high = values.length-1;
+		while(low <= high){
+			int mid = (low+high) >>> 1;
+			if(values[mid] <= value){
+				low = mid+1;
+			} else {
+				high = mid-1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Returns the index of the first value which is more than the given value, or the length if there is none
+	 */
+	private static int firstAbove(int[] values, int value){
+		int low = 0;
+		int high = values.length-1;
+		while(low <= high){
+			int mid = (low+high) >>> 1;
+			if(values[mid] > value){
+				high = mid-1;
+			} else {
+				low = mid+1;
+			}
+		}
+		return low;
+	}
+
+}
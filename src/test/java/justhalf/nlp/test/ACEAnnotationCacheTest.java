@@ -0,0 +1,183 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.postagger.POSTagger;
+import justhalf.nlp.reader.acereader.ACEAnnotationCache;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
+import justhalf.nlp.sentencesplitter.SentenceSplitter;
+import justhalf.nlp.tokenizer.RegexTokenizer;
+import justhalf.nlp.tokenizer.Tokenizer;
+
+public class ACEAnnotationCacheTest extends TestHelper {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testAnnotationCacheReusesUnchangedStages() throws Exception{
+		String text = "John runs fast. Mary-Ann walks.\n\nThe end.";
+		File cacheFile = new File(tempFolder.getRoot(), "annotations.bin");
+		AtomicInteger tokenizeCalls = new AtomicInteger();
+		AtomicInteger tagCalls = new AtomicInteger();
+		Tokenizer tokenizer = new RegexTokenizer(){
+			@Override
+			public List<CoreLabel> tokenize(String sentence){
+				tokenizeCalls.incrementAndGet();
+				return super.tokenize(sentence);
+			}
+		};
+		POSTagger posTagger = new POSTagger(){
+			@Override
+			public boolean isThreadSafe(){
+				return true;
+			}
+			@Override
+			public List<String> tag(String sentence){
+				throw new UnsupportedOperationException();
+			}
+			@Override
+			public List<String> tag(List<String> sentence){
+				throw new UnsupportedOperationException();
+			}
+			@Override
+			public List<CoreLabel> tagCoreLabels(List<CoreLabel> sentence){
+				tagCalls.incrementAndGet();
+				for(CoreLabel token: sentence){
+					token.setTag(token.word().length() > 3 ? "LONG" : "SHORT");
+				}
+				return sentence;
+			}
+		};
+		RuleBasedSentenceSplitter splitter = new RuleBasedSentenceSplitter();
+		List<CoreLabel> expectedSentences = splitter.splitWithTokens(text, tokenizer);
+		tokenizeCalls.set(0);
+
+		ACEAnnotationCache cache = new ACEAnnotationCache(cacheFile);
+		List<CoreLabel> sentences = cache.wrap(splitter).splitWithTokens(text, cache.wrap(tokenizer));
+		List<CoreLabel> tokens = cache.wrap(posTagger).tagCoreLabels(cache.wrap(tokenizer).tokenize(text));
+		assertEquals(sentences.size()+1, tokenizeCalls.get());
+		assertEquals(1, tagCalls.get());
+		cache.save();
+
+		// A new cache from the same file gives the same results without calling the components
+		cache = new ACEAnnotationCache(cacheFile);
+		List<CoreLabel> cachedSentences = cache.wrap(splitter).splitWithTokens(text, cache.wrap(tokenizer));
+		assertSameLabels(expectedSentences, cachedSentences);
+		for(int i=0; i<expectedSentences.size(); i++){
+			assertSameLabels(expectedSentences.get(i).get(TokensAnnotation.class),
+					cachedSentences.get(i).get(TokensAnnotation.class));
+		}
+		List<CoreLabel> cachedTokens = cache.wrap(posTagger).tagCoreLabels(cache.wrap(tokenizer).tokenize(text));
+		assertSameLabels(tokens, cachedTokens);
+		for(int i=0; i<tokens.size(); i++){
+			assertEquals(tokens.get(i).tag(), cachedTokens.get(i).tag());
+		}
+		assertEquals(sentences.size()+1, tokenizeCalls.get());
+		assertEquals(1, tagCalls.get());
+		assertEquals(1, cache.hits(ACEAnnotationCache.SPLIT));
+		assertEquals(0, cache.misses(ACEAnnotationCache.TOKENIZE));
+
+		// A different tagger identity only runs the tagger again
+		cache.wrap(posTagger, "other").tagCoreLabels(cache.wrap(tokenizer).tokenize(text));
+		assertEquals(sentences.size()+1, tokenizeCalls.get());
+		assertEquals(2, tagCalls.get());
+	}
+
+	@Test
+	public void testAnnotationCacheReturnsCopies() throws Exception{
+		String text = "John runs fast. Mary walks.";
+		ACEAnnotationCache cache = new ACEAnnotationCache(new File(tempFolder.getRoot(), "annotations.bin"));
+		Tokenizer tokenizer = cache.wrap(new RegexTokenizer());
+		SentenceSplitter splitter = cache.wrap(new RuleBasedSentenceSplitter());
+
+		// Modifying the results of a miss does not change the results of a later hit
+		List<CoreLabel> computedTokens = tokenizer.tokenize(text);
+		List<CoreLabel> expectedTokens = new RegexTokenizer().tokenize(text);
+		computedTokens.get(0).setWord("changed");
+		List<CoreLabel> cachedTokens = tokenizer.tokenize(text);
+		assertEquals(1, cache.hits(ACEAnnotationCache.TOKENIZE));
+		assertSameLabels(expectedTokens, cachedTokens);
+		assertNotSame(cachedTokens.get(0), tokenizer.tokenize(text).get(0));
+
+		List<CoreLabel> computedSentences = splitter.split(text);
+		computedSentences.get(0).setValue("changed");
+		assertEquals(new RuleBasedSentenceSplitter().split(text).get(0).value(), splitter.split(text).get(0).value());
+		assertEquals(1, cache.hits(ACEAnnotationCache.SPLIT));
+	}
+
+	@Test
+	public void testAnnotationCacheEvictsLeastRecentlyUsed() throws Exception{
+		File cacheFile = new File(tempFolder.getRoot(), "annotations.bin");
+		Tokenizer regexTokenizer = new RegexTokenizer();
+		// Long sentences, so that the size of the file is mostly the size of the results
+		String[] sentences = new String[3];
+		for(int i=0; i<sentences.length; i++){
+			StringBuilder sentence = new StringBuilder("sentence"+i);
+			for(int j=0; j<50; j++){
+				sentence.append(" word"+j);
+			}
+			sentences[i] = sentence.toString();
+		}
+		ACEAnnotationCache unbounded = new ACEAnnotationCache(cacheFile, Long.MAX_VALUE);
+		unbounded.tokenize(sentences[0], regexTokenizer, "regex");
+		unbounded.save();
+		long entrySize = cacheFile.length();
+
+		// Room for two results, so the third one removes the least recently used one
+		ACEAnnotationCache cache = new ACEAnnotationCache(new File(tempFolder.getRoot(), "bounded.bin"), 2*entrySize);
+		cache.tokenize(sentences[0], regexTokenizer, "regex");
+		cache.tokenize(sentences[1], regexTokenizer, "regex");
+		cache.tokenize(sentences[0], regexTokenizer, "regex");
+		cache.tokenize(sentences[2], regexTokenizer, "regex");
+		assertEquals(2, cache.size());
+		cache.tokenize(sentences[0], regexTokenizer, "regex");
+		cache.tokenize(sentences[2], regexTokenizer, "regex");
+		assertEquals(3, cache.hits(ACEAnnotationCache.TOKENIZE));
+		cache.tokenize(sentences[1], regexTokenizer, "regex");
+		assertEquals(4, cache.misses(ACEAnnotationCache.TOKENIZE));
+
+		// A single result larger than the limit is still kept
+		ACEAnnotationCache tiny = new ACEAnnotationCache(new File(tempFolder.getRoot(), "tiny.bin"), 1);
+		tiny.tokenize(sentences[0], regexTokenizer, "regex");
+		assertEquals(1, tiny.size());
+	}
+
+	@Test
+	public void testEmptyAnnotationCacheFile() throws Exception{
+		// An empty file, e.g., created beforehand by another tool, is an empty cache
+		File cacheFile = tempFolder.newFile("empty.bin");
+		ACEAnnotationCache cache = new ACEAnnotationCache(cacheFile);
+		assertEquals(0, cache.size());
+		cache.tokenize("John runs fast.", new RegexTokenizer(), "regex");
+		cache.save();
+		assertEquals(1, new ACEAnnotationCache(cacheFile).size());
+	}
+
+	private static void assertSameLabels(List<CoreLabel> expected, List<CoreLabel> actual){
+		assertEquals(expected.size(), actual.size());
+		for(int i=0; i<expected.size(); i++){
+			CoreLabel expectedLabel = expected.get(i);
+			CoreLabel actualLabel = actual.get(i);
+			assertEquals(expectedLabel.beginPosition(), actualLabel.beginPosition());
+			assertEquals(expectedLabel.endPosition(), actualLabel.endPosition());
+			assertEquals(expectedLabel.value(), actualLabel.value());
+			assertEquals(expectedLabel.word(), actualLabel.word());
+			assertEquals(expectedLabel.originalText(), actualLabel.originalText());
+			assertEquals(expectedLabel.before(), actualLabel.before());
+			assertEquals(expectedLabel.after(), actualLabel.after());
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import justhalf.nlp.reader.acereader.ACEArchiveReader;
+import justhalf.nlp.reader.acereader.ACEDocument;
+
+@RunWith(JUnitParamsRunner.class)
+public class ACEArchiveReaderTest extends ACETestHelper {
+
+	@Test
+	@Parameters({"corpus.zip", "corpus.tgz", "corpus.tar"})
+	public void testArchiveEqualsParsedDocuments(String archiveName) throws Exception{
+		String[] names = new String[]{"SAMPLE2.sgm", "SAMPLE1.apf.xml", "SAMPLE1.sgm", "SAMPLE2.apf.xml"};
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		entries.put("corpus/README", "Not a document".getBytes(StandardCharsets.UTF_8));
+		for(String name: names){
+			entries.put("corpus/data/English/nw/timex2norm/"+name, readResource("ace/ace2005/nw/timex2norm/"+name));
+		}
+		// Not in the requested domains, and a document without its annotation
+		entries.put("corpus/data/English/bn/timex2norm/SAMPLE1.sgm", readResource("ace/ace2005/nw/timex2norm/SAMPLE1.sgm"));
+		entries.put("corpus/data/English/nw/timex2norm/SAMPLE3.sgm", readResource("ace/ace2005/nw/timex2norm/SAMPLE1.sgm"));
+		File archive = new File(tempFolder.getRoot(), archiveName);
+		if(archiveName.endsWith(".zip")){
+			writeZip(archive, entries);
+		} else {
+			writeTar(archive, entries, archiveName.endsWith(".tgz"));
+		}
+
+		assertTrue(ACEArchiveReader.isArchive(archive.getPath()));
+		List<ACEDocument> docs = ACEArchiveReader.readDocuments(archive, Arrays.asList("nw"), "timex2norm", false, false, 2);
+		assertEquals(2, docs.size());
+		for(int i=0; i<docs.size(); i++){
+			ACEDocument expected = new ACEDocument(SAMPLE_DOCUMENTS[i]);
+			assertSameStructure(expected, docs.get(i), "archive["+i+"]");
+		}
+	}
+
+	@Test
+	public void testArchiveRootSelectsLanguage() throws Exception{
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		String[] languages = new String[]{"English", "Arabic"};
+		for(int i=0; i<languages.length; i++){
+			String prefix = "corpus/data/"+languages[i]+"/nw/timex2norm/";
+			String name = new File(SAMPLE_DOCUMENTS[i]).getName().replace(".sgm", "");
+			entries.put(prefix+name+".sgm", readResource(SAMPLE_DOCUMENTS[i]));
+			entries.put(prefix+name+".apf.xml", readResource(SAMPLE_DOCUMENTS[i].replace(".sgm", ".apf.xml")));
+		}
+		File archive = new File(tempFolder.getRoot(), "corpus.tgz");
+		writeTar(archive, entries, true);
+
+		// The domain directories of both languages cannot be read as one corpus
+		try{
+			ACEArchiveReader.readDocuments(archive, Arrays.asList("nw"), "timex2norm", false, false, 2);
+			fail("The domain directories in two languages should not be merged");
+		} catch (IOException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("corpus/data/Arabic"));
+		}
+
+		String path = archive.getPath()+ACEArchiveReader.ROOT_SEPARATOR+"corpus/data/English/";
+		assertTrue(ACEArchiveReader.isArchive(path));
+		assertEquals(archive.getPath(), ACEArchiveReader.getArchivePath(path));
+		assertEquals("corpus/data/English", ACEArchiveReader.getRoot(path));
+		assertNull(ACEArchiveReader.getRoot(archive.getPath()));
+		for(int i=0; i<languages.length; i++){
+			List<ACEDocument> docs = ACEArchiveReader.readDocuments(archive, "corpus/data/"+languages[i],
+					Arrays.asList("nw"), "timex2norm", false, false, 2);
+			assertEquals(1, docs.size());
+			assertSameStructure(new ACEDocument(SAMPLE_DOCUMENTS[i]), docs.get(0), languages[i]);
+		}
+		// The domain directories must be directly inside the root
+		assertEquals(0, ACEArchiveReader.readDocuments(archive, "corpus/data", Arrays.asList("nw"), "timex2norm",
+				false, false, 2).size());
+	}
+
+	@Test
+	public void testTruncatedArchiveFails() throws Exception{
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		for(String sgmFilename: SAMPLE_DOCUMENTS){
+			String prefix = "corpus/nw/timex2norm/"+new File(sgmFilename).getName().replace(".sgm", "");
+			entries.put(prefix+".sgm", readResource(sgmFilename));
+			entries.put(prefix+".apf.xml", readResource(sgmFilename.replace(".sgm", ".apf.xml")));
+		}
+		File archive = new File(tempFolder.getRoot(), "corpus.tgz");
+		writeTar(archive, entries, true);
+		byte[] content = Files.readAllBytes(archive.toPath());
+		Files.write(archive.toPath(), Arrays.copyOf(content, content.length/2));
+		try{
+			ACEArchiveReader.readDocuments(archive, Arrays.asList("nw"), "timex2norm", false, false, 2);
+			fail("A truncated archive should not be read as a partial corpus");
+		} catch (IOException e){
+			// Expected
+		}
+	}
+
+	private static void writeZip(File file, Map<String, byte[]> entries) throws IOException{
+		try(ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))){
+			for(Map.Entry<String, byte[]> entry: entries.entrySet()){
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		}
+	}
+
+	/**
+	 * Writes the entries in the ustar format, with a GNU long name entry before the paths longer than 100 bytes
+	 */
+	private static void writeTar(File file, Map<String, byte[]> entries, boolean gzip) throws IOException{
+		try(OutputStream out = gzip ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)){
+			for(Map.Entry<String, byte[]> entry: entries.entrySet()){
+				byte[] path = ("./"+entry.getKey()).getBytes(StandardCharsets.UTF_8);
+				if(path.length > 100){
+					writeTarEntry(out, "././@LongLink".getBytes(StandardCharsets.UTF_8), 'L', path);
+				}
+				writeTarEntry(out, path, '0', entry.getValue());
+			}
+			out.write(new byte[1024]);
+		}
+	}
+
+	private static void writeTarEntry(OutputStream out, byte[] path, char type, byte[] content) throws IOException{
+		byte[] header = new byte[512];
+		System.arraycopy(path, 0, header, 0, Math.min(100, path.length));
+		System.arraycopy(String.format("%07o\0", 0644).getBytes(StandardCharsets.US_ASCII), 0, header, 100, 8);
+		System.arraycopy(String.format("%011o\0", content.length).getBytes(StandardCharsets.US_ASCII), 0, header, 124, 12);
+		header[156] = (byte)type;
+		System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+		Arrays.fill(header, 148, 156, (byte)' ');
+		int checksum = 0;
+		for(byte b: header){
+			checksum += b & 0xff;
+		}
+		System.arraycopy(String.format("%06o\0 ", checksum).getBytes(StandardCharsets.US_ASCII), 0, header, 148, 8);
+		out.write(header);
+		out.write(content);
+		out.write(new byte[(512 - content.length % 512) % 512]);
+	}
+
+}
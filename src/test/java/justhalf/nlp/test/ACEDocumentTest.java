@@ -0,0 +1,218 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import justhalf.nlp.reader.acereader.ACECorpusStore;
+import justhalf.nlp.reader.acereader.ACEDocument;
+import justhalf.nlp.reader.acereader.ACEDocumentCache;
+import justhalf.nlp.reader.acereader.ACEEntityMention;
+import justhalf.nlp.reader.acereader.ACEReader;
+import justhalf.nlp.reader.acereader.ACERelationMention;
+import justhalf.nlp.reader.acereader.ACESentence;
+import justhalf.nlp.reader.acereader.HashDataSplit;
+import justhalf.nlp.reader.acereader.Span;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
+
+@RunWith(JUnitParamsRunner.class)
+public class ACEDocumentTest extends ACETestHelper {
+
+	Object[] paramsForDocuments(){
+		Object[] result = new Object[2*SAMPLE_DOCUMENTS.length];
+		for(int i=0; i<SAMPLE_DOCUMENTS.length; i++){
+			result[2*i] = new Object[]{SAMPLE_DOCUMENTS[i], false};
+			result[2*i+1] = new Object[]{SAMPLE_DOCUMENTS[i], true};
+		}
+		return result;
+	}
+
+	@Test
+	@Parameters(method="paramsForDocuments")
+	public void testStreamingParserEqualsDOMParser(String sgmFilename, boolean excludeMetadata) throws Exception{
+		ACEDocument domDoc = new ACEDocument(sgmFilename, excludeMetadata, false);
+		ACEDocument streamingDoc = new ACEDocument(sgmFilename, excludeMetadata, true);
+		assertFalse(domDoc.entityMentions.isEmpty());
+		assertFalse(domDoc.relationMentions.isEmpty());
+		assertSameStructure(domDoc, streamingDoc, "doc");
+	}
+
+	@Test
+	@Parameters(method="paramsForDocuments")
+	public void testCachedDocumentEqualsParsedDocument(String sgmFilename, boolean excludeMetadata) throws Exception{
+		ACEDocument doc = new ACEDocument(sgmFilename, excludeMetadata);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ACEDocumentCache.writeDocument(doc, new DataOutputStream(bytes));
+		ACEDocument cachedDoc = ACEDocumentCache.readDocument(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertSameStructure(doc, cachedDoc, "doc");
+	}
+
+	@Test
+	public void testCacheIsInvalidatedOnChange() throws Exception{
+		File sgmFile = copyToTempFolder(SAMPLE_DOCUMENTS[0]);
+		File apfFile = copyToTempFolder(SAMPLE_DOCUMENTS[0].replace(".sgm", ".apf.xml"));
+		File cacheFile = new File(tempFolder.getRoot(), "documents.cache");
+
+		ACEDocumentCache cache = new ACEDocumentCache(cacheFile);
+		assertNull(cache.get(sgmFile, false));
+		ACEDocument doc = new ACEDocument(sgmFile.getPath(), false);
+		cache.put(sgmFile, false, doc);
+		cache.save();
+
+		// The entries are keyed by whether the metadata is excluded, and survive reopening the cache file
+		cache = new ACEDocumentCache(cacheFile);
+		assertEquals(1, cache.size());
+		assertNull(cache.get(sgmFile, true));
+		assertSameStructure(doc, cache.get(sgmFile, false), "doc");
+
+		// Touching the file without changing the content keeps the entry
+		assertTrue(apfFile.setLastModified(apfFile.lastModified()+10000));
+		assertNotNull(cache.get(sgmFile, false));
+
+		// Changing the content of the same length invalidates the entry
+		byte[] apfBytes = Files.readAllBytes(apfFile.toPath());
+		String apfText = new String(apfBytes, "UTF-8").replace("TYPE=\"ORG\"", "TYPE=\"PER\"");
+		Files.write(apfFile.toPath(), apfText.getBytes("UTF-8"));
+		assertTrue(apfFile.setLastModified(apfFile.lastModified()+20000));
+		assertNull(cache.get(sgmFile, false));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCorpusStoreEqualsParsedDocuments() throws Exception{
+		List<ACEDocument> docs = readSampleDocuments();
+		File storeFile = new File(tempFolder.getRoot(), "corpus.store");
+		ACECorpusStore.write(storeFile, docs);
+
+		try(ACECorpusStore store = new ACECorpusStore(storeFile, 2)){
+			assertEquals(docs.size(), store.size());
+			for(int i=0; i<docs.size(); i++){
+				assertEquals(docs.get(i).text, store.getText(i));
+				assertSameStructure(docs.get(i), store.get(i), "store["+i+"]");
+			}
+			// Only the two most recently accessed documents are kept
+			ACEDocument first = store.get(0);
+			assertSame(first, store.get(0));
+			store.get(1);
+			store.get(2);
+			assertNotSame(first, store.get(0));
+
+			RuleBasedSentenceSplitter splitter = new RuleBasedSentenceSplitter();
+			List<ACESentence> expected = ACEReader.getSentences(docs, splitter, false);
+			int i = 0;
+			for(ACESentence sentence: store.sentences(splitter, false, false)){
+				assertEquals(expected.get(i).span, sentence.span);
+				assertEquals(expected.get(i).entities.size(), sentence.entities.size());
+				assertEquals(expected.get(i).relations.size(), sentence.relations.size());
+				i++;
+			}
+			assertEquals(expected.size(), i);
+		}
+	}
+
+	@Test
+	@Parameters(method="paramsForDocuments")
+	public void testSentenceMentionsAreRelativeCopies(String sgmFilename, boolean ignoreOverlaps) throws Exception{
+		ACEDocument doc = new ACEDocument(sgmFilename);
+		Map<ACEEntityMention, Span> originalSpans = new IdentityHashMap<ACEEntityMention, Span>();
+		for(ACEEntityMention mention: doc.entityMentions){
+			originalSpans.put(mention, new Span(mention.span.start, mention.span.end));
+		}
+		List<ACESentence> sentences = ACEReader.getSentences(doc, new RuleBasedSentenceSplitter(), ignoreOverlaps, false);
+		for(ACEEntityMention mention: doc.entityMentions){
+			assertEquals(originalSpans.get(mention), mention.span);
+		}
+		for(ACESentence sentence: sentences){
+			for(ACEEntityMention mention: sentence.entities){
+				ACEEntityMention original = (ACEEntityMention)doc.objectMentionsById.get(mention.getFullID());
+				assertNotSame(original, mention);
+				assertEquals(original.span.start-sentence.span.start, mention.span.start);
+				assertEquals(original.headSpan.end-sentence.span.start, mention.headSpan.end);
+				assertEquals(original.text, sentence.text.substring(mention.span.start, mention.span.end));
+			}
+			for(ACERelationMention relation: sentence.relations){
+				for(ACEEntityMention arg: relation.args){
+					assertTrue(sentence.span.contains(new Span(arg.span.start+sentence.span.start, arg.span.end+sentence.span.start)));
+					for(ACEEntityMention mention: sentence.entities){
+						if(mention.getFullID().equals(arg.getFullID())){
+							assertSame(mention, arg);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMisalignedMentionsAreCounted() throws Exception{
+		ACEDocument doc = new ACEDocument("ace/ace2005/nw/timex2norm/SAMPLE2.sgm");
+		assertTrue(doc.numRealignedMentions > 0);
+		assertEquals(0, new ACEDocument("ace/ace2005/nw/timex2norm/SAMPLE1.sgm").numRealignedMentions);
+	}
+
+	@Test
+	public void testHashDataSplitIsReproducible(){
+		double[] datasplit = new double[]{0.8, 0.1, 0.1};
+		int numIDs = 20000;
+		List<String> ids = new ArrayList<String>();
+		for(int i=0; i<numIDs; i++){
+			ids.add("ACE/bn/CNN_ENG_"+i+".sgm");
+		}
+		HashDataSplit split = new HashDataSplit(datasplit, 31);
+		int[] assigned = new int[numIDs];
+		int[] counts = new int[3];
+		for(int i=0; i<numIDs; i++){
+			assigned[i] = split.assign(ids.get(i));
+			counts[assigned[i]]++;
+		}
+		for(int i=0; i<counts.length; i++){
+			assertEquals(datasplit[i], (double)counts[i]/numIDs, 0.01);
+		}
+
+		// The assignment does not depend on the instance or on the order of the ids
+		HashDataSplit otherSplit = new HashDataSplit(datasplit, 31);
+		for(int i=numIDs-1; i>=0; i--){
+			assertEquals(assigned[i], otherSplit.assign(ids.get(i)));
+		}
+
+		// A different seed gives a different assignment
+		HashDataSplit reseeded = new HashDataSplit(datasplit, 32);
+		int numChanged = 0;
+		for(int i=0; i<numIDs; i++){
+			if(reseeded.assign(ids.get(i)) != assigned[i]){
+				numChanged++;
+			}
+		}
+		assertTrue(numChanged > numIDs/10);
+
+		// The boundaries of the ratios are respected
+		HashDataSplit allTrain = new HashDataSplit(new double[]{1, 0, 0}, 31);
+		HashDataSplit allTest = new HashDataSplit(new double[]{0, 0, 1}, 31);
+		for(String id: ids.subList(0, 100)){
+			assertEquals(HashDataSplit.TRAIN, allTrain.assign(id));
+			assertEquals(HashDataSplit.TEST, allTest.assign(id));
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import justhalf.nlp.reader.acereader.ACEDocument;
+
+/**
+ * Helper class for the tests of the ACE reader, with the bundled sample documents and a temporary folder
+ */
+public class ACETestHelper extends TestHelper {
+
+	/** Small ACE-style documents bundled in the test resources, covering both ACE 2004 and ACE 2005 formats */
+	protected static final String[] SAMPLE_DOCUMENTS = new String[]{
+		"ace/ace2005/nw/timex2norm/SAMPLE1.sgm",
+		"ace/ace2005/nw/timex2norm/SAMPLE2.sgm",
+		"ace/ace2004/nwire/SAMPLE3.sgm",
+	};
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/**
+	 * Returns the parsed {@link #SAMPLE_DOCUMENTS}
+	 */
+	protected static List<ACEDocument> readSampleDocuments() throws Exception{
+		List<ACEDocument> docs = new ArrayList<ACEDocument>();
+		for(String sgmFilename: SAMPLE_DOCUMENTS){
+			docs.add(new ACEDocument(sgmFilename, false));
+		}
+		return docs;
+	}
+
+	protected byte[] readResource(String resourceName) throws IOException{
+		try(InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName)){
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				result.write(buffer, 0, read);
+			}
+			return result.toByteArray();
+		}
+	}
+
+	protected File copyToTempFolder(String resourceName) throws IOException{
+		File file = new File(tempFolder.getRoot(), new File(resourceName).getName());
+		try(InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName)){
+			Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return file;
+	}
+
+	/**
+	 * Asserts that the two object graphs are equal, see {@link #assertSameStructure(Object, Object, Map, String)}
+	 */
+	protected static void assertSameStructure(Object expected, Object actual, String path) throws IllegalAccessException{
+		assertSameStructure(expected, actual, new IdentityHashMap<Object, Object>(), path);
+	}
+
+	/**
+	 * Asserts that the two object graphs are equal field by field, and that the objects shared in the expected
+	 * graph (e.g., an entity and the parent of its mentions) are also shared in the actual graph.
+	 */
+	protected static void assertSameStructure(Object expected, Object actual, Map<Object, Object> visited, String path)
+			throws IllegalAccessException{
+		if(expected == null){
+			assertEquals(path, null, actual);
+			return;
+		}
+		assertNotNull(path, actual);
+		assertSame(path, expected.getClass(), actual.getClass());
+		if(expected instanceof String || expected instanceof Number || expected instanceof Boolean
+				|| expected instanceof Character || expected instanceof Enum){
+			assertEquals(path, expected, actual);
+			return;
+		}
+		if(visited.containsKey(expected)){
+			assertSame(path+" is not shared in the same way", visited.get(expected), actual);
+			return;
+		}
+		visited.put(expected, actual);
+		if(expected.getClass().isArray()){
+			assertEquals(path+".length", Array.getLength(expected), Array.getLength(actual));
+			for(int i=0; i<Array.getLength(expected); i++){
+				assertSameStructure(Array.get(expected, i), Array.get(actual, i), visited, path+"["+i+"]");
+			}
+		} else if(expected instanceof Collection){
+			Collection<?> expectedCollection = (Collection<?>)expected;
+			Collection<?> actualCollection = (Collection<?>)actual;
+			assertEquals(path+".size()", expectedCollection.size(), actualCollection.size());
+			Iterator<?> actualIter = actualCollection.iterator();
+			int i = 0;
+			for(Object expectedElement: expectedCollection){
+				assertSameStructure(expectedElement, actualIter.next(), visited, path+"["+i+"]");
+				i++;
+			}
+		} else if(expected instanceof Map){
+			Map<?, ?> expectedMap = (Map<?, ?>)expected;
+			Map<?, ?> actualMap = (Map<?, ?>)actual;
+			assertEquals(path+".keySet()", expectedMap.keySet(), actualMap.keySet());
+			for(Object key: expectedMap.keySet()){
+				assertSameStructure(expectedMap.get(key), actualMap.get(key), visited, path+"["+key+"]");
+			}
+		} else {
+			assertTrue(path+" is not from this library", expected.getClass().getName().startsWith("justhalf."));
+			for(Class<?> cls = expected.getClass(); cls != Object.class; cls = cls.getSuperclass()){
+				for(Field field: cls.getDeclaredFields()){
+					if(Modifier.isStatic(field.getModifiers())){
+						continue;
+					}
+					field.setAccessible(true);
+					assertSameStructure(field.get(expected), field.get(actual), visited, path+"."+field.getName());
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package justhalf.nlp.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.SAXException;
+
+import justhalf.nlp.reader.acereader.ACEDocument;
+import justhalf.nlp.reader.acereader.ACEReader;
+
+/**
+ * Compares the speed of reading ACE documents with the DOM-based APF parsing against the streaming parser<br>
+ *
+ * Run with the path to the ACE 2005 directory (containing the domain subdirectories) and the number of
+ * iterations as the optional arguments. By default the sample documents in the test resources are used.
+ * The files are loaded into memory first, so only the parsing time is measured.
+ */
+public class APFParserBenchmark extends TestHelper {
+
+	public static void main(String[] args) throws IOException, SAXException{
+		String ace2005DirName = args.length > 0 ? args[0] : "src/test/resources/ace/ace2005";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		List<byte[]> sgmFiles = new ArrayList<byte[]>();
+		List<byte[]> apfFiles = new ArrayList<byte[]>();
+		long apfBytes = 0;
+		for(String domain: ACEReader.ACE2005_DOMAINS){
+			File dir = new File(ace2005DirName, domain+"/timex2norm");
+			File[] files = dir.listFiles();
+			if(files == null){
+				continue;
+			}
+			for(File sgmFile: files){
+				if(!sgmFile.getName().endsWith(".sgm")){
+					continue;
+				}
+				File apfFile = new File(sgmFile.getPath().replace(".sgm", ".apf.xml"));
+				sgmFiles.add(Files.readAllBytes(sgmFile.toPath()));
+				apfFiles.add(Files.readAllBytes(apfFile.toPath()));
+				apfBytes += apfFile.length();
+			}
+		}
+		System.out.println(String.format("Read %d documents (%.2f MB of APF files) from %s",
+				sgmFiles.size(), apfBytes/(double)(1 << 20), ace2005DirName));
+
+		// Warm up
+		runOne(sgmFiles, apfFiles, false, 1);
+		runOne(sgmFiles, apfFiles, true, 1);
+
+		double domTime = runOne(sgmFiles, apfFiles, false, iterations);
+		double streamingTime = runOne(sgmFiles, apfFiles, true, iterations);
+		System.out.println(String.format("DOM parser      : %.3fs (%.2f docs/s)", domTime,
+				iterations*sgmFiles.size()/domTime));
+		System.out.println(String.format("Streaming parser: %.3fs (%.2f docs/s)", streamingTime,
+				iterations*sgmFiles.size()/streamingTime));
+		System.out.println(String.format("Speedup         : %.1fx", domTime/streamingTime));
+	}
+
+	private static double runOne(List<byte[]> sgmFiles, List<byte[]> apfFiles, boolean useStreamingParser,
+			int iterations) throws IOException, SAXException{
+		System.gc();
+		long start = System.nanoTime();
+		for(int i=0; i<iterations; i++){
+			for(int j=0; j<sgmFiles.size(); j++){
+				new ACEDocument(new ByteArrayInputStream(sgmFiles.get(j)), new ByteArrayInputStream(apfFiles.get(j)),
+						false, useStreamingParser);
+			}
+		}
+		long end = System.nanoTime();
+		return (end-start)/1e9;
+	}
+
+}
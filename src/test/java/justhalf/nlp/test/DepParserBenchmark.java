@@ -0,0 +1,64 @@
+package justhalf.nlp.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.depparser.DepParser;
+import justhalf.nlp.depparser.NLP4JDepParser;
+import justhalf.nlp.depparser.StanfordDepParser;
+import justhalf.nlp.postagger.POSTagger;
+import justhalf.nlp.postagger.StanfordPOSTagger;
+import justhalf.nlp.tokenizer.StanfordTokenizer;
+import justhalf.nlp.tokenizer.Tokenizer;
+
+/**
+ * Compares the parsing speed of {@link NLP4JDepParser} against {@link StanfordDepParser}<br>
+ *
+ * Run with the number of iterations over the sample sentences as the optional argument.
+ */
+public class DepParserBenchmark extends TestHelper {
+
+	private static final String[] SENTENCES = new String[]{
+		"I work in Singapore.",
+		"The horse raced past the barn fell.",
+		"Time flies like an arrow, but fruit flies like bananas.",
+		"The quick brown fox jumps over the lazy dog near the river bank.",
+		"Defence secretary William Cohen said the troops will be deployed to the region next week.",
+		"Apparently the thing's teeth are similar to (but not the same as) my dogs' teeth.",
+	};
+
+	public static void main(String[] args){
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		Tokenizer tokenizer = new StanfordTokenizer();
+		POSTagger posTagger = new StanfordPOSTagger();
+		List<List<CoreLabel>> sentences = new ArrayList<List<CoreLabel>>();
+		for(String sentence: SENTENCES){
+			sentences.add(posTagger.tagCoreLabels(tokenizer.tokenize(sentence)));
+		}
+		DepParser stanfordDepParser = new StanfordDepParser();
+		DepParser nlp4jDepParser = new NLP4JDepParser();
+
+		// Warm up
+		runOne(stanfordDepParser, sentences, 10);
+		runOne(nlp4jDepParser, sentences, 10);
+
+		double stanfordTime = runOne(stanfordDepParser, sentences, iterations);
+		double nlp4jTime = runOne(nlp4jDepParser, sentences, iterations);
+		int total = iterations*sentences.size();
+		System.out.println(String.format("Stanford: %.3fs (%.1f sentences/s)", stanfordTime, total/stanfordTime));
+		System.out.println(String.format("NLP4J   : %.3fs (%.1f sentences/s)", nlp4jTime, total/nlp4jTime));
+	}
+
+	private static double runOne(DepParser depParser, List<List<CoreLabel>> sentences, int iterations){
+		long start = System.nanoTime();
+		for(int i=0; i<iterations; i++){
+			for(List<CoreLabel> sentence: sentences){
+				depParser.parse(sentence);
+			}
+		}
+		long end = System.nanoTime();
+		return (end-start)/1e9;
+	}
+
+}
@@ -17,6 +17,8 @@ import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import justhalf.nlp.depparser.DepParser;
 import justhalf.nlp.depparser.MedicalDepParser;
+import justhalf.nlp.depparser.NLP4JDepParser;
+import justhalf.nlp.depparser.NLP4JTaggerParser;
 import justhalf.nlp.depparser.StanfordDepParser;
 import justhalf.nlp.postagger.POSTagger;
 import justhalf.nlp.postagger.StanfordPOSTagger;
@@ -29,6 +31,8 @@ public class DepParserTest extends TestHelper {
 	private static final String STANFORD =  "Stanford Dependency Parser ";
 	private static final String UNIVERSAL = "Universal Dependency Parser";
 	private static final String MEDICAL =   "Medical Dependency Parser  ";
+	private static final String NLP4J =     "NLP4J Dependency Parser    ";
+	private static final String NLP4J_JOINT="NLP4J Tagger and Parser    ";
 
 	private static String[][] testCases = new String[][]{
 		new String[]{"I work in Singapore.", "[nsubj(work-2, I-1), root(ROOT-0, work-2), case(Singapore-4, in-3), nmod:in(work-2, Singapore-4), punct(work-2, .-5)]"},
@@ -37,6 +41,8 @@ public class DepParserTest extends TestHelper {
 	private static DepParser universalDepParser;
 	private static DepParser stanfordDepParser;
 	private static DepParser medicalDepParser;
+	private static DepParser nlp4jDepParser;
+	private static DepParser nlp4jTaggerParser;
 	private static POSTagger posTagger;
 	private static Tokenizer tokenizer;
 	
@@ -49,6 +55,8 @@ public class DepParserTest extends TestHelper {
 		universalDepParser = new StanfordDepParser(StanfordDepParser.UNIVERSAL_ENGLISH);
 		stanfordDepParser = new StanfordDepParser(StanfordDepParser.STANDARD_ENGLISH);
 		medicalDepParser = new MedicalDepParser();
+		nlp4jDepParser = new NLP4JDepParser();
+		nlp4jTaggerParser = new NLP4JTaggerParser();
 		counter = new HashMap<String, Integer>();
 	}
 	
@@ -85,6 +93,22 @@ public class DepParserTest extends TestHelper {
 		addCount(counter, MEDICAL);
 	}
 	
+	@Test
+	@Parameters(method="paramsForDepParser")
+	public void testNLP4JDepParser(String testCase, String expected){
+		List<CoreLabel> posTagged = posTagger.tagCoreLabels(tokenizer.tokenize(testCase));
+		testOne(nlp4jDepParser, expected, posTagged);
+		addCount(counter, NLP4J);
+	}
+	
+	@Test
+	@Parameters(method="paramsForDepParser")
+	public void testNLP4JTaggerParser(String testCase, String expected){
+		// No need for POS tags, since they are assigned in the same decode
+		testOne(nlp4jTaggerParser, expected, tokenizer.tokenize(testCase));
+		addCount(counter, NLP4J_JOINT);
+	}
+	
 	private void testOne(DepParser posTagger, String expected, List<CoreLabel> testCase){
 		List<TypedDependency> result = posTagger.parse(testCase);
 		String actual = result.toString();
@@ -105,11 +129,13 @@ public class DepParserTest extends TestHelper {
 		runOne(universalDepParser, line, UNIVERSAL);
 		runOne(stanfordDepParser, line, STANFORD);
 		runOne(medicalDepParser, line, MEDICAL);
+		runOne(nlp4jDepParser, line, NLP4J);
 		System.out.println("Enter one sentence at a time");
 		while((line = getNextLine(sc)) != null){
 			runOne(universalDepParser, line, UNIVERSAL);
 			runOne(stanfordDepParser, line, STANFORD);
 			runOne(medicalDepParser, line, MEDICAL);
+			runOne(nlp4jDepParser, line, NLP4J);
 		}
 		sc.close();
 	}
@@ -0,0 +1,67 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import justhalf.nlp.reader.acereader.ACEDocument;
+import justhalf.nlp.util.EntityUnescaper;
+
+public class EntityUnescaperTest extends TestHelper {
+
+	@Test
+	public void testUnescapeEqualsRegexReplacement(){
+		String[] testCases = new String[]{
+			"", "no entities", "&", "&amp", "&amp;", "&AMP;", "&Amp;&lT;&Gt;", "a &amp; b &lt;c&gt; d",
+			"&amp;lt;", "&amp;GT;", "&amp;amp;", "&amp;amp;lt;", "&amp;&lt;", "&&amp;;", "x&lt", "&#38; &#x26;",
+		};
+		for(String testCase: testCases){
+			assertEquals(testCase, unescapeByRegex(testCase), ACEDocument.unescape(testCase));
+		}
+		Random random = new Random(31);
+		String[] pieces = new String[]{"&", "amp;", "AMP;", "lt;", "gt;", "Lt;", ";", "a", "#", " ", "\n"};
+		for(int i=0; i<10000; i++){
+			StringBuilder builder = new StringBuilder();
+			for(int j=random.nextInt(12); j>0; j--){
+				builder.append(pieces[random.nextInt(pieces.length)]);
+			}
+			String testCase = builder.toString();
+			assertEquals(testCase, unescapeByRegex(testCase), ACEDocument.unescape(testCase));
+		}
+		String unchanged = "Nothing to unescape & here";
+		assertSame(unchanged, ACEDocument.unescape(unchanged));
+	}
+
+	@Test
+	public void testUnescapeNumericAndOffsetMap(){
+		String text = "A&amp;B &#60;x&#X3E; &#xZZ; &#1114112;";
+		int[] offsetMap = new int[text.length()+1];
+		String result = EntityUnescaper.unescape(text, true, offsetMap);
+		assertEquals("A&B <x> &#xZZ; &#1114112;", result);
+		assertEquals("A&B <x> &#xZZ; &#1114112;", EntityUnescaper.unescape(text, true));
+		assertEquals("A&B &#60;x&#X3E; &#xZZ; &#1114112;", EntityUnescaper.unescape(text, false));
+		assertEquals(0, offsetMap[0]);
+		assertEquals(1, offsetMap[1]);
+		assertEquals(1, offsetMap[5]);
+		assertEquals(2, offsetMap[text.indexOf('B')]);
+		assertEquals(4, offsetMap[text.indexOf("&#60;")]);
+		assertEquals(5, offsetMap[text.indexOf('x')]);
+		assertEquals(result.length(), offsetMap[text.length()]);
+		for(int i=0; i<text.length(); i++){
+			if(text.charAt(i) == 'x' || text.charAt(i) == 'B' || text.charAt(i) == 'Z'){
+				assertEquals(text.charAt(i), result.charAt(offsetMap[i]));
+			}
+		}
+	}
+
+	private static String unescapeByRegex(String xml){
+		String result = xml.replaceAll("(?i)&amp;", "&");
+		result = result.replaceAll("(?i)&lt;", "<");
+		result = result.replaceAll("(?i)&gt;", ">");
+		return result;
+	}
+
+}
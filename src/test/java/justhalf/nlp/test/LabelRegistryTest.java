@@ -0,0 +1,72 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import justhalf.nlp.reader.acereader.LabelRegistry;
+import justhalf.nlp.reader.acereader.WordLabel;
+
+public class LabelRegistryTest extends TestHelper {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testLabelRegistry() throws Exception{
+		LabelRegistry<WordLabel> registry = WordLabel.newRegistry();
+		int numThreads = 8;
+		int numForms = 1000;
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for(int i=0; i<numThreads; i++){
+			futures.add(executor.submit(() -> {
+				for(int j=0; j<numForms; j++){
+					registry.get("L"+j);
+				}
+			}));
+		}
+		for(Future<?> future: futures){
+			future.get();
+		}
+		executor.shutdown();
+		assertEquals(numForms, registry.size());
+		for(int id=0; id<numForms; id++){
+			WordLabel label = registry.get(id);
+			assertEquals(id, label.id);
+			assertSame(label, registry.get(label.form));
+		}
+		assertNull(registry.getIfExists("B-PER"));
+		assertNull(WordLabel.newRegistry().getIfExists("L0"));
+
+		File file = tempFolder.newFile("labels.txt");
+		registry.save(file);
+		LabelRegistry<WordLabel> loaded = WordLabel.newRegistry();
+		loaded.load(file);
+		for(int id=0; id<numForms; id++){
+			assertEquals(registry.get(id), loaded.get(id));
+			assertEquals(id, loaded.get(id).id);
+		}
+		LabelRegistry<WordLabel> conflicting = WordLabel.newRegistry();
+		conflicting.get("other");
+		try{
+			conflicting.load(file);
+			fail("Loading labels with conflicting ids should fail");
+		} catch (IllegalStateException e){
+			// Expected, as the existing label takes the id 0
+		}
+	}
+
+}
@@ -0,0 +1,259 @@
+package justhalf.nlp.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.SAXException;
+
+import justhalf.nlp.reader.acereader.ACEDocument;
+import justhalf.nlp.reader.acereader.ACEEntityMention;
+import justhalf.nlp.reader.acereader.ACEEventMention;
+import justhalf.nlp.reader.acereader.ACEObjectMention;
+import justhalf.nlp.reader.acereader.ACEReader;
+import justhalf.nlp.reader.acereader.ACERelationMention;
+import justhalf.nlp.reader.acereader.ACESentence;
+import justhalf.nlp.reader.acereader.ACETimexMention;
+import justhalf.nlp.reader.acereader.ACEValueMention;
+import justhalf.nlp.reader.acereader.Span;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
+
+/**
+ * Compares the speed of assigning mentions to sentences with {@link ACEReader#assignMentions(ACEDocument, List, boolean)}
+ * against checking every mention for every sentence, and checks that both give the same sentences.<br>
+ *
+ * Long newswire documents are made by concatenating copies of a sample document. Run with the sample .sgm file,
+ * the number of copies, and the number of iterations as the optional arguments.
+ */
+public class SentenceAssignmentBenchmark extends TestHelper {
+
+	public static void main(String[] args) throws IOException, SAXException{
+		String sgmFilename = args.length > 0 ? args[0] : "ace/ace2005/nw/timex2norm/SAMPLE1.sgm";
+		int copies = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		ACEDocument doc = makeLongDocument(sgmFilename, copies);
+		List<ACESentence> sentences = ACEReader.getSentences(doc, new RuleBasedSentenceSplitter(), false, false);
+		System.out.println(String.format("Document with %d characters, %d sentences, %d entity mentions, %d relation mentions",
+				doc.text.length(), sentences.size(), doc.entityMentions.size(), doc.relationMentions.size()));
+
+		for(boolean ignoreOverlaps: new boolean[]{false, true}){
+			List<ACESentence> expected = emptyCopy(sentences);
+			assignMentionsByScanning(doc, expected, ignoreOverlaps);
+			Map<ACEObjectMention<?>, ACESentence> expectedContainingSentences = getContainingSentences(doc);
+			List<ACESentence> actual = emptyCopy(sentences);
+			ACEReader.assignMentions(doc, actual, ignoreOverlaps);
+			checkSame(expected, actual, expectedContainingSentences, getContainingSentences(doc));
+
+			// Warm up
+			assignMentionsByScanning(doc, emptyCopy(sentences), ignoreOverlaps);
+			ACEReader.assignMentions(doc, emptyCopy(sentences), ignoreOverlaps);
+
+			long start = System.nanoTime();
+			for(int i=0; i<iterations; i++){
+				assignMentionsByScanning(doc, emptyCopy(sentences), ignoreOverlaps);
+			}
+			double scanTime = (System.nanoTime()-start)/1e9;
+			start = System.nanoTime();
+			for(int i=0; i<iterations; i++){
+				ACEReader.assignMentions(doc, emptyCopy(sentences), ignoreOverlaps);
+			}
+			double indexTime = (System.nanoTime()-start)/1e9;
+			System.out.println(String.format("ignoreOverlaps=%s: scanning %.3fs, index %.3fs, speedup %.1fx (same output)",
+					ignoreOverlaps, scanTime, indexTime, scanTime/indexTime));
+		}
+	}
+
+	/**
+	 * Returns a document containing the given number of copies of the sample document, one after another.
+	 */
+	private static ACEDocument makeLongDocument(String sgmFilename, int copies) throws IOException, SAXException{
+		ACEDocument result = new ACEDocument(sgmFilename);
+		StringBuilder text = new StringBuilder(result.text);
+		for(int i=1; i<copies; i++){
+			ACEDocument copy = new ACEDocument(sgmFilename);
+			int offset = text.length();
+			text.append(copy.text);
+			Map<Span, Boolean> shifted = new IdentityHashMap<Span, Boolean>();
+			for(ACEEntityMention mention: copy.entityMentions){
+				shift(mention.span, offset, shifted);
+				shift(mention.headSpan, offset, shifted);
+			}
+			for(ACERelationMention mention: copy.relationMentions){
+				shift(mention.span, offset, shifted);
+				for(ACEEntityMention arg: mention.args){
+					shift(arg.span, offset, shifted);
+					shift(arg.headSpan, offset, shifted);
+				}
+			}
+			for(ACEEventMention mention: copy.eventMentions){
+				shift(mention.span, offset, shifted);
+			}
+			for(ACETimexMention mention: copy.timexMentions){
+				shift(mention.span, offset, shifted);
+			}
+			for(ACEValueMention mention: copy.valueMentions){
+				shift(mention.span, offset, shifted);
+			}
+			result.entityMentions.addAll(copy.entityMentions);
+			result.relationMentions.addAll(copy.relationMentions);
+			result.eventMentions.addAll(copy.eventMentions);
+			result.timexMentions.addAll(copy.timexMentions);
+			result.valueMentions.addAll(copy.valueMentions);
+		}
+		result.text = text.toString();
+		return result;
+	}
+
+	private static void shift(Span span, int offset, Map<Span, Boolean> shifted){
+		if(shifted.put(span, true) == null){
+			span.start += offset;
+			span.end += offset;
+		}
+	}
+
+	private static List<ACESentence> emptyCopy(List<ACESentence> sentences){
+		List<ACESentence> result = new ArrayList<ACESentence>();
+		for(ACESentence sentence: sentences){
+			result.add(new ACESentence(sentence.sourceDoc, sentence.span, sentence.text));
+		}
+		return result;
+	}
+
+	private static Map<ACEObjectMention<?>, ACESentence> getContainingSentences(ACEDocument doc){
+		Map<ACEObjectMention<?>, ACESentence> result = new IdentityHashMap<ACEObjectMention<?>, ACESentence>();
+		List<ACEObjectMention<?>> mentions = new ArrayList<ACEObjectMention<?>>();
+		mentions.addAll(doc.entityMentions);
+		mentions.addAll(doc.relationMentions);
+		mentions.addAll(doc.eventMentions);
+		mentions.addAll(doc.timexMentions);
+		mentions.addAll(doc.valueMentions);
+		for(ACEObjectMention<?> mention: mentions){
+			result.put(mention, mention.containingSentence);
+			mention.containingSentence = null;
+		}
+		return result;
+	}
+
+	private static void checkSame(List<ACESentence> expected, List<ACESentence> actual,
+			Map<ACEObjectMention<?>, ACESentence> expectedContainingSentences,
+			Map<ACEObjectMention<?>, ACESentence> actualContainingSentences){
+		for(int i=0; i<expected.size(); i++){
+			ACESentence expectedSentence = expected.get(i);
+			ACESentence actualSentence = actual.get(i);
+			check(expectedSentence.entities.size() == actualSentence.entities.size(), "entities in sentence "+i);
+			for(int j=0; j<expectedSentence.entities.size(); j++){
+				ACEEntityMention expectedMention = expectedSentence.entities.get(j);
+				ACEEntityMention actualMention = actualSentence.entities.get(j);
+				check(expectedMention.span.equals(actualMention.span)
+						&& expectedMention.headSpan.equals(actualMention.headSpan)
+						&& expectedMention.getFullID().equals(actualMention.getFullID()), "entity "+j+" in sentence "+i);
+			}
+			check(expectedSentence.relations.size() == actualSentence.relations.size(), "relations in sentence "+i);
+			for(int j=0; j<expectedSentence.relations.size(); j++){
+				ACERelationMention expectedMention = expectedSentence.relations.get(j);
+				ACERelationMention actualMention = actualSentence.relations.get(j);
+				check(expectedMention.span.equals(actualMention.span)
+						&& expectedMention.getFullID().equals(actualMention.getFullID()), "relation "+j+" in sentence "+i);
+				for(int k=0; k<expectedMention.args.length; k++){
+					check(expectedMention.args[k].span.equals(actualMention.args[k].span), "relation "+j+" in sentence "+i);
+				}
+			}
+			check(expectedSentence.events.equals(actualSentence.events), "events in sentence "+i);
+			check(expectedSentence.timexes.equals(actualSentence.timexes), "timexes in sentence "+i);
+			check(expectedSentence.values.equals(actualSentence.values), "values in sentence "+i);
+		}
+		for(Map.Entry<ACEObjectMention<?>, ACESentence> entry: expectedContainingSentences.entrySet()){
+			int expectedIndex = expected.indexOf(entry.getValue());
+			int actualIndex = actual.indexOf(actualContainingSentences.get(entry.getKey()));
+			check(expectedIndex == actualIndex, "containing sentence of "+entry.getKey());
+		}
+	}
+
+	private static void check(boolean condition, String what){
+		if(!condition){
+			throw new AssertionError("Different output: "+what);
+		}
+	}
+
+	/**
+	 * The assignment of mentions to sentences by checking every mention for every sentence,
+	 * as done before {@link ACEReader#assignMentions(ACEDocument, List, boolean)} was introduced.
+	 */
+	private static void assignMentionsByScanning(ACEDocument doc, List<ACESentence> aceSentences,
+			boolean ignoreOverlappingEntities){
+		for(ACESentence aceSentence: aceSentences){
+			Span sentenceSpan = aceSentence.span;
+			for(ACEEntityMention mention: doc.entityMentions){
+				if(sentenceSpan.contains(mention.span)){
+					mention.containingSentence = aceSentence;
+					ACEEntityMention newMention = new ACEEntityMention(mention);
+					newMention.span.start -= sentenceSpan.start;
+					newMention.span.end -= sentenceSpan.start;
+					newMention.headSpan.start -= sentenceSpan.start;
+					newMention.headSpan.end -= sentenceSpan.start;
+
+					boolean add = true;
+					if(ignoreOverlappingEntities){
+						for(int i=aceSentence.entities.size()-1; i >= 0; i--){
+							ACEEntityMention existingMention = aceSentence.entities.get(i);
+							if(newMention.overlapsWith(existingMention)){
+								if(newMention.span.length() > existingMention.span.length()){
+									aceSentence.entities.remove(i);
+								} else {
+									add = false;
+									break;
+								}
+							}
+						}
+					}
+					if(add){
+						aceSentence.addEntityMention(newMention);
+					}
+				}
+			}
+			for(ACERelationMention relation: doc.relationMentions){
+				if(sentenceSpan.contains(relation.span)){
+					boolean add = true;
+					ACERelationMention newRelation = new ACERelationMention(relation);
+					newRelation.span.start -= sentenceSpan.start;
+					newRelation.span.end -= sentenceSpan.start;
+					for(ACEEntityMention argMention: newRelation.args){
+						if(!sentenceSpan.contains(argMention.span)){
+							add = false;
+							break;
+						}
+						argMention.span.start -= sentenceSpan.start;
+						argMention.span.end -= sentenceSpan.start;
+						argMention.headSpan.start -= sentenceSpan.start;
+						argMention.headSpan.end -= sentenceSpan.start;
+					}
+					if(add){
+						relation.containingSentence = aceSentence;
+						aceSentence.addRelationMention(newRelation);
+					}
+				}
+			}
+			for(ACEEventMention event: doc.eventMentions){
+				if(sentenceSpan.contains(event.span)){
+					event.containingSentence = aceSentence;
+					aceSentence.addEventMention(event);
+				}
+			}
+			for(ACETimexMention timex: doc.timexMentions){
+				if(sentenceSpan.contains(timex.span)){
+					timex.containingSentence = aceSentence;
+					aceSentence.addTimexMention(timex);
+				}
+			}
+			for(ACEValueMention value: doc.valueMentions){
+				if(sentenceSpan.contains(value.span)){
+					value.containingSentence = aceSentence;
+					aceSentence.addValueMention(value);
+				}
+			}
+		}
+	}
+
+}
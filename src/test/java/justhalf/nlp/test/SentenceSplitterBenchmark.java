@@ -0,0 +1,107 @@
+package justhalf.nlp.test;
+
+import justhalf.nlp.sentencesplitter.NLP4JSentenceSplitter;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
+import justhalf.nlp.sentencesplitter.SentenceSplitter;
+import justhalf.nlp.sentencesplitter.StanfordSentenceSplitter;
+
+/**
+ * Compares the splitting speed of {@link RuleBasedSentenceSplitter} against {@link StanfordSentenceSplitter},
+ * and checks that {@link NLP4JSentenceSplitter} scales linearly with the document length<br>
+ *
+ * Run with the number of iterations over the bundled corpus and the maximum document size in KB
+ * for the scaling benchmark as the optional arguments.
+ */
+public class SentenceSplitterBenchmark extends TestHelper {
+
+	/**
+	 * Larger documents do not fit in the default heap, since NLP4J keeps a node for every token of the document,
+	 * and the time per KB near the heap limit measures the garbage collector instead of the splitter
+	 */
+	public static final int DEFAULT_MAX_SIZE_IN_KB = 4*1024;
+
+	public static void main(String[] args){
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int maxSizeInKB = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SIZE_IN_KB;
+		String corpus = SentenceSplitterTest.readCorpus();
+		SentenceSplitter stanfordSplitter = new StanfordSentenceSplitter();
+		SentenceSplitter ruleBasedSplitter = new RuleBasedSentenceSplitter();
+
+		// Warm up, with as many iterations as the measured run so that both splitters are fully compiled
+		runOne(stanfordSplitter, corpus, iterations);
+		runOne(ruleBasedSplitter, corpus, iterations);
+
+		double stanfordTime = runOne(stanfordSplitter, corpus, iterations);
+		double ruleBasedTime = runOne(ruleBasedSplitter, corpus, iterations);
+		double megabytes = (double)iterations*corpus.length()/(1 << 20);
+		System.out.println(String.format("Stanford  : %.3fs (%.2f MB/s)", stanfordTime, megabytes/stanfordTime));
+		System.out.println(String.format("Rule-based: %.3fs (%.2f MB/s)", ruleBasedTime, megabytes/ruleBasedTime));
+		System.out.println(String.format("Speedup   : %.1fx", stanfordTime/ruleBasedTime));
+
+		NLP4JSentenceSplitter nlp4jSplitter = new NLP4JSentenceSplitter();
+		nlp4jSplitter.lazyLabels = true;
+		runScaling(nlp4jSplitter, corpus, maxSizeInKB);
+	}
+
+	/**
+	 * Splits documents from 1KB up to the given size, growing 4x each time, and prints the time per KB,
+	 * which should stay roughly constant if the splitter is linear in the document length.<br>
+	 * The time of the NLP4J segmentation alone is printed as well, so any growth in the difference would come
+	 * from the conversion into {@link edu.stanford.nlp.ling.CoreLabel}s, which is where the offsets used to be quadratic.
+	 * A size which runs out of memory or stack (NLP4J matches some tokens with recursive regular expressions)
+	 * is reported and ends the benchmark.
+	 */
+	private static void runScaling(NLP4JSentenceSplitter splitter, String corpus, int maxSizeInKB){
+		runOne(splitter, repeat(corpus, 1024), 100);
+		System.out.println("NLP4J scaling:");
+		int sizeInKB = 1;
+		while(true){
+			try{
+				String document = repeat(corpus, sizeInKB*1024);
+				int iterations = Math.max(3, 1024/sizeInKB);
+				// Warm up at this size, so that the heap is sized for the document before measuring
+				splitter.split(document);
+				// The fastest of the interleaved runs, so that a collection during one run does not skew the difference
+				double segmentTime = Double.MAX_VALUE;
+				double time = Double.MAX_VALUE;
+				for(int i=0; i<iterations; i++){
+					long start = System.nanoTime();
+					splitter.nlp4jTokenizer.segmentize(document);
+					long middle = System.nanoTime();
+					splitter.split(document);
+					long end = System.nanoTime();
+					segmentTime = Math.min(segmentTime, (middle-start)/1e9);
+					time = Math.min(time, (end-middle)/1e9);
+				}
+				System.out.println(String.format("%8dKB: %9.4fs (%.2f us/KB, NLP4J segmentation alone %.2f us/KB)",
+						sizeInKB, time, 1e6*time/sizeInKB, 1e6*segmentTime/sizeInKB));
+			} catch (OutOfMemoryError | StackOverflowError e){
+				System.out.println(String.format("%8dKB: failed with %s", sizeInKB, e));
+				break;
+			}
+			if(sizeInKB >= maxSizeInKB){
+				break;
+			}
+			sizeInKB = Math.min(4*sizeInKB, maxSizeInKB);
+		}
+	}
+
+	private static String repeat(String text, int length){
+		StringBuilder result = new StringBuilder(length);
+		while(result.length() < length){
+			result.append(text, 0, Math.min(text.length(), length-result.length()));
+		}
+		return result.toString();
+	}
+
+	private static double runOne(SentenceSplitter splitter, String text, int iterations){
+		System.gc();
+		long start = System.nanoTime();
+		for(int i=0; i<iterations; i++){
+			splitter.split(text);
+		}
+		long end = System.nanoTime();
+		return (end-start)/1e9;
+	}
+
+}
@@ -0,0 +1,327 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import justhalf.nlp.sentencesplitter.NLP4JSentenceSplitter;
+import justhalf.nlp.sentencesplitter.ParallelSentenceSplitter;
+import justhalf.nlp.sentencesplitter.PostProcessingSentenceSplitter;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
+import justhalf.nlp.sentencesplitter.SentenceSplitter;
+import justhalf.nlp.sentencesplitter.StanfordSentenceSplitter;
+import justhalf.nlp.sentencesplitter.StreamingSentenceSplitter;
+import justhalf.nlp.tokenizer.RegexTokenizer;
+import justhalf.nlp.util.LazyCoreLabel;
+
+@RunWith(JUnitParamsRunner.class)
+public class SentenceSplitterTest extends TestHelper {
+
+	private static final String STANFORD = "Stanford Sentence Splitter";
+	private static final String RULE_BASED = "Rule-based Sentence Splitter";
+
+	protected static final String CORPUS_FILE = "sentence-splitter-corpus.txt";
+
+	/**
+	 * The minimum fraction of sentences from the rule-based splitter which should agree with Stanford.<br>
+	 * Stanford attaches an opening double quote to the end of the previous sentence, while the rule-based
+	 * splitter keeps it in the sentence it opens, so the agreement on quoted speech is lower.
+	 */
+	private static final double MIN_AGREEMENT = 0.8;
+
+	private static final String DOCUMENT =
+			"The quick brown fox jumps over the lazy dog. It was not amused!\n"
+			+ "Mr. Smith arrived at 5 p.m. yesterday, and left at 6. Did he say anything?\n\n"
+			+ "  A new paragraph starts here.   It contains \"quoted text.\" And more text.\n"
+			+ "\n"
+			+ "The U.S. economy grew by 3.5% in the third quarter, according to the report. "
+			+ "Analysts had expected 3.1%.\n"
+			+ "Last line without a period";
+
+	private static SentenceSplitter stanfordSplitter;
+	private static SentenceSplitter ruleBasedSplitter;
+	private static SentenceSplitter nlp4jSplitter;
+
+	@BeforeClass
+	public static void setUp(){
+		stanfordSplitter = new StanfordSentenceSplitter();
+		ruleBasedSplitter = new RuleBasedSentenceSplitter();
+		nlp4jSplitter = new NLP4JSentenceSplitter();
+	}
+
+	Object[] paramsForChunkSize(){
+		return new Object[]{
+			new Object[]{7},
+			new Object[]{32},
+			new Object[]{100},
+			new Object[]{StreamingSentenceSplitter.DEFAULT_CHUNK_SIZE},
+		};
+	}
+
+	@Test
+	@Parameters(method="paramsForChunkSize")
+	public void testStreamingEqualsSequential(int chunkSize){
+		List<CoreLabel> expected = stanfordSplitter.split(DOCUMENT);
+		StreamingSentenceSplitter streamingSplitter = new StreamingSentenceSplitter(stanfordSplitter, chunkSize, 1000);
+		List<CoreLabel> actual = new ArrayList<CoreLabel>();
+		Iterator<CoreLabel> iterator = streamingSplitter.split(new StringReader(DOCUMENT));
+		while(iterator.hasNext()){
+			actual.add(iterator.next());
+		}
+		assertEquals(toString(expected), toString(actual));
+	}
+
+	@Test
+	public void testStreamingEmptyInput(){
+		Iterator<CoreLabel> iterator = stanfordSplitter.split(new StringReader(""));
+		assertEquals(false, iterator.hasNext());
+	}
+
+	@Test
+	public void testSplitWithTokens(){
+		checkTokens(stanfordSplitter.splitWithTokens(DOCUMENT));
+		checkTokens(stanfordSplitter.splitWithTokens(DOCUMENT, new RegexTokenizer()));
+	}
+	
+	Object[] paramsForParallel(){
+		return new Object[]{
+			new Object[]{STANFORD, 1},
+			new Object[]{STANFORD, 100},
+			new Object[]{RULE_BASED, 1},
+			new Object[]{RULE_BASED, 100},
+		};
+	}
+
+	@Test
+	@Parameters(method="paramsForParallel")
+	public void testParallelEqualsSequential(String splitterName, int minChunkSize){
+		SentenceSplitter splitter = splitterName.equals(STANFORD) ? stanfordSplitter : ruleBasedSplitter;
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try{
+			ParallelSentenceSplitter parallelSplitter = new ParallelSentenceSplitter(splitter, pool, minChunkSize);
+			// Blank lines are hard boundaries in the parallel splitter, so no sentence should span them
+			String document = DOCUMENT + ".\n\n" + DOCUMENT;
+			assertEquals(toString(splitter.split(document)), toString(parallelSplitter.split(document)));
+			assertEquals(toString(splitter.split(document)), toString(parallelSplitter.splitWithTokens(document)));
+			assertEquals(toTokenString(splitter.splitWithTokens(document, new RegexTokenizer())),
+					toTokenString(parallelSplitter.splitWithTokens(document, new RegexTokenizer())));
+			assertEquals(0, parallelSplitter.split("").size());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testRuleBasedSpans(){
+		List<CoreLabel> sentences = ruleBasedSplitter.split(DOCUMENT);
+		assertEquals(toString(stanfordSplitter.split(DOCUMENT)), toString(sentences));
+		checkSpans(DOCUMENT, sentences);
+		assertEquals(0, ruleBasedSplitter.split("").size());
+		assertEquals(0, ruleBasedSplitter.split(" \n ").size());
+	}
+
+	@Test
+	public void testStanfordSpans(){
+		checkSpans(DOCUMENT, stanfordSplitter.split(DOCUMENT));
+		checkSpans(" "+DOCUMENT+"\n", stanfordSplitter.split(" "+DOCUMENT+"\n"));
+	}
+
+	@Test
+	public void testNLP4JSpans(){
+		checkSpans(DOCUMENT, nlp4jSplitter.split(DOCUMENT));
+		List<CoreLabel> sentences = nlp4jSplitter.splitWithTokens(DOCUMENT);
+		checkSpans(DOCUMENT, sentences);
+		for(CoreLabel sentence: sentences){
+			for(CoreLabel token: sentence.get(TokensAnnotation.class)){
+				assertEquals(token.originalText(), DOCUMENT.substring(token.beginPosition(), token.endPosition()));
+				assertTrue(token.beginPosition() >= sentence.beginPosition());
+				assertTrue(token.endPosition() <= sentence.endPosition());
+			}
+		}
+	}
+
+	@Test
+	public void testLazyLabels(){
+		StanfordSentenceSplitter lazyStanfordSplitter = new StanfordSentenceSplitter();
+		lazyStanfordSplitter.lazyLabels = true;
+		RuleBasedSentenceSplitter lazyRuleBasedSplitter = new RuleBasedSentenceSplitter();
+		lazyRuleBasedSplitter.lazyLabels = true;
+		NLP4JSentenceSplitter lazyNLP4JSplitter = new NLP4JSentenceSplitter();
+		lazyNLP4JSplitter.lazyLabels = true;
+		SentenceSplitter[] splitters = new SentenceSplitter[]{stanfordSplitter, ruleBasedSplitter, nlp4jSplitter};
+		SentenceSplitter[] lazySplitters = new SentenceSplitter[]{lazyStanfordSplitter, lazyRuleBasedSplitter,
+				lazyNLP4JSplitter};
+		for(int i=0; i<splitters.length; i++){
+			List<CoreLabel> sentences = splitters[i].split(DOCUMENT);
+			List<CoreLabel> lazySentences = lazySplitters[i].split(DOCUMENT);
+			assertEquals(toString(sentences), toString(lazySentences));
+			for(int j=0; j<sentences.size(); j++){
+				assertFalse(sentences.get(j) instanceof LazyCoreLabel);
+				assertTrue(lazySentences.get(j) instanceof LazyCoreLabel);
+				assertEquals(sentences.get(j), ((LazyCoreLabel)lazySentences.get(j)).materialize());
+			}
+		}
+		assertEquals(toTokenString(nlp4jSplitter.splitWithTokens(DOCUMENT)),
+				toTokenString(lazyNLP4JSplitter.splitWithTokens(DOCUMENT)));
+	}
+
+	@Test
+	public void testPostProcessingSplitter(){
+		String document = "DOC-001\nNEWS STORY\n" + DOCUMENT;
+		PostProcessingSentenceSplitter splitter = new PostProcessingSentenceSplitter(ruleBasedSplitter);
+		List<CoreLabel> sentences = splitter.split(document);
+		checkSpans(document, sentences);
+		assertEquals("DOC-001", sentences.get(0).value());
+		assertEquals("NEWS STORY", sentences.get(1).value());
+		assertEquals("The quick brown fox jumps over the lazy dog.", sentences.get(2).value());
+		for(CoreLabel sentence: sentences){
+			assertFalse(sentence.value().contains("\n\n"));
+		}
+		// Without the header length, only the blank lines split the sentences
+		assertEquals(toString(ruleBasedSplitter.split(DOCUMENT)),
+				toString(new PostProcessingSentenceSplitter(ruleBasedSplitter, 0).split(DOCUMENT)));
+
+		List<CoreLabel> sentencesWithTokens = splitter.splitWithTokens(document);
+		assertEquals(toString(sentences), toString(sentencesWithTokens));
+		int numTokens = 0;
+		for(CoreLabel sentence: sentencesWithTokens){
+			for(CoreLabel token: sentence.get(TokensAnnotation.class)){
+				assertTrue(token.beginPosition() >= sentence.beginPosition());
+				assertTrue(token.endPosition() <= sentence.endPosition());
+				numTokens++;
+			}
+		}
+		int expectedNumTokens = 0;
+		for(CoreLabel sentence: ruleBasedSplitter.splitWithTokens(document)){
+			expectedNumTokens += sentence.get(TokensAnnotation.class).size();
+		}
+		assertEquals(expectedNumTokens, numTokens);
+	}
+
+	/**
+	 * Checks that the sentence texts match the offsets, and that the sentences, together with the texts
+	 * before and after them, reconstruct the document
+	 */
+	private static void checkSpans(String document, List<CoreLabel> sentences){
+		StringBuilder reconstructed = new StringBuilder();
+		for(int i=0; i<sentences.size(); i++){
+			CoreLabel sentence = sentences.get(i);
+			assertEquals(sentence.value(), document.substring(sentence.beginPosition(), sentence.endPosition()));
+			if(i > 0){
+				assertEquals(sentences.get(i-1).after(), sentence.before());
+			}
+			reconstructed.append(sentence.before());
+			reconstructed.append(sentence.value());
+		}
+		reconstructed.append(sentences.get(sentences.size()-1).after());
+		assertEquals(document, reconstructed.toString());
+	}
+
+	@Test
+	public void testRuleBasedAgreement(){
+		String corpus = readCorpus();
+		double agreement = agreement(stanfordSplitter.split(corpus), ruleBasedSplitter.split(corpus));
+		System.out.println(String.format("Agreement with %s: %.2f%%", STANFORD, 100*agreement));
+		assertTrue(agreement >= MIN_AGREEMENT);
+	}
+
+	/**
+	 * Returns the fraction of sentences with the same span in both lists, over the larger list
+	 */
+	protected static double agreement(List<CoreLabel> expected, List<CoreLabel> actual){
+		Set<String> spans = new HashSet<String>();
+		for(CoreLabel sentence: expected){
+			spans.add(sentence.beginPosition()+","+sentence.endPosition());
+		}
+		int matched = 0;
+		for(CoreLabel sentence: actual){
+			if(spans.contains(sentence.beginPosition()+","+sentence.endPosition())){
+				matched++;
+			}
+		}
+		return (double)matched/Math.max(1, Math.max(expected.size(), actual.size()));
+	}
+
+	protected static String readCorpus(){
+		InputStream inputStream = SentenceSplitterTest.class.getClassLoader().getResourceAsStream(CORPUS_FILE);
+		Scanner sc = new Scanner(inputStream, "UTF-8");
+		sc.useDelimiter("\\A");
+		String result = sc.hasNext() ? sc.next() : "";
+		sc.close();
+		return result;
+	}
+
+	private void checkTokens(List<CoreLabel> sentences){
+		assertEquals(toString(stanfordSplitter.split(DOCUMENT)), toString(sentences));
+		for(CoreLabel sentence: sentences){
+			List<CoreLabel> tokens = sentence.get(TokensAnnotation.class);
+			assertTrue(tokens.size() > 0);
+			for(CoreLabel token: tokens){
+				assertTrue(token.beginPosition() >= sentence.beginPosition());
+				assertTrue(token.endPosition() <= sentence.endPosition());
+				assertEquals(token.originalText(), DOCUMENT.substring(token.beginPosition(), token.endPosition()));
+			}
+		}
+	}
+
+	protected static String toString(List<CoreLabel> sentences){
+		StringBuilder result = new StringBuilder();
+		for(CoreLabel sentence: sentences){
+			result.append(String.format("[%d,%d]<%s>%s<%s>\n", sentence.beginPosition(), sentence.endPosition(),
+					sentence.before(), sentence.value(), sentence.after()));
+		}
+		return result.toString();
+	}
+
+	private static String toTokenString(List<CoreLabel> sentences){
+		StringBuilder result = new StringBuilder();
+		for(CoreLabel sentence: sentences){
+			for(CoreLabel token: sentence.get(TokensAnnotation.class)){
+				result.append(String.format("[%d,%d]<%s>%s<%s> ", token.beginPosition(), token.endPosition(),
+						token.before(), token.value(), token.after()));
+			}
+			result.append("\n");
+		}
+		return result.toString();
+	}
+
+	private static void runOne(SentenceSplitter splitter, String testCase, String splitterName){
+		System.out.println(String.format("%s:", splitterName));
+		for(String sentence: splitter.splitToString(testCase)){
+			System.out.println("\t"+sentence);
+		}
+	}
+
+	public static void main(String[] args){
+		setUp();
+		Scanner sc = new Scanner(System.in);
+
+		String line = DOCUMENT;
+		runOne(stanfordSplitter, line, STANFORD);
+		runOne(ruleBasedSplitter, line, RULE_BASED);
+		System.out.println("Enter one paragraph at a time");
+		while((line = getNextLine(sc)) != null){
+			runOne(stanfordSplitter, line, STANFORD);
+			runOne(ruleBasedSplitter, line, RULE_BASED);
+		}
+		sc.close();
+	}
+}
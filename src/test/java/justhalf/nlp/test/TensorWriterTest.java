@@ -0,0 +1,72 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.reader.acereader.LabelRegistry;
+import justhalf.nlp.reader.acereader.TensorWriter;
+import justhalf.nlp.reader.acereader.VocabularyEntry;
+import justhalf.nlp.reader.acereader.WordLabel;
+
+public class TensorWriterTest extends TestHelper {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testTensorWriter() throws Exception{
+		LabelRegistry<VocabularyEntry> vocabulary = new LabelRegistry<VocabularyEntry>(VocabularyEntry::new);
+		LabelRegistry<VocabularyEntry> posTags = new LabelRegistry<VocabularyEntry>(VocabularyEntry::new);
+		LabelRegistry<WordLabel> labels = WordLabel.newRegistry();
+		labels.get("O");
+		String basePath = new File(tempFolder.getRoot(), "train").getPath();
+		try(TensorWriter writer = new TensorWriter(basePath, vocabulary, posTags, labels)){
+			writer.add(makeTokens(new String[]{"John", "runs"}, new String[]{"NNP", "VBZ"}),
+					Arrays.asList(WordLabel.get("U-PER"), WordLabel.get("O")));
+			writer.add(makeTokens(new String[]{}, new String[]{}), Arrays.asList());
+			writer.add(makeTokens(new String[]{"Mary", "Ann", "runs"}, new String[]{"NNP", "NNP", "VBZ"}),
+					Arrays.asList(WordLabel.get("B-PER"), WordLabel.get("L-PER"), WordLabel.get("O")));
+			assertEquals(3, writer.size());
+		}
+		assertArrayEquals(new int[]{0, 2, 2, 5}, readInts(basePath+TensorWriter.OFFSETS_SUFFIX));
+		assertArrayEquals(new int[]{0, 1, 2, 3, 1}, readInts(basePath+TensorWriter.TOKENS_SUFFIX));
+		assertArrayEquals(new int[]{0, 1, 0, 0, 1}, readInts(basePath+TensorWriter.POS_SUFFIX));
+		assertArrayEquals(new int[]{1, 0, 2, 3, 0}, readInts(basePath+TensorWriter.LABELS_SUFFIX));
+		assertEquals("Ann", vocabulary.get(3).form);
+		assertEquals("L-PER", labels.get(3).form);
+	}
+
+	private static List<CoreLabel> makeTokens(String[] words, String[] tags){
+		List<CoreLabel> result = new ArrayList<CoreLabel>();
+		for(int i=0; i<words.length; i++){
+			CoreLabel token = new CoreLabel();
+			token.setValue(words[i]);
+			token.setWord(words[i]);
+			token.setTag(tags[i]);
+			result.add(token);
+		}
+		return result;
+	}
+
+	private static int[] readInts(String filename) throws IOException{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(new File(filename).toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		int[] result = new int[buffer.remaining()/4];
+		buffer.asIntBuffer().get(result);
+		return result;
+	}
+
+}
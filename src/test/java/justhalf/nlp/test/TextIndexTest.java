@@ -0,0 +1,42 @@
+package justhalf.nlp.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import justhalf.nlp.util.TextIndex;
+
+public class TextIndexTest extends TestHelper {
+
+	@Test
+	public void testTextIndexEqualsLastIndexOf(){
+		Random random = new Random(17);
+		String alphabet = "ab \n";
+		for(int i=0; i<200; i++){
+			StringBuilder builder = new StringBuilder();
+			for(int j=random.nextInt(300); j>0; j--){
+				builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			String text = builder.toString();
+			TextIndex index = new TextIndex(text);
+			for(int j=0; j<50; j++){
+				String str;
+				if(text.length() > 0 && random.nextBoolean()){
+					int start = random.nextInt(text.length());
+					str = text.substring(start, Math.min(text.length(), start+random.nextInt(10)));
+				} else {
+					StringBuilder strBuilder = new StringBuilder();
+					for(int k=random.nextInt(10); k>0; k--){
+						strBuilder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+					}
+					str = strBuilder.toString();
+				}
+				int fromIndex = random.nextInt(text.length()+5)-2;
+				assertEquals(text+"|"+str+"|"+fromIndex, text.lastIndexOf(str, fromIndex), index.lastIndexOf(str, fromIndex));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+package justhalf.nlp.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import justhalf.nlp.sentencesplitter.PostProcessingSentenceSplitter;
+import justhalf.nlp.sentencesplitter.RuleBasedSentenceSplitter;
+import justhalf.nlp.sentencesplitter.SentenceSplitter;
+import justhalf.nlp.tokenizer.TokenSplitRule;
+
+/**
+ * Compares the time per token of {@link TokenSplitRule#DEFAULT} against the previous implementation which
+ * compiled the regular expressions for every token, and the time per sentence of
+ * {@link PostProcessingSentenceSplitter} against the previous implementation which compiled them for every split.<br>
+ *
+ * Run with the number of iterations over the bundled corpus as the optional argument.
+ */
+public class TokenPostProcessingBenchmark extends TestHelper {
+
+	public static void main(String[] args){
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		String corpus = SentenceSplitterTest.readCorpus();
+		SentenceSplitter splitter = new RuleBasedSentenceSplitter();
+		List<CoreLabel> sentences = splitter.splitWithTokens(corpus);
+		List<List<CoreLabel>> tokens = new ArrayList<List<CoreLabel>>();
+		int numTokens = 0;
+		for(CoreLabel sentence: sentences){
+			tokens.add(sentence.get(TokensAnnotation.class));
+			numTokens += sentence.get(TokensAnnotation.class).size();
+		}
+		PostProcessingSentenceSplitter postProcessor = new PostProcessingSentenceSplitter(splitter);
+
+		// Warm up
+		runTokens(tokens, iterations, false);
+		runTokens(tokens, iterations, true);
+		runSentences(sentences, postProcessor, iterations, false);
+		runSentences(sentences, postProcessor, iterations, true);
+
+		double legacyTokenTime = runTokens(tokens, iterations, false);
+		double tokenTime = runTokens(tokens, iterations, true);
+		double legacySentenceTime = runSentences(sentences, postProcessor, iterations, false);
+		double sentenceTime = runSentences(sentences, postProcessor, iterations, true);
+		double totalTokens = (double)iterations*numTokens;
+		double totalSentences = (double)iterations*sentences.size();
+		System.out.println(String.format("Tokens (%d per iteration):", numTokens));
+		System.out.println(String.format("  Per-token regex  : %.1f ns/token", 1e9*legacyTokenTime/totalTokens));
+		System.out.println(String.format("  TokenSplitRule   : %.1f ns/token", 1e9*tokenTime/totalTokens));
+		System.out.println(String.format("  Speedup          : %.1fx", legacyTokenTime/tokenTime));
+		System.out.println(String.format("Sentences (%d per iteration):", sentences.size()));
+		System.out.println(String.format("  Per-split regex  : %.1f ns/sentence", 1e9*legacySentenceTime/totalSentences));
+		System.out.println(String.format("  PostProcessing   : %.1f ns/sentence", 1e9*sentenceTime/totalSentences));
+		System.out.println(String.format("  Speedup          : %.1fx", legacySentenceTime/sentenceTime));
+	}
+
+	/**
+	 * Returns the time to split the tokens, excluding the time to copy them, since the splitting modifies them
+	 */
+	private static double runTokens(List<List<CoreLabel>> tokens, int iterations, boolean compiled){
+		System.gc();
+		long total = 0;
+		for(int i=0; i<iterations; i++){
+			for(List<CoreLabel> sentenceTokens: tokens){
+				List<CoreLabel> copy = copy(sentenceTokens);
+				long start = System.nanoTime();
+				if(compiled){
+					TokenSplitRule.DEFAULT.apply(copy);
+				} else {
+					legacyFixTokens(copy);
+				}
+				total += System.nanoTime()-start;
+			}
+		}
+		return total/1e9;
+	}
+
+	private static double runSentences(List<CoreLabel> sentences, PostProcessingSentenceSplitter postProcessor,
+			int iterations, boolean compiled){
+		System.gc();
+		long total = 0;
+		for(int i=0; i<iterations; i++){
+			List<CoreLabel> copy = copy(sentences);
+			long start = System.nanoTime();
+			if(compiled){
+				postProcessor.postProcess(copy);
+			} else {
+				legacyFixSplit(copy);
+			}
+			total += System.nanoTime()-start;
+		}
+		return total/1e9;
+	}
+
+	private static List<CoreLabel> copy(List<CoreLabel> labels){
+		List<CoreLabel> result = new ArrayList<CoreLabel>(labels.size());
+		for(CoreLabel label: labels){
+			result.add(new CoreLabel(label));
+		}
+		return result;
+	}
+
+	/**
+	 * The previous implementation of the token splitting in ACEReader
+	 */
+	private static List<CoreLabel> legacyFixTokens(List<CoreLabel> tokens){
+		List<CoreLabel> result = new ArrayList<CoreLabel>();
+		for(int i=0; i<tokens.size(); i++){
+			CoreLabel token = tokens.get(i);
+			while(token != null){
+				if (token.value().matches("([^-]*-[A-Z].*|[^-]*[A-Z][^-]*-[^-]+-[^-]*)")){
+					int startIndex = -1;
+					int startIndexOrig = -1;
+					Matcher matcher = Pattern.compile("-").matcher(token.value());
+					if(matcher.find()){
+						startIndex = matcher.start();
+					}
+					matcher = Pattern.compile("-").matcher(token.originalText());
+					if(matcher.find()){
+						startIndexOrig = matcher.start();
+					}
+					int nextTokenIndex = startIndex+1;
+					int nextTokenIndexOrig = startIndexOrig+1;
+
+					CoreLabel newToken = new CoreLabel();
+					newToken.setBeginPosition(nextTokenIndex+token.beginPosition());
+					newToken.setEndPosition(token.endPosition());
+					newToken.setAfter(token.after());
+					newToken.setBefore(token.value().substring(startIndex, nextTokenIndex));
+					newToken.setOriginalText(token.originalText().substring(nextTokenIndexOrig));
+					newToken.setWord(token.word().substring(nextTokenIndex));
+					newToken.setValue(token.value().substring(nextTokenIndex));
+					token.setEndPosition(startIndex+token.beginPosition());
+					token.setAfter(newToken.before());
+					token.setOriginalText(token.originalText().substring(0, startIndexOrig));
+					token.setWord(token.word().substring(0, startIndex));
+					token.setValue(token.value().substring(0, startIndex));
+					result.add(token);
+					token = newToken;
+				} else {
+					result.add(token);
+					token = null;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The previous implementation of the sentence correction in ACEReader
+	 */
+	private static List<CoreLabel> legacyFixSplit(List<CoreLabel> sentences){
+		List<CoreLabel> result = new ArrayList<CoreLabel>();
+		for(int i=0; i<sentences.size(); i++){
+			CoreLabel sentence = sentences.get(i);
+			CoreLabel nextSentence = null;
+			while(sentence != null){
+				if(i < sentences.size()-1){
+					nextSentence = sentences.get(i+1);
+				} else {
+					nextSentence = null;
+				}
+				if (sentence.value().contains("\n\n") || (sentence.endPosition() <= 70 && sentence.value().contains("\n"))){
+					int startIndex = -1;
+					int startIndexOrig = -1;
+					if(sentence.endPosition() <= 70 && sentence.value().contains("\n")){
+						startIndex = sentence.value().indexOf("\n");
+						startIndexOrig = sentence.originalText().indexOf("\n");
+					} else {
+						startIndex = sentence.value().indexOf("\n\n");
+						startIndexOrig = sentence.originalText().indexOf("\n\n");
+					}
+					int nextSentenceIndex = -1;
+					int nextSentenceIndexOrig = -1;
+					Matcher matcher = Pattern.compile("[\n\t ]+").matcher(sentence.value().substring(startIndex));
+					if(matcher.find()){
+						nextSentenceIndex = matcher.end() + startIndex;
+					}
+					matcher = Pattern.compile("[\n\t ]+").matcher(sentence.originalText().substring(startIndexOrig));
+					if(matcher.find()){
+						nextSentenceIndexOrig = matcher.end() + startIndexOrig;
+					}
+
+					CoreLabel newSentence = new CoreLabel();
+					newSentence.setBeginPosition(nextSentenceIndex+sentence.beginPosition());
+					newSentence.setEndPosition(sentence.endPosition());
+					newSentence.setAfter(sentence.after());
+					newSentence.setBefore(sentence.value().substring(startIndex, nextSentenceIndex));
+					newSentence.setOriginalText(sentence.originalText().substring(nextSentenceIndexOrig));
+					newSentence.setWord(sentence.word().substring(nextSentenceIndex));
+					newSentence.setValue(sentence.value().substring(nextSentenceIndex));
+					sentence.setEndPosition(startIndex+sentence.beginPosition());
+					sentence.setAfter(newSentence.before());
+					sentence.setOriginalText(sentence.originalText().substring(0, startIndexOrig));
+					sentence.setWord(sentence.word().substring(0, startIndex));
+					sentence.setValue(sentence.value().substring(0, startIndex));
+					result.add(sentence);
+					sentence = newSentence;
+				} else if(nextSentence != null && nextSentence.beginPosition() == sentence.endPosition()){
+					sentence.setAfter(nextSentence.after());
+					sentence.setEndPosition(nextSentence.endPosition());
+					sentence.setOriginalText(sentence.originalText() + nextSentence.before() + nextSentence.originalText());
+					sentence.setWord(sentence.word() + nextSentence.before() + nextSentence.word());
+					sentence.setValue(sentence.value() + nextSentence.before() + nextSentence.value());
+					i += 1;
+				} else {
+					result.add(sentence);
+					sentence = null;
+				}
+			}
+		}
+		return result;
+	}
+
+}
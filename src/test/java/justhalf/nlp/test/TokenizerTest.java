@@ -1,8 +1,16 @@
 package justhalf.nlp.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 import org.junit.AfterClass;
 import org.junit.Assume;
@@ -10,13 +18,18 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.util.StringUtils;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
+import justhalf.nlp.tokenizer.PostProcessingTokenizer;
 import justhalf.nlp.tokenizer.RegexTokenizer;
 import justhalf.nlp.tokenizer.StanfordTokenizer;
+import justhalf.nlp.tokenizer.TokenSplitRule;
 import justhalf.nlp.tokenizer.Tokenizer;
 import justhalf.nlp.tokenizer.WhitespaceTokenizer;
+import justhalf.nlp.util.LazyCoreLabel;
+import justhalf.nlp.util.TokenOffsetIndex;
 
 @RunWith(JUnitParamsRunner.class)
 public class TokenizerTest extends TestHelper {
@@ -83,6 +96,97 @@ public class TokenizerTest extends TestHelper {
 		addCount(counter, STANFORD);
 	}
 	
+	@Test
+	@Parameters(method="paramsForTokenizer")
+	public void testRegexTokenizerSpans(String testCase, String expected){
+		RegexTokenizer lazyTokenizer = new RegexTokenizer();
+		lazyTokenizer.lazyLabels = true;
+		StringBuilder reconstructed = new StringBuilder();
+		List<CoreLabel> words = regexTokenizer.tokenize(" "+testCase+" ");
+		List<CoreLabel> lazyWords = lazyTokenizer.tokenize(" "+testCase+" ");
+		assertEquals(words.size(), lazyWords.size());
+		for(int i=0; i<words.size(); i++){
+			CoreLabel word = words.get(i);
+			assertEquals(word.originalText(), word.word());
+			assertEquals(word.originalText(), word.value());
+			reconstructed.append(word.word());
+			reconstructed.append(word.after());
+			// The default labels keep their texts when copied
+			assertFalse(word instanceof LazyCoreLabel);
+			assertEquals(word.word(), new CoreLabel(word).word());
+			CoreLabel materialized = ((LazyCoreLabel)lazyWords.get(i)).materialize();
+			assertFalse(materialized instanceof LazyCoreLabel);
+			assertEquals(lazyWords.get(i).toString(CoreLabel.OutputFormat.ALL), materialized.toString(CoreLabel.OutputFormat.ALL));
+			assertEquals(word, materialized);
+		}
+		assertEquals(" "+testCase+" ", reconstructed.toString());
+	}
+	
+	@Test
+	public void testTokenSplitRuleEqualsRegex(){
+		Pattern pattern = Pattern.compile(TokenSplitRule.DEFAULT_REGEX);
+		char[] alphabet = new char[]{'a', 'z', 'A', 'Z', '-', '-', ' ', '\n', '\r', '\u2028', '.'};
+		Random random = new Random(0);
+		for(int i=0; i<100000; i++){
+			char[] chars = new char[random.nextInt(8)];
+			for(int j=0; j<chars.length; j++){
+				chars[j] = alphabet[random.nextInt(alphabet.length)];
+			}
+			String value = new String(chars);
+			assertEquals(value, pattern.matcher(value).matches(), TokenSplitRule.DEFAULT.matches(value));
+		}
+	}
+
+	@Test
+	public void testPostProcessingTokenizer(){
+		Tokenizer tokenizer = new PostProcessingTokenizer(whitespaceTokenizer);
+		assertEquals("U.S.|Japan|Hewlett|Packard-made|well-known|A|B|C",
+				StringUtils.join(tokenizer.tokenizeToString("U.S.-Japan Hewlett-Packard-made well-known A-B-C"), "|"));
+		String sentence = "and/or Coca-Cola";
+		tokenizer = new PostProcessingTokenizer(whitespaceTokenizer, new TokenSplitRule("[^/]+/[^/]+", '/'),
+				TokenSplitRule.DEFAULT);
+		List<CoreLabel> tokens = tokenizer.tokenize(sentence);
+		assertEquals(4, tokens.size());
+		for(CoreLabel token: tokens){
+			assertEquals(token.value(), sentence.substring(token.beginPosition(), token.endPosition()));
+		}
+		assertEquals("/", tokens.get(1).before());
+		assertEquals("-", tokens.get(2).after());
+	}
+
+	@Test
+	@Parameters(method="paramsForTokenizer")
+	public void testTokenOffsetIndex(String testCase, String expected){
+		for(Tokenizer tokenizer: new Tokenizer[]{whitespaceTokenizer, regexTokenizer, stanfordTokenizer}){
+			List<CoreLabel> tokens = tokenizer.tokenize(testCase);
+			checkTokenOffsetIndex(tokens, testCase.length());
+			// Unsorted tokens are also supported
+			List<CoreLabel> reversed = new ArrayList<CoreLabel>(tokens);
+			Collections.reverse(reversed);
+			checkTokenOffsetIndex(reversed, testCase.length());
+		}
+	}
+	
+	private static void checkTokenOffsetIndex(List<CoreLabel> tokens, int length){
+		TokenOffsetIndex index = new TokenOffsetIndex(tokens);
+		assertEquals(tokens.size(), index.size());
+		for(int offset=-1; offset<=length+1; offset++){
+			int expectedStart = -1;
+			int expectedEnd = -1;
+			for(int i=0; i<tokens.size(); i++){
+				CoreLabel token = tokens.get(i);
+				if(token.beginPosition() <= offset && token.endPosition() > offset && expectedStart == -1){
+					expectedStart = i;
+				}
+				if(token.beginPosition() < offset && token.endPosition() >= offset){
+					expectedEnd = i;
+				}
+			}
+			assertEquals("Start at "+offset, expectedStart, index.findTokenStartingSpan(offset));
+			assertEquals("End at "+offset, expectedEnd, index.findTokenEndingSpan(offset));
+		}
+	}
+	
 	private void testOne(Tokenizer tokenizer, String expected, String testCase){
 		String actual = StringUtils.join(tokenizer.tokenizeToString(testCase), "|");
 	    Assume.assumeTrue(messageOnNotEqual(expected, actual), expected.equals(actual));